@@ -1,26 +1,43 @@
 package org.galatea.starter;
 
 import feign.Logger;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.aspect.LogAspect;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.cache.InstrumentedCacheManager;
+import org.galatea.starter.utils.cache.SettlementMissionSerializer;
+import org.galatea.starter.utils.cache.TieredMissionCache;
+import org.galatea.starter.utils.cache.VersionedMissionCacheManager;
+import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.ehcache.EhCacheCacheManager;
 import org.springframework.cache.ehcache.EhCacheManagerFactoryBean;
+import org.springframework.cache.support.CompositeCacheManager;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Slf4j
 @Configuration
 @EnableAspectJAutoProxy
 @EnableCaching
 @EnableFeignClients
+@EnableScheduling
 public class AppConfig {
 
   /**
@@ -46,10 +63,54 @@ public class AppConfig {
   /**
    * CacheManager that contains the Cache Configuration. Spring will use this cache if any
    * cache annotations are used.
+   *
+   * <p>When the tiered missions cache is enabled it takes the place of the missions cache from
+   * the cache config file; every other cache still comes from that file.
+   *
+   * <p>Puts into the missions cache are guarded by the mission's version (see
+   * VersionedMissionCache), so a reader can never replace a newer mission with the one it loaded.
+   *
+   * <p>When there is a meter registry every cache is instrumented, publishing hit, miss and load
+   * time metrics (see InstrumentedCache) that the cachestats endpoint also reports.
    */
   @Bean
-  public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean) {
-    return new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject());
+  public CacheManager cacheManager(final EhCacheManagerFactoryBean ehCacheCacheManagerFactoryBean,
+      final Optional<TieredMissionCache> tieredMissionCache,
+      final Optional<MeterRegistry> meterRegistry) {
+    EhCacheCacheManager ehCacheManager =
+        new EhCacheCacheManager(ehCacheCacheManagerFactoryBean.getObject());
+    // None of these managers is the bean itself, so Spring won't initialize them for us
+    ehCacheManager.afterPropertiesSet();
+    CacheManager cacheManager = ehCacheManager;
+    if (tieredMissionCache.isPresent()) {
+      SimpleCacheManager tieredCacheManager = new SimpleCacheManager();
+      tieredCacheManager.setCaches(Collections.singletonList(tieredMissionCache.get()));
+      tieredCacheManager.afterPropertiesSet();
+      cacheManager = new CompositeCacheManager(tieredCacheManager, ehCacheManager);
+    }
+    cacheManager = new VersionedMissionCacheManager(cacheManager);
+
+    if (!meterRegistry.isPresent()) {
+      return cacheManager;
+    }
+    return new InstrumentedCacheManager(cacheManager, meterRegistry.get());
+  }
+
+  /**
+   * Missions cache with an off-heap tier sized in bytes, in front of which sits an optional
+   * on-heap tier. It is registered as a MeterBinder, so its per-tier statistics are published as
+   * metrics.
+   */
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "settlement.cache.tiered.enabled", havingValue = "true")
+  public TieredMissionCache tieredMissionCache(
+      @Value("${settlement.cache.tiered.heap-entries:10000}") final long heapEntries,
+      @Value("${settlement.cache.tiered.offheap-mb:1024}") final long offHeapMb,
+      @Value("${settlement.cache.tiered.ttl-seconds:1200}") final long ttlSeconds,
+      final ITranslator<SettlementMission, SettlementMissionProtoMessage> toProto,
+      final ITranslator<SettlementMissionProtoMessage, SettlementMission> fromProto) {
+    return new TieredMissionCache("missions", heapEntries, offHeapMb,
+        Duration.ofSeconds(ttlSeconds), new SettlementMissionSerializer(toProto, fromProto));
   }
 
   /**
@@ -66,6 +127,23 @@ public class AppConfig {
     return cmfb;
   }
 
+  /**
+   * Executor that runs asynchronously submitted settlement jobs. It is kept separate from the web
+   * server's request threads, and both its thread count and queue are bounded so that a flood of
+   * bulk submissions is rejected rather than exhausting memory.
+   */
+  @Bean
+  public ThreadPoolTaskExecutor settlementJobExecutor(
+      @Value("${settlement.async.threads:4}") final int threads,
+      @Value("${settlement.async.queue-capacity:100}") final int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setThreadNamePrefix("settlement-job-");
+    return executor;
+  }
+
   /**
    * Set the Feign log level for interfaces annotated with @FeignClient.
    *
@@ -76,4 +154,16 @@ public class AppConfig {
     return Logger.Level.BASIC;
   }
 
+  /**
+   * Fork-join pool that validates and transforms large batches of agreements in parallel. It is
+   * kept apart from the common pool so that settlement can't starve (or be starved by) other
+   * parallel streams in the application.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public ForkJoinPool settlementPipelinePool(
+      @Value("${settlement.pipeline.parallelism:0}") final int parallelism) {
+    // Non-positive values mean one thread per available core
+    return new ForkJoinPool(parallelism > 0 ? parallelism
+        : Runtime.getRuntime().availableProcessors());
+  }
 }
@@ -5,6 +5,7 @@ import javax.jms.ConnectionFactory;
 import javax.jms.Message;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -69,6 +70,32 @@ public class JmsConfig implements JmsListenerConfigurer {
     return listenerFactory;
   }
 
+  /**
+   * Listener container factory for the batching settlement listeners. Each container drains up to
+   * maxSize messages, or whatever arrives within maxWaitMillis of the first one, and acknowledges
+   * them together in one local JMS transaction once the listener has returned.
+   */
+  @Bean
+  public JmsListenerContainerFactory<DefaultMessageListenerContainer>
+      batchJmsListenerContainerFactory(
+      final ConnectionFactory queueConnectionFactory,
+      final DefaultJmsListenerContainerFactoryConfigurer configurer,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      @Value("${jms.batch.max-size:500}") final int maxSize,
+      @Value("${jms.batch.max-wait-millis:50}") final long maxWaitMillis) {
+
+    FuseJmsListenerContainerFactory listenerFactory =
+        new FuseJmsListenerContainerFactory(failedMessageConsumer);
+    configurer.configure(listenerFactory, queueConnectionFactory);
+
+    listenerFactory.setBatchSize(maxSize);
+    listenerFactory.setBatchWindowMillis(maxWaitMillis);
+    listenerFactory.setSessionTransacted(true);
+    // Batches have to be collected on a consumer that stays open between receives
+    listenerFactory.setCacheLevel(DefaultMessageListenerContainer.CACHE_CONSUMER);
+    return listenerFactory;
+  }
+
   /**
    * For JSON messages we want to use the spring messaging converter instead of the spring jms
    * converter. The spring jms converter expects the type of object to deserialize the json to being
@@ -5,6 +5,7 @@ import java.util.stream.Collectors;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessages;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.utils.translation.ITranslator;
@@ -44,6 +45,17 @@ public class MessageTranslationConfig {
         .version(message.getVersion()).build();
   }
 
+  /**
+   * Returns a translator to convert a batch of SettlementMissionMessages to SettlementMissions.
+   */
+  @Bean
+  public ITranslator<SettlementMissionMessages, List<SettlementMission>>
+      settlementMissionMessagesTranslator(
+      final ITranslator<SettlementMissionMessage, SettlementMission> translator) {
+    return messages -> messages.getMissions().stream().map(translator::translate)
+        .collect(Collectors.toList());
+  }
+
   /**
    * Returns a translator to convert protobuf messages to TradeAgreements.
    */
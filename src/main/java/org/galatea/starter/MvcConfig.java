@@ -5,6 +5,7 @@ import com.google.common.collect.Sets;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.utils.FuseHttpTraceRepository;
+import org.galatea.starter.utils.http.converter.SerializedBodyConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
@@ -33,6 +34,32 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  // The registered type for xlsx files, which is what most clients send when uploading one
+  public static final MediaType APPLICATION_XLSX =
+      new MediaType("application", "vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+  public static final String APPLICATION_XLSX_VALUE =
+      "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+  // Newline-delimited JSON, one document per line. Used for streaming uploads.
+  public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson");
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  // A sequence of protobuf messages, each prefixed with its varint-encoded length (the format
+  // written by MessageLite#writeDelimitedTo). Used for streaming uploads and downloads.
+  public static final MediaType APPLICATION_X_PROTOBUF_DELIMITED =
+      new MediaType("application", "x-protobuf-delimited");
+  public static final String APPLICATION_X_PROTOBUF_DELIMITED_VALUE =
+      "application/x-protobuf-delimited";
+
+  private final ObjectMapper objectMapper;
+
+  /**
+   * Creates the MVC configuration, writing JSON with the application's ObjectMapper.
+   */
+  public MvcConfig(final ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
   /**
    * This is used to trace web requests and store that trace info.
    *
@@ -86,10 +113,13 @@ public class MvcConfig implements WebMvcConfigurer {
     // The Protobuf converter MUST be added first, otherwise Jackson will try and handle our
     // protobuf to JSON conversion (and will of course, fail).
     converters.add(new ProtobufHttpMessageConverter()); // Protobuf, XML & JSON supported
-    converters.add(new MappingJackson2HttpMessageConverter()); // JSON
+    // JSON, with the application's ObjectMapper (spring.jackson.* settings and modules)
+    converters.add(new MappingJackson2HttpMessageConverter(objectMapper));
     converters.add(new Jaxb2RootElementHttpMessageConverter()); // XML
     converters.add(new SettlementMissionCsvConverter());
     converters.add(new SettlementMissionXlsxConverter());
+    // Single-mission responses serialize themselves, using cached bytes where possible
+    converters.add(new SerializedBodyConverter());
   }
 
 }
@@ -6,6 +6,7 @@ import java.util.stream.Collectors;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.utils.translation.ITranslator;
@@ -76,4 +77,28 @@ public class ProtoMessageTranslationConfig {
     return msg -> msg.getMessageList().stream().map(translator::translate)
         .collect(Collectors.toList());
   }
+
+  /**
+   * Implements a translator to convert SettlementMission protobuf messages to SettlementMission
+   * domain objects.
+   */
+  @Bean
+  public ITranslator<SettlementMissionProtoMessage, SettlementMission>
+      settlementMissionProtoMessageTranslator() {
+    return msg -> SettlementMission.builder().id(msg.getId()).depot(msg.getDepot())
+        .direction(msg.getDirection()).externalParty(msg.getExternalParty())
+        .instrument(msg.getInstrument()).qty(msg.getQty()).version(msg.getVersion()).build();
+  }
+
+  /**
+   * Implements a translator to convert a SettlementMission protobuf collection to a list of
+   * SettlementMission domain objects.
+   */
+  @Bean
+  public ITranslator<SettlementMissionProtoMessages, List<SettlementMission>>
+      settlementMissionProtoMessagesTranslator(
+      final ITranslator<SettlementMissionProtoMessage, SettlementMission> translator) {
+    return msg -> msg.getMessageList().stream().map(translator::translate)
+        .collect(Collectors.toList());
+  }
 }
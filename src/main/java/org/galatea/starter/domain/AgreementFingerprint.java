@@ -0,0 +1,52 @@
+package org.galatea.starter.domain;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Records which mission was spawned for an agreement so that a redelivered or retried agreement
+ * can be answered with the original mission instead of a duplicate. The fingerprint is the primary
+ * key, so the database itself rejects a second mission for the same agreement.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For hibernate
+@Builder
+@Data
+@Entity
+// Fingerprints are looked up by mission when the mission is deleted
+@Table(indexes = @Index(name = "idx_agreement_fingerprint_mission_id", columnList = "missionId"))
+public class AgreementFingerprint implements Persistable<String> {
+
+  // Hex-encoded SHA-256
+  @Id
+  @Column(length = 64)
+  @NonNull
+  protected String fingerprint;
+
+  @NonNull
+  protected Long missionId;
+
+  @Override
+  public String getId() {
+    return fingerprint;
+  }
+
+  /**
+   * Fingerprints are only ever inserted, so always persist rather than letting Spring Data merge
+   * (and select) first because the id is already assigned.
+   */
+  @Override
+  public boolean isNew() {
+    return true;
+  }
+}
@@ -0,0 +1,14 @@
+package org.galatea.starter.domain;
+
+/**
+ * Outcome of one change in a batch of mission updates or deletes.
+ */
+public enum MissionChangeStatus {
+
+  UPDATED,
+  DELETED,
+  NOT_FOUND,
+  // The mission has changed since the version the update was based on
+  CONFLICT
+
+}
@@ -0,0 +1,33 @@
+package org.galatea.starter.domain;
+
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.Singular;
+
+/**
+ * Tracks the progress of an asynchronous settlement request. Instances are snapshots: a new one is
+ * built (see toBuilder) every time the job changes state, so a snapshot handed to a caller never
+ * changes underneath it.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+@Builder(toBuilder = true)
+@Data
+public class SettlementJob {
+
+  @NonNull
+  protected String id;
+
+  @NonNull
+  protected SettlementJobStatus status;
+
+  /* Populated once the job has completed */
+  @Singular
+  protected Set<Long> missionIds;
+
+  /* Populated if the job failed */
+  protected String error;
+}
@@ -0,0 +1,10 @@
+package org.galatea.starter.domain;
+
+public enum SettlementJobStatus {
+
+  QUEUED,
+  RUNNING,
+  COMPLETED,
+  FAILED
+
+}
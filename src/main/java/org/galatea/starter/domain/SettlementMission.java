@@ -1,9 +1,12 @@
 package org.galatea.starter.domain;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.Version;
 import javax.validation.constraints.DecimalMin;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -13,19 +16,45 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import org.galatea.starter.utils.persistence.PooledSequenceIdGenerator;
 import org.galatea.starter.utils.validation.StringEnumeration;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 /* For builder since we explicitly want to make the all args ctor private */
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
-@Builder
+@Builder(toBuilder = true)
 @Data
 @Entity
+// Held in Hibernate's second-level cache as well. Read-write concurrency soft-locks an entry while
+// its mission is being written and, since missions are versioned, never lets an older version
+// replace a newer one in the cache.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "settlementMission")
+// Back the keyset-paginated depot queries, which filter on depot (and optionally instrument) and
+// then seek and sort by id
+@Table(indexes = {
+    @Index(name = "idx_settlement_mission_depot_id", columnList = "depot, id"),
+    @Index(name = "idx_settlement_mission_depot_instrument_id",
+        columnList = "depot, instrument, id")})
 @XmlRootElement(name = "settlementMission")
 public class SettlementMission {
 
+  // Ids are reserved from the sequence in blocks (sized by fuse.id.mission_block_size in
+  // hibernate.properties) so that bulk inserts can actually be batched. The sequence is the
+  // hibernate_sequence that GenerationType.AUTO used before, so existing databases carry on from
+  // the ids they have already handed out.
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_mission_id")
+  @GenericGenerator(name = "settlement_mission_id",
+      strategy = "org.galatea.starter.utils.persistence.PooledSequenceIdGenerator",
+      parameters = {
+          @Parameter(name = "sequence_name", value = "hibernate_sequence"),
+          @Parameter(name = PooledSequenceIdGenerator.BLOCK_SIZE_SETTING,
+              value = "fuse.id.mission_block_size")})
   protected Long id;
 
   @NonNull
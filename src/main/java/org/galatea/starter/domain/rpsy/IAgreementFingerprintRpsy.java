@@ -0,0 +1,29 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+import org.galatea.starter.domain.AgreementFingerprint;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface IAgreementFingerprintRpsy extends CrudRepository<AgreementFingerprint, String> {
+
+  /**
+   * Streams every recorded fingerprint. Must be consumed (and closed) inside a transaction.
+   */
+  @Query("select f.fingerprint from AgreementFingerprint f")
+  Stream<String> streamAllFingerprints();
+
+  /**
+   * Deletes the fingerprints recorded for any of the given missions.
+   *
+   * @return the number of fingerprints deleted
+   */
+  @Modifying
+  @Transactional
+  @Query("delete from AgreementFingerprint f where f.missionId in :missionIds")
+  int deleteByMissionIdIn(@Param("missionIds") Collection<Long> missionIds);
+}
@@ -0,0 +1,62 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * Repository fragment for creating large numbers of missions without going through the
+ * persistence context.
+ */
+public interface ISettlementMissionBulkRpsy {
+
+  /**
+   * Inserts brand-new missions with plain JDBC batches of multi-row inserts, skipping the entity
+   * bookkeeping that saveAll does for each mission. Missions without an id get one from the same
+   * generator as saveAll.
+   *
+   * <p>The missions must not exist yet, and they are not attached to the persistence context once
+   * inserted.
+   *
+   * @return the given missions, in the same order, with their ids set
+   */
+  <S extends SettlementMission> List<S> insertAll(Iterable<S> missions);
+
+  /**
+   * Overwrites existing missions with the given state, version included, using plain JDBC
+   * batches. No optimistic locking check is made, so the caller must already have done one.
+   */
+  void updateAll(Iterable<? extends SettlementMission> missions);
+
+  /**
+   * Overwrites each of the given missions that is still at the version it carries, and increments
+   * its version, using plain JDBC batches of conditional updates.
+   *
+   * @return the number of rows each mission's update changed, in the same order: 1 if it was
+   *     updated, or 0 if it doesn't exist or is at a different version
+   */
+  int[] updateAllIfVersionMatches(List<? extends SettlementMission> missions);
+
+  /**
+   * Overwrites each of the given missions with the state it carries, version included, provided it
+   * is still at the matching expected version, using plain JDBC batches of conditional updates.
+   *
+   * @param expectedVersions the version each mission must be at, in the same order as missions
+   * @return the number of rows each mission's update changed, in the same order: 1 if it was
+   *     updated, or 0 if it doesn't exist or is at a different version
+   */
+  int[] updateAllIfVersionIs(List<? extends SettlementMission> missions,
+      List<Long> expectedVersions);
+
+  /**
+   * Deletes the missions with the given ids using plain JDBC batches.
+   *
+   * @return the number of rows each id's delete removed, in the same order: 0 if it didn't exist
+   */
+  int[] deleteAllById(List<Long> ids);
+
+  /**
+   * Reserves ids for missions that are going to be inserted later, from the same generator as
+   * saveAll.
+   */
+  List<Long> reserveIds(int count);
+}
@@ -0,0 +1,273 @@
+package org.galatea.starter.domain.rpsy;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JDBC implementation of ISettlementMissionBulkRpsy, picked up by Spring Data through its Impl
+ * suffix. Writes rowsPerStatement missions per insert statement and sends the statements to the
+ * database in JDBC batches.
+ *
+ * <p>Hibernate doesn't see any of these writes, so each one evicts what it made stale from
+ * Hibernate's second-level and query caches itself.
+ */
+@Slf4j
+public class ISettlementMissionBulkRpsyImpl implements ISettlementMissionBulkRpsy {
+
+  // Must be kept in line with the SettlementMission mapping (column names follow Spring Boot's
+  // default snake_case naming strategy)
+  private static final String INSERT_INTO = "insert into settlement_mission "
+      + "(id, instrument, external_party, depot, direction, qty, version) values ";
+  private static final String ROW = "(?, ?, ?, ?, ?, ?, ?)";
+  private static final String UPDATE = "update settlement_mission set instrument = ?, "
+      + "external_party = ?, depot = ?, direction = ?, qty = ?, version = ? where id = ?";
+  private static final String UPDATE_IF_VERSION_MATCHES = "update settlement_mission set "
+      + "instrument = ?, external_party = ?, depot = ?, direction = ?, qty = ?, "
+      + "version = version + 1 where id = ? and version = ?";
+  private static final String UPDATE_IF_VERSION_IS = "update settlement_mission set "
+      + "instrument = ?, external_party = ?, depot = ?, direction = ?, qty = ?, version = ? "
+      + "where id = ? and version = ?";
+  private static final String DELETE = "delete from settlement_mission where id = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final int rowsPerStatement;
+
+  private final int statementsPerBatch;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  /**
+   * Creates an implementation that writes rowsPerStatement missions per insert and sends
+   * statementsPerBatch inserts per JDBC batch.
+   */
+  public ISettlementMissionBulkRpsyImpl(final JdbcTemplate jdbcTemplate,
+      @Value("${settlement.jdbc-insert.rows-per-statement:100}") final int rowsPerStatement,
+      @Value("${settlement.jdbc-insert.statements-per-batch:50}") final int statementsPerBatch) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.rowsPerStatement = rowsPerStatement;
+    this.statementsPerBatch = statementsPerBatch;
+  }
+
+  @Override
+  @Transactional
+  public <S extends SettlementMission> List<S> insertAll(final Iterable<S> missions) {
+    List<S> missionList = Lists.newArrayList(missions);
+    if (missionList.isEmpty()) {
+      return missionList;
+    }
+    assignIds(missionList);
+
+    List<List<S>> statements = Lists.partition(missionList, rowsPerStatement);
+    List<S> last = Iterables.getLast(statements);
+
+    // Every statement but (possibly) the last has the same number of rows, so they can share one
+    // prepared statement
+    List<List<S>> fullStatements = last.size() == rowsPerStatement ? statements
+        : statements.subList(0, statements.size() - 1);
+    if (!fullStatements.isEmpty()) {
+      jdbcTemplate.batchUpdate(insertSql(rowsPerStatement), fullStatements, statementsPerBatch,
+          ISettlementMissionBulkRpsyImpl::setRows);
+    }
+    if (last.size() != rowsPerStatement) {
+      jdbcTemplate.batchUpdate(insertSql(last.size()), Collections.singletonList(last), 1,
+          ISettlementMissionBulkRpsyImpl::setRows);
+    }
+
+    log.debug("Inserted {} mission(s) in {} statement(s)", missionList.size(), statements.size());
+    // New missions can't be cached yet, but queries that should now include them can be
+    evictFromHibernateCaches(Collections.emptyList());
+    return missionList;
+  }
+
+  @Override
+  @Transactional
+  public void updateAll(final Iterable<? extends SettlementMission> missions) {
+    List<SettlementMission> missionList = Lists.newArrayList(missions);
+    jdbcTemplate.batchUpdate(UPDATE, missionList, statementsPerBatch, (ps, mission) -> {
+      ps.setString(1, mission.getInstrument());
+      ps.setString(2, mission.getExternalParty());
+      ps.setString(3, mission.getDepot());
+      ps.setString(4, mission.getDirection());
+      ps.setDouble(5, mission.getQty());
+      ps.setLong(6, mission.getVersion());
+      ps.setLong(7, mission.getId());
+    });
+    log.debug("Updated {} mission(s)", missionList.size());
+    evictFromHibernateCaches(ids(missionList));
+  }
+
+  @Override
+  @Transactional
+  public int[] updateAllIfVersionMatches(final List<? extends SettlementMission> missions) {
+    int[][] rowCounts = jdbcTemplate.batchUpdate(UPDATE_IF_VERSION_MATCHES, missions,
+        statementsPerBatch, (ps, mission) -> {
+          ps.setString(1, mission.getInstrument());
+          ps.setString(2, mission.getExternalParty());
+          ps.setString(3, mission.getDepot());
+          ps.setString(4, mission.getDirection());
+          ps.setDouble(5, mission.getQty());
+          ps.setLong(6, mission.getId());
+          ps.setLong(7, mission.getVersion());
+        });
+    log.debug("Conditionally updated {} mission(s)", missions.size());
+    evictFromHibernateCaches(ids(missions));
+    return flatten(rowCounts);
+  }
+
+  @Override
+  @Transactional
+  public int[] updateAllIfVersionIs(final List<? extends SettlementMission> missions,
+      final List<Long> expectedVersions) {
+    if (missions.size() != expectedVersions.size()) {
+      throw new IllegalArgumentException("Expected " + missions.size() + " version(s) but got "
+          + expectedVersions.size());
+    }
+    List<Integer> indexes = IntStream.range(0, missions.size()).boxed()
+        .collect(Collectors.toList());
+    int[][] rowCounts = jdbcTemplate.batchUpdate(UPDATE_IF_VERSION_IS, indexes,
+        statementsPerBatch, (ps, i) -> {
+          SettlementMission mission = missions.get(i);
+          ps.setString(1, mission.getInstrument());
+          ps.setString(2, mission.getExternalParty());
+          ps.setString(3, mission.getDepot());
+          ps.setString(4, mission.getDirection());
+          ps.setDouble(5, mission.getQty());
+          ps.setLong(6, mission.getVersion());
+          ps.setLong(7, mission.getId());
+          ps.setLong(8, expectedVersions.get(i));
+        });
+    log.debug("Conditionally overwrote {} mission(s)", missions.size());
+    evictFromHibernateCaches(ids(missions));
+    return flatten(rowCounts);
+  }
+
+  @Override
+  @Transactional
+  public int[] deleteAllById(final List<Long> ids) {
+    int[][] rowCounts = jdbcTemplate.batchUpdate(DELETE, ids, statementsPerBatch,
+        (ps, id) -> ps.setLong(1, id));
+    log.debug("Deleted up to {} mission(s)", ids.size());
+    evictFromHibernateCaches(ids);
+    return flatten(rowCounts);
+  }
+
+  @Override
+  @Transactional
+  public List<Long> reserveIds(final int count) {
+    SharedSessionContractImplementor session = session();
+    IdentifierGenerator generator = idGenerator(session);
+    List<Long> ids = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      // The sequence generators don't look at the entity
+      ids.add((Long) generator.generate(session, null));
+    }
+    return ids;
+  }
+
+  private <S extends SettlementMission> void assignIds(final List<S> missions) {
+    // Use the entity's own generator so ids come from the same sequence (and pooled blocks) as
+    // missions saved through JPA
+    SharedSessionContractImplementor session = session();
+    IdentifierGenerator generator = idGenerator(session);
+    for (S mission : missions) {
+      if (mission.getId() == null) {
+        mission.setId((Long) generator.generate(session, mission));
+      }
+    }
+  }
+
+  /*
+   * Evicts the given missions from Hibernate's second-level cache, and marks the mission table as
+   * updated so that cached query results that read it are no longer used. Only those: results
+   * cached from other tables are left alone, as they are by Hibernate's own bulk updates. If a
+   * transaction is in progress this waits until it commits, so that the old state can't be cached
+   * again by a read in between.
+   */
+  private void evictFromHibernateCaches(final Collection<Long> ids) {
+    SharedSessionContractImplementor session = session();
+    CacheImplementor cache = session.getFactory().getCache();
+    Serializable[] missionTables = session.getFactory().getMetamodel()
+        .entityPersister(SettlementMission.class).getQuerySpaces();
+    List<Long> idsToEvict = new ArrayList<>(ids);
+    Runnable evict = () -> {
+      idsToEvict.forEach(id -> cache.evictEntityData(SettlementMission.class, id));
+      cache.getTimestampsCache().invalidate(missionTables, session);
+    };
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              evict.run();
+            }
+          });
+    } else {
+      evict.run();
+    }
+  }
+
+  private static List<Long> ids(final List<? extends SettlementMission> missions) {
+    return missions.stream().map(SettlementMission::getId).collect(Collectors.toList());
+  }
+
+  private SharedSessionContractImplementor session() {
+    return entityManager.unwrap(SharedSessionContractImplementor.class);
+  }
+
+  private static IdentifierGenerator idGenerator(final SharedSessionContractImplementor session) {
+    return session.getFactory().getMetamodel().entityPersister(SettlementMission.class)
+        .getIdentifierGenerator();
+  }
+
+  /*
+   * Joins the row counts of each JDBC batch back into one row count per statement. The driver
+   * must report a real row count for every statement (with MySQL, rewriteBatchedStatements
+   * reports SUCCESS_NO_INFO instead), since callers rely on them to tell which changes were made.
+   */
+  private static int[] flatten(final int[][] rowCounts) {
+    return Arrays.stream(rowCounts).flatMapToInt(Arrays::stream).toArray();
+  }
+
+  private static String insertSql(final int rows) {
+    return INSERT_INTO + String.join(", ", Collections.nCopies(rows, ROW));
+  }
+
+  private static void setRows(final PreparedStatement ps,
+      final List<? extends SettlementMission> rows) throws SQLException {
+    int i = 1;
+    for (SettlementMission mission : rows) {
+      ps.setLong(i++, mission.getId());
+      ps.setString(i++, mission.getInstrument());
+      ps.setString(i++, mission.getExternalParty());
+      ps.setString(i++, mission.getDepot());
+      ps.setString(i++, mission.getDirection());
+      ps.setDouble(i++, mission.getQty());
+      ps.setLong(i++, mission.getVersion());
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * Repository fragment for queries that Spring Data can't derive from a method name.
+ */
+public interface ISettlementMissionQueryRpsy {
+
+  /**
+   * Retrieves the next page of missions with the given depot, ordered by id. Pages are found by
+   * keyset rather than offset: each page starts after the last id of the one before it, so every
+   * page costs the same index seek however deep into the results it is.
+   *
+   * @param instrument only return missions for this instrument; null for any
+   * @param direction only return missions in this direction; null for any
+   * @param afterId only return missions with a greater id; null to start from the beginning
+   * @param limit most missions to return
+   */
+  List<SettlementMission> findPageByDepot(String depot, String instrument, String direction,
+      Long afterId, int limit);
+
+  /**
+   * Retrieves the ids of the newest missions (those with the highest ids), newest first.
+   *
+   * @param depot only return missions with this depot; null for any
+   * @param fromId only return missions with this id or greater; null for no lower bound
+   * @param toId only return missions with this id or smaller; null for no upper bound
+   * @param limit most ids to return
+   */
+  List<Long> findRecentIds(String depot, Long fromId, Long toId, int limit);
+}
@@ -0,0 +1,72 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * JPA implementation of ISettlementMissionQueryRpsy, picked up by Spring Data through its Impl
+ * suffix.
+ *
+ * <p>Only the filters that were actually given are added to the query (rather than something
+ * like "instrument = :instrument or :instrument is null"), so that the database can match the
+ * query to the depot indexes declared on SettlementMission.
+ */
+public class ISettlementMissionQueryRpsyImpl implements ISettlementMissionQueryRpsy {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public List<SettlementMission> findPageByDepot(final String depot, final String instrument,
+      final String direction, final Long afterId, final int limit) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<SettlementMission> query = builder.createQuery(SettlementMission.class);
+    Root<SettlementMission> mission = query.from(SettlementMission.class);
+
+    List<Predicate> predicates = new ArrayList<>();
+    predicates.add(builder.equal(mission.get("depot"), depot));
+    if (instrument != null) {
+      predicates.add(builder.equal(mission.get("instrument"), instrument));
+    }
+    if (direction != null) {
+      predicates.add(builder.equal(mission.get("direction"), direction));
+    }
+    if (afterId != null) {
+      predicates.add(builder.greaterThan(mission.get("id"), afterId));
+    }
+
+    query.select(mission).where(predicates.toArray(new Predicate[0]))
+        .orderBy(builder.asc(mission.get("id")));
+    return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+  }
+
+  @Override
+  public List<Long> findRecentIds(final String depot, final Long fromId, final Long toId,
+      final int limit) {
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+    Root<SettlementMission> mission = query.from(SettlementMission.class);
+
+    List<Predicate> predicates = new ArrayList<>();
+    if (depot != null) {
+      predicates.add(builder.equal(mission.get("depot"), depot));
+    }
+    if (fromId != null) {
+      predicates.add(builder.greaterThanOrEqualTo(mission.<Long>get("id"), fromId));
+    }
+    if (toId != null) {
+      predicates.add(builder.lessThanOrEqualTo(mission.<Long>get("id"), toId));
+    }
+
+    query.select(mission.<Long>get("id")).where(predicates.toArray(new Predicate[0]))
+        .orderBy(builder.desc(mission.get("id")));
+    return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+  }
+}
@@ -1,25 +1,43 @@
 package org.galatea.starter.domain.rpsy;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import javax.persistence.QueryHint;
 import org.galatea.starter.domain.SettlementMission;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission, Long> {
+public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission, Long>,
+    ISettlementMissionBulkRpsy, ISettlementMissionQueryRpsy {
 
   /**
-   * Retrieves all entities with the given depot.
+   * Retrieves all entities with the given depot. Results are kept in Hibernate's query cache until
+   * the mission table is next written to.
    */
+  @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
   List<SettlementMission> findByDepot(String depot);
 
+  /**
+   * Retrieves which of the given ids belong to existing missions, without loading the missions.
+   */
+  @Query("select m.id from SettlementMission m where m.id in :ids")
+  Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
   @Override
   @Cacheable(cacheNames = "missions", sync = true)
   Optional<SettlementMission> findById(Long id);
 
+  // Cached responses for the mission go with it
   @Override
-  @CacheEvict(cacheNames = "missions")
+  @CacheEvict(cacheNames = {"missions", "missionResponses"})
   void deleteById(Long id);
 
   /**
@@ -27,6 +45,25 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
    * specified. You must use position parameter bindings otherwise.
    */
   @Override
-  @CacheEvict(cacheNames = "missions", key = "#p0.getId()")
+  @CacheEvict(cacheNames = {"missions", "missionResponses"}, key = "#p0.getId()")
   <S extends SettlementMission> S save(S entity);
+
+  /**
+   * Overwrites the mission with the same id as the one given, but only if it is still at the
+   * given mission's version, and increments its version. Unlike save, this is a single UPDATE
+   * statement, without loading the mission first.
+   *
+   * <p>Bean validation is not run, since the mission never becomes a managed entity.
+   *
+   * @return 1 if the mission was updated, or 0 if it doesn't exist or is at a different version
+   */
+  @Modifying(clearAutomatically = true)
+  @Transactional
+  @CacheEvict(cacheNames = {"missions", "missionResponses"}, key = "#p0.getId()")
+  @Query("update SettlementMission m set m.instrument = :#{#mission.instrument}, "
+      + "m.externalParty = :#{#mission.externalParty}, m.depot = :#{#mission.depot}, "
+      + "m.direction = :#{#mission.direction}, m.qty = :#{#mission.qty}, "
+      + "m.version = m.version + 1 "
+      + "where m.id = :#{#mission.id} and m.version = :#{#mission.version}")
+  int updateIfVersionMatches(@Param("mission") SettlementMission mission);
 }
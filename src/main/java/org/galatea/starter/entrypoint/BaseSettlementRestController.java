@@ -1,8 +1,13 @@
 package org.galatea.starter.entrypoint;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.NonNull;
@@ -10,9 +15,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.domain.MissionChangeStatus;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.MissionChangeResult;
+import org.galatea.starter.entrypoint.messagecontracts.MissionIdRange;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementIngestSummaryMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionPage;
+import org.galatea.starter.service.MissionResponseCache;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.http.converter.CachedResponseBody;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.beans.factory.annotation.Value;
 
 /**
  * Implements a base class for settlement rest controllers to avoid duplicating the logic of calling
@@ -23,18 +38,117 @@ import org.galatea.starter.service.SettlementService;
 @Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
 public abstract class BaseSettlementRestController extends BaseRestController {
 
+  /**
+   * Header through which clients can label a request so that retrying it doesn't spawn duplicate
+   * missions (requires settlement.idempotency.enabled).
+   */
+  public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
   @NonNull
   SettlementService settlementService;
 
+  @NonNull
+  MissionResponseCache missionResponseCache;
+
+  @Value("${settlement.ingest.chunk-size:1000}")
+  private int ingestChunkSize;
+
+  @Value("${settlement.depot-query.default-page-size:100}")
+  private int defaultDepotPageSize;
+
+  @Value("${settlement.depot-query.max-page-size:1000}")
+  private int maxDepotPageSize;
+
+  @Value("${settlement.depot-query.stream-page-size:1000}")
+  private int depotStreamPageSize;
+
   /**
    * Invokes the settlement service to spawn missions for the specified trade agreements.
    */
   protected Set<String> settleAgreementInternal(final List<TradeAgreement> agreements,
       final String getMissionPath) {
+    return settleAgreementInternal(agreements, null, getMissionPath);
+  }
+
+  /**
+   * Invokes the settlement service to spawn missions for the specified trade agreements, labelled
+   * with the client's idempotency key if one was sent.
+   */
+  protected Set<String> settleAgreementInternal(final List<TradeAgreement> agreements,
+      final String idempotencyKey, final String getMissionPath) {
+
+    return spawnMissionIdsInternal(agreements, idempotencyKey).stream()
+        .map(id -> getMissionPath + id).collect(Collectors.toSet());
+  }
+
+  /**
+   * Invokes the settlement service to spawn missions for the specified trade agreements, returning
+   * the IDs rather than the paths of the spawned missions, in ascending order.
+   */
+  protected SortedSet<Long> spawnMissionIdsInternal(final List<TradeAgreement> agreements,
+      final String idempotencyKey) {
+
+    Set<Long> missionIds = idempotencyKey == null ? settlementService.spawnMissions(agreements)
+        : settlementService.spawnMissions(agreements, idempotencyKey);
+    return new TreeSet<>(missionIds);
+  }
+
+  /**
+   * Collapses sorted mission IDs into runs of consecutive IDs.
+   */
+  protected List<MissionIdRange> toMissionIdRanges(final SortedSet<Long> missionIds) {
+    List<MissionIdRange> ranges = new ArrayList<>();
+    Long first = null;
+    long last = 0;
+    for (Long id : missionIds) {
+      if (first != null && id == last + 1) {
+        last = id;
+        continue;
+      }
+      if (first != null) {
+        ranges.add(toMissionIdRange(first, last));
+      }
+      first = id;
+      last = id;
+    }
+    if (first != null) {
+      ranges.add(toMissionIdRange(first, last));
+    }
+    return ranges;
+  }
+
+  /**
+   * Builds the paths at which the given missions can be retrieved.
+   */
+  protected List<String> toMissionPaths(final Set<Long> missionIds,
+      final String getMissionPath) {
+    return missionIds.stream().sorted().map(id -> getMissionPath + id)
+        .collect(Collectors.toList());
+  }
 
-    Set<Long> missionIds = settlementService.spawnMissions(agreements);
-    return missionIds.stream().map(id -> getMissionPath + id)
-        .collect(Collectors.toSet());
+  private static MissionIdRange toMissionIdRange(final long first, final long last) {
+    return MissionIdRange.builder().first(first).last(last).count(last - first + 1).build();
+  }
+
+  /**
+   * Spawns missions for a stream of trade agreements, handing them to the settlement service in
+   * fixed-size chunks as they are read so that the whole stream is never held in memory.
+   */
+  protected SettlementIngestSummaryMessage settleAgreementStreamInternal(
+      final Iterator<TradeAgreement> agreements) {
+
+    ChunkedMissionSpawner spawner = newMissionSpawner();
+    agreements.forEachRemaining(spawner);
+    return spawner.finish();
+  }
+
+  /**
+   * Creates a spawner that settles trade agreements in fixed-size chunks as they are handed to it,
+   * for sources that push agreements as they read them (e.g. SAX parsers) rather than being
+   * iterated. Call finish() on it once the source is exhausted.
+   */
+  ChunkedMissionSpawner newMissionSpawner() {
+    return new ChunkedMissionSpawner(settlementService, ingestChunkSize);
   }
 
   /**
@@ -44,6 +158,19 @@ public abstract class BaseSettlementRestController extends BaseRestController {
     return settlementService.findMission(id);
   }
 
+  /**
+   * Retrieves a settlement mission from the settlement service as a response body that reuses the
+   * bytes of an earlier response for the same version of the mission, if there was one.
+   *
+   * @param translator turns the mission into the message to return; only called if the response
+   *     isn't cached
+   */
+  protected Optional<CachedResponseBody> getMissionBodyInternal(final Long id,
+      final Function<SettlementMission, ?> translator) {
+    return getMissionInternal(id)
+        .map(mission -> missionResponseCache.bodyFor(mission, translator));
+  }
+
   /**
    * Retrieves multiple settlement missions from the settlement service.
    *
@@ -54,15 +181,96 @@ public abstract class BaseSettlementRestController extends BaseRestController {
   }
 
   /**
-   * Updates settlement mission, if it exists.
+   * Retrieves a page of the missions with the given depot from the settlement service.
+   *
+   * @param afterId the nextAfterId of the previous page; null for the first page
+   * @param limit most missions to return; null for the default page size, and capped at the
+   *     maximum page size
+   * @param translator turns each mission on the page into the message to return
+   */
+  protected SettlementMissionPage getMissionPageByDepotInternal(final String depot,
+      final String instrument, final String direction, final Long afterId, final Integer limit,
+      final Function<SettlementMission, SettlementMissionMessage> translator) {
+    int pageSize = limit == null ? defaultDepotPageSize
+        : Math.max(1, Math.min(limit, maxDepotPageSize));
+
+    // Ask for one more mission than fits on the page to find out whether there's another page
+    List<SettlementMission> missions = settlementService
+        .findMissionsByDepot(depot, instrument, direction, afterId, pageSize + 1);
+    if (missions.size() <= pageSize) {
+      return new SettlementMissionPage(translateAll(missions, translator), null);
+    }
+
+    List<SettlementMission> page = missions.subList(0, pageSize);
+    return new SettlementMissionPage(translateAll(page, translator),
+        page.get(pageSize - 1).getId());
+  }
+
+  private static List<SettlementMissionMessage> translateAll(
+      final List<SettlementMission> missions,
+      final Function<SettlementMission, SettlementMissionMessage> translator) {
+    return missions.stream().map(translator).collect(Collectors.toList());
+  }
+
+  /**
+   * Lazily iterates over the missions with the given IDs, skipping any that don't exist, loading
+   * them from the settlement service as many at a time as a depot stream does.
+   */
+  protected Iterator<SettlementMission> iterateMissionsInternal(final List<Long> ids) {
+    return settlementService.iterateMissions(ids, depotStreamPageSize);
+  }
+
+  /**
+   * Lazily iterates over all the missions with the given depot, loading them from the settlement
+   * service a page at a time.
+   */
+  protected Iterator<SettlementMission> iterateMissionsByDepotInternal(final String depot,
+      final String instrument, final String direction) {
+    return settlementService
+        .iterateMissionsByDepot(depot, instrument, direction, depotStreamPageSize);
+  }
+
+  /**
+   * Updates settlement mission, if it exists. There's no separate check for whether it exists,
+   * since the update itself finds that out.
    */
   protected Optional<SettlementMission> updateMissionInternal(final Long id,
       final SettlementMission mission) {
-    if (settlementService.missionExists(id)) {
-      return settlementService.updateMission(id, mission);
-    } else {
-      return Optional.empty();
+    return settlementService.updateMission(id, mission);
+  }
+
+  /**
+   * Updates many settlement missions in one transaction, reporting the outcome for each mission
+   * in the order they were given.
+   */
+  protected List<MissionChangeResult> updateMissionsInternal(
+      final List<SettlementMission> missions) {
+    List<Long> ids = new ArrayList<>(missions.size());
+    for (SettlementMission mission : missions) {
+      if (mission.getId() == null) {
+        throw new TranslationException("Every mission in a batch update must have an id.");
+      }
+      ids.add(mission.getId());
+    }
+    return toChangeResults(ids, settlementService.updateMissions(missions));
+  }
+
+  /**
+   * Deletes many settlement missions in one transaction, reporting the outcome for each mission
+   * in the order they were given.
+   */
+  protected List<MissionChangeResult> deleteMissionsInternal(final List<Long> ids) {
+    return toChangeResults(ids, settlementService.deleteMissions(ids));
+  }
+
+  private static List<MissionChangeResult> toChangeResults(final List<Long> ids,
+      final List<MissionChangeStatus> statuses) {
+    List<MissionChangeResult> results = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      results.add(MissionChangeResult.builder().id(ids.get(i)).status(statuses.get(i).name())
+          .build());
     }
+    return results;
   }
 
   /**
@@ -0,0 +1,57 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.utils.cache.CacheStatistics;
+import org.galatea.starter.utils.cache.InstrumentedCache;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint (/actuator/cachestats) that dumps the configuration and current statistics of
+ * every cache, or of a single cache at /actuator/cachestats/{name}. Unlike the built-in caches
+ * endpoint it reports how well each cache is doing, so that caches can be sized from real numbers.
+ */
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatisticsEndpoint {
+
+  @NonNull
+  CacheManager cacheManager;
+
+  /**
+   * Returns the statistics of every cache, keyed by cache name.
+   */
+  @ReadOperation
+  public Map<String, CacheStatistics> allCacheStatistics() {
+    Map<String, CacheStatistics> statistics = new TreeMap<>();
+    for (String name : cacheManager.getCacheNames()) {
+      statistics.put(name, cacheStatistics(name));
+    }
+    return statistics;
+  }
+
+  /**
+   * Returns the statistics of the named cache, or null (a 404) if there is no such cache.
+   */
+  @ReadOperation
+  public CacheStatistics cacheStatistics(@Selector final String name) {
+    Cache cache = cacheManager.getCache(name);
+    if (cache == null) {
+      return null;
+    }
+    if (cache instanceof InstrumentedCache) {
+      return ((InstrumentedCache) cache).getStatistics();
+    }
+    // Only instrumented caches keep statistics
+    return CacheStatistics.builder().name(name).type(cache.getNativeCache().getClass().getName())
+        .build();
+  }
+}
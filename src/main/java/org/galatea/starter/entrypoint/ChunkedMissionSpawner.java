@@ -0,0 +1,69 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementIngestSummaryMessage;
+import org.galatea.starter.service.SettlementService;
+
+/**
+ * Buffers trade agreements into fixed-size chunks and spawns the missions for each chunk as soon
+ * as it fills up. Only one chunk is ever held in memory, so uploads of any size can be settled.
+ *
+ * <p>Each chunk is saved in its own transaction. If a chunk fails (e.g. validation), the chunks
+ * before it stay committed and the exception is propagated to the caller.
+ */
+@Slf4j
+class ChunkedMissionSpawner implements Consumer<TradeAgreement> {
+
+  private final SettlementService settlementService;
+  private final int chunkSize;
+  private final List<TradeAgreement> chunk;
+
+  private long agreementCount;
+  private long missionCount;
+  private int chunkCount;
+
+  ChunkedMissionSpawner(final SettlementService settlementService, final int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive but was " + chunkSize);
+    }
+    this.settlementService = settlementService;
+    this.chunkSize = chunkSize;
+    this.chunk = new ArrayList<>(chunkSize);
+  }
+
+  @Override
+  public void accept(final TradeAgreement agreement) {
+    chunk.add(agreement);
+    agreementCount++;
+    if (chunk.size() >= chunkSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Spawns missions for any partially-filled chunk and returns a summary of everything that was
+   * spawned through this instance.
+   */
+  SettlementIngestSummaryMessage finish() {
+    flush();
+    return SettlementIngestSummaryMessage.builder().agreementCount(agreementCount)
+        .missionCount(missionCount).chunkCount(chunkCount).build();
+  }
+
+  private void flush() {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    // Pass a copy since the service (or a mock of it) may hold on to the list it was given
+    Set<Long> missionIds = settlementService.spawnMissions(new ArrayList<>(chunk));
+    missionCount += missionIds.size();
+    chunkCount++;
+    log.debug("Chunk {} spawned {} mission(s)", chunkCount, missionIds.size());
+    chunk.clear();
+  }
+}
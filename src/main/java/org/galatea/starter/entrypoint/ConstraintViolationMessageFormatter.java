@@ -9,12 +9,18 @@ public class ConstraintViolationMessageFormatter {
   }
 
   /**
-   * Creates a String listing all the violations held in the given ConstraintViolationException.
+   * Creates a String listing all the violations held in the given ConstraintViolationException,
+   * each prefixed with the path of the property that violates it (e.g.
+   * "agreements[17].qty: Quantity must be greater than 0").
    */
   public static String toMessage(final ConstraintViolationException exception) {
     StringBuilder sb = new StringBuilder();
 
     for (ConstraintViolation<?> cv : exception.getConstraintViolations()) {
+      String path = cv.getPropertyPath() == null ? "" : cv.getPropertyPath().toString();
+      if (!path.isEmpty()) {
+        sb.append(path).append(": ");
+      }
       sb.append(cv.getMessage());
       sb.append(". ");
     }
@@ -0,0 +1,25 @@
+package org.galatea.starter.entrypoint;
+
+/**
+ * How the IDs of newly spawned missions are reported back to the client, chosen with the idFormat
+ * request parameter when settling agreements.
+ */
+public enum MissionIdFormat {
+  /**
+   * One path per mission. This is the default, and the only format that doesn't need the client
+   * to build the paths itself.
+   */
+  PATHS,
+
+  /**
+   * The mission path prefix plus the IDs as sorted runs of consecutive IDs. Missions spawned
+   * together are given consecutive IDs, so a large batch usually collapses into a single range.
+   */
+  RANGES,
+
+  /**
+   * The mission path prefix plus the sorted IDs, delta-encoded in a packed repeated field. Only
+   * supported by the protobuf endpoint; the JSON and XML endpoint falls back to RANGES.
+   */
+  PACKED
+}
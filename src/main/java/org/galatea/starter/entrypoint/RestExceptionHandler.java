@@ -1,10 +1,14 @@
 package org.galatea.starter.entrypoint;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import feign.FeignException;
 import javax.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.http.converter.SpreadsheetFormatException;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -38,6 +42,19 @@ public class RestExceptionHandler {
     return buildResponseEntity(error);
   }
 
+  /**
+   * Handles malformed input found part way through a streamed request body, which surfaces after
+   * the message converters have already run.
+   */
+  @ExceptionHandler({RuntimeJsonMappingException.class, TranslationException.class,
+      SpreadsheetFormatException.class})
+  protected ResponseEntity<Object> handleStreamNotReadable(final RuntimeException exception) {
+    log.debug("Could not read streamed message", exception);
+    String errorMessage = "Incorrectly formatted message.  Please consult the documentation.";
+    ApiError error = new ApiError(HttpStatus.BAD_REQUEST, errorMessage);
+    return buildResponseEntity(error);
+  }
+
   @ExceptionHandler(DataAccessException.class)
   protected ResponseEntity<Object> handleDataAccessException(final DataAccessException exception) {
     log.error("Unexpected data access error", exception);
@@ -74,6 +91,15 @@ public class RestExceptionHandler {
     return buildResponseEntity(error);
   }
 
+  @ExceptionHandler(TaskRejectedException.class)
+  protected ResponseEntity<Object> handleTaskRejected(final TaskRejectedException exception) {
+    log.warn("Rejected background work", exception);
+
+    String errorMessage = "The service is too busy to accept the request.  Please try again later.";
+    ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, errorMessage);
+    return buildResponseEntity(error);
+  }
+
   @ExceptionHandler(FeignException.class)
   protected ResponseEntity<Object> handleFeignStatusException(final FeignException exception) {
     log.error("Error connecting to IEX", exception);
@@ -0,0 +1,209 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import javax.jms.BytesMessage;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.jms.BatchMessageListener;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batching alternative to SettlementJmsListener, enabled with jms.batch.enabled. Agreements pulled
+ * off the settlement queues are collected into batches and each batch is settled with a single
+ * call to the settlement service (one transaction and one bulk insert). The messages are only
+ * acknowledged once that call has returned.
+ *
+ * <p>If a batch fails validation its agreements are settled one at a time instead, each in its own
+ * transaction. Once any of them has been settled (or dead-lettered) the batch can no longer be
+ * redelivered without settling that agreement twice, so from then on every agreement that fails,
+ * for whatever reason, is dead-lettered and the batch is always acknowledged.
+ *
+ * <p>Messages that can't be read are only dead-lettered once the rest of their batch has been
+ * settled, so that a batch that is rolled back and redelivered doesn't dead-letter them twice.
+ *
+ * <p>Records the size of each batch (settlement.jms.batch.size) and how long it took to settle
+ * (settlement.jms.batch.flush), both tagged with the queue.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "true")
+public class SettlementBatchJmsListener implements JmsListenerConfigurer {
+
+  protected final SettlementService settlementService;
+
+  protected final ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+
+  protected final ITranslator<TradeAgreementMessage, TradeAgreement>
+      tradeAgreementMessageTranslator;
+
+  protected final JmsListenerContainerFactory<DefaultMessageListenerContainer> containerFactory;
+
+  protected final BiConsumer<Message, Exception> failedMessageConsumer;
+
+  protected final MeterRegistry meterRegistry;
+
+  // Built from the application's ObjectMapper rather than a bare one, so that e.g. unknown fields
+  // are ignored as they are by SettlementJmsListener. ObjectReaders are immutable and
+  // thread-safe, so one instance can be shared by all consumers.
+  protected final ObjectReader agreementReader;
+
+  // Registered once per queue in configureJmsListeners, where the queue names are known
+  private final Map<String, DistributionSummary> batchSizes = new HashMap<>();
+  private final Map<String, Timer> flushTimers = new HashMap<>();
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  protected String protoQueueName;
+
+  @Value("${jms.listener-concurrency}")
+  protected String concurrency;
+
+  /**
+   * Creates a listener whose endpoints run in containers from the batch container factory.
+   */
+  public SettlementBatchJmsListener(final SettlementService settlementService,
+      final ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator,
+      final ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator,
+      @Qualifier("batchJmsListenerContainerFactory")
+      final JmsListenerContainerFactory<DefaultMessageListenerContainer> containerFactory,
+      final BiConsumer<Message, Exception> failedMessageConsumer,
+      final MeterRegistry meterRegistry, final ObjectMapper objectMapper) {
+    this.settlementService = settlementService;
+    this.tradeAgreementProtoTranslator = tradeAgreementProtoTranslator;
+    this.tradeAgreementMessageTranslator = tradeAgreementMessageTranslator;
+    this.containerFactory = containerFactory;
+    this.failedMessageConsumer = failedMessageConsumer;
+    this.meterRegistry = meterRegistry;
+    this.agreementReader = objectMapper.readerFor(TradeAgreementMessage.class);
+  }
+
+  /**
+   * Registers the batching endpoints for the JSON and protobuf agreement queues.
+   */
+  @Override
+  public void configureJmsListeners(final JmsListenerEndpointRegistrar registrar) {
+    registerMeters(jsonQueueName);
+    registerMeters(protoQueueName);
+    registrar.registerEndpoint(endpoint("settlementBatchJson", jsonQueueName,
+        messages -> settle(jsonQueueName, messages, this::readJson)), containerFactory);
+    registrar.registerEndpoint(endpoint("settlementBatchProto", protoQueueName,
+        messages -> settle(protoQueueName, messages, this::readProto)), containerFactory);
+  }
+
+  private void registerMeters(final String queue) {
+    batchSizes.put(queue, DistributionSummary.builder("settlement.jms.batch.size")
+        .tag("queue", queue).baseUnit("agreements").register(meterRegistry));
+    flushTimers.put(queue, Timer.builder("settlement.jms.batch.flush").tag("queue", queue)
+        .register(meterRegistry));
+  }
+
+  private SimpleJmsListenerEndpoint endpoint(final String id, final String destination,
+      final BatchMessageListener listener) {
+    SimpleJmsListenerEndpoint endpoint = new SimpleJmsListenerEndpoint();
+    endpoint.setId(id);
+    endpoint.setDestination(destination);
+    endpoint.setConcurrency(concurrency);
+    endpoint.setMessageListener(listener);
+    return endpoint;
+  }
+
+  private TradeAgreement readJson(final Message message) throws Exception {
+    TradeAgreementMessage agreementMessage =
+        agreementReader.readValue(((TextMessage) message).getText());
+    return tradeAgreementMessageTranslator.translate(agreementMessage);
+  }
+
+  private TradeAgreement readProto(final Message message) throws Exception {
+    BytesMessage bytesMessage = (BytesMessage) message;
+    byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+    bytesMessage.readBytes(bytes);
+    return tradeAgreementProtoTranslator.translate(bytes);
+  }
+
+  private void settle(final String queue, final List<Message> messages,
+      final AgreementReader reader) {
+    // Messages that can't be read are dropped (and reported) without holding up the rest
+    List<Message> readMessages = new ArrayList<>(messages.size());
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    Map<Message, Exception> unreadMessages = new LinkedHashMap<>();
+    for (Message message : messages) {
+      try {
+        agreements.add(reader.read(message));
+        readMessages.add(message);
+      } catch (Exception e) {
+        unreadMessages.put(message, e);
+      }
+    }
+
+    if (!agreements.isEmpty()) {
+      batchSizes.get(queue).record(agreements.size());
+      // Throws, rolling the whole batch back, if it is to be redelivered
+      flushTimers.get(queue).record(() -> spawnMissions(readMessages, agreements));
+    }
+    unreadMessages.forEach(failedMessageConsumer);
+  }
+
+  private void spawnMissions(final List<Message> messages, final List<TradeAgreement> agreements) {
+    try {
+      Set<Long> missionIds = settlementService.spawnMissions(agreements);
+      log.info("Created {} mission(s) from a batch of {} agreement(s)", missionIds.size(),
+          agreements.size());
+    } catch (ConstraintViolationException e) {
+      // The batch is rejected as a whole, so settle the agreements one at a time to find out which
+      // ones are invalid and let the rest through
+      log.warn("Batch of {} agreement(s) failed validation, settling them individually",
+          agreements.size());
+      boolean anyHandled = false;
+      for (int i = 0; i < agreements.size(); i++) {
+        try {
+          settlementService.spawnMissions(Collections.singletonList(agreements.get(i)));
+        } catch (ConstraintViolationException invalid) {
+          failedMessageConsumer.accept(messages.get(i), invalid);
+        } catch (RuntimeException failure) {
+          // Until something has been settled or dead-lettered the batch can simply be redelivered
+          if (!anyHandled) {
+            throw failure;
+          }
+          log.error("Agreement failed after part of its batch was settled, dead-lettering it",
+              failure);
+          failedMessageConsumer.accept(messages.get(i), failure);
+        }
+        anyHandled = true;
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface AgreementReader {
+
+    TradeAgreement read(Message message) throws Exception;
+  }
+}
@@ -9,12 +9,18 @@ import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Component;
 
+/**
+ * Settles each agreement pulled off the settlement queues as soon as it arrives. Replaced by
+ * SettlementBatchJmsListener when jms.batch.enabled is set.
+ */
 @RequiredArgsConstructor
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "false", matchIfMissing = true)
 public class SettlementJmsListener {
 
   @NonNull
@@ -1,29 +1,54 @@
 package org.galatea.starter.entrypoint;
 
+import com.google.common.collect.AbstractIterator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.MissionChangeResult;
+import org.galatea.starter.entrypoint.messagecontracts.MissionIdRange;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionChangeResultProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdRangeProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementBatchResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementIngestSummaryProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementIngestSummaryMessage;
+import org.galatea.starter.service.MissionResponseCache;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.http.converter.CachedResponseBody;
 import org.galatea.starter.utils.translation.ITranslator;
+import org.galatea.starter.utils.translation.TranslationException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST controller that mimics the behavior of SettlementRestController but accepts and returns only
@@ -40,9 +65,16 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   @NonNull
   private ITranslator<SettlementMission, SettlementMissionProtoMessage> settlementMissionTranslator;
 
+  @NonNull
+  private ITranslator<SettlementMissionProtoMessages, List<SettlementMission>>
+      settlementMissionMessagesTranslator;
+
   @NonNull
   private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  private ITranslator<TradeAgreementProtoMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
@@ -55,45 +87,102 @@ public class SettlementProtoRestController extends BaseSettlementRestController
    * constructor, necessitating a call to super() from here.
    */
   public SettlementProtoRestController(final SettlementService settlementService,
+      final MissionResponseCache missionResponseCache,
       final ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator,
+      final ITranslator<TradeAgreementProtoMessage, TradeAgreement> tradeAgreementMessageTranslator,
       final ITranslator<SettlementMission, SettlementMissionProtoMessage>
-          settlementMissionTranslator) {
-    super(settlementService);
+          settlementMissionTranslator,
+      final ITranslator<SettlementMissionProtoMessages, List<SettlementMission>>
+          settlementMissionMessagesTranslator) {
+    super(settlementService, missionResponseCache);
     this.settlementMissionTranslator = settlementMissionTranslator;
+    this.settlementMissionMessagesTranslator = settlementMissionMessagesTranslator;
     this.tradeAgreementTranslator = tradeAgreementTranslator;
+    this.tradeAgreementMessageTranslator = tradeAgreementMessageTranslator;
   }
 
   /**
    * Spawn settlement missions from the supplied trade agreement messages.
+   *
+   * <p>The spawned missions are returned as paths by default; idFormat=RANGES or idFormat=PACKED
+   * return their IDs in a much more compact form for large batches (see MissionIdFormat).
    */
   @PostMapping(value = "${mvc.settleMissionPath}", consumes = APPLICATION_X_PROTOBUF,
       produces = APPLICATION_X_PROTOBUF)
   public SettlementResponseProtoMessage settleAgreement(
       @RequestBody final TradeAgreementProtoMessages messages,
+      @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey,
+      @RequestParam(value = "idFormat", defaultValue = "PATHS") final MissionIdFormat idFormat,
       @RequestParam(value = "requestId", required = false) final String requestId) {
     // if an external request id was provided, grab it
     processRequestId(requestId);
 
     List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
-    Set<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
 
-    return SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths)
-        .build();
+    if (idFormat == MissionIdFormat.PATHS) {
+      Set<String> missionPaths =
+          settleAgreementInternal(agreements, idempotencyKey, getMissionPath);
+      return SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths)
+          .build();
+    }
+
+    SortedSet<Long> missionIds = spawnMissionIdsInternal(agreements, idempotencyKey);
+    SettlementResponseProtoMessage.Builder response = SettlementResponseProtoMessage.newBuilder()
+        .setMissionPath(getMissionPath);
+
+    if (idFormat == MissionIdFormat.RANGES) {
+      for (MissionIdRange range : toMissionIdRanges(missionIds)) {
+        response.addSpawnedMissionRanges(MissionIdRangeProtoMessage.newBuilder()
+            .setFirst(range.getFirst()).setLast(range.getLast()).setCount(range.getCount()));
+      }
+    } else {
+      // Consecutive IDs become a delta of 1, which packs into a single byte per mission
+      long previous = 0;
+      for (Long id : missionIds) {
+        response.addSpawnedMissionIdDeltas(id - previous);
+        previous = id;
+      }
+    }
+    return response.build();
+  }
+
+  /**
+   * Spawn settlement missions from a stream of length-delimited trade agreement messages.
+   *
+   * <p>Messages are parsed one at a time straight off the request body and settled in fixed-size
+   * chunks, so memory use doesn't depend on the size of the upload.
+   */
+  @PostMapping(value = "${mvc.settleMissionPath}" + "/stream",
+      consumes = MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED_VALUE,
+      produces = APPLICATION_X_PROTOBUF)
+  public SettlementIngestSummaryProtoMessage settleAgreementStream(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    SettlementIngestSummaryMessage summary =
+        settleAgreementStreamInternal(readDelimitedAgreements(body));
+
+    return SettlementIngestSummaryProtoMessage.newBuilder()
+        .setAgreementCount(summary.getAgreementCount())
+        .setMissionCount(summary.getMissionCount())
+        .setChunkCount(summary.getChunkCount()).build();
   }
 
   /**
    * Retrieves existing settlement mission messages.
    */
   @GetMapping(value = "${mvc.getMissionPath}" + "{id}", produces = APPLICATION_X_PROTOBUF)
-  public ResponseEntity<SettlementMissionProtoMessage> getMission(@PathVariable final Long id,
+  public ResponseEntity<CachedResponseBody> getMission(@PathVariable final Long id,
       @RequestParam(value = "requestId", required = false) final String requestId) {
     // if an external request id was provided, grab it
     processRequestId(requestId);
 
-    Optional<SettlementMission> msn = getMissionInternal(id);
+    Optional<CachedResponseBody> body =
+        getMissionBodyInternal(id, settlementMissionTranslator::translate);
 
-    if (msn.isPresent()) {
-      return new ResponseEntity<>(settlementMissionTranslator.translate(msn.get()), HttpStatus.OK);
+    if (body.isPresent()) {
+      return new ResponseEntity<>(body.get(), HttpStatus.OK);
     }
 
     // An HTTP request that gets here will be expecting a protobuf response body, so we can't throw
@@ -103,4 +192,153 @@ public class SettlementProtoRestController extends BaseSettlementRestController
     // could add a test for the not-found case in order to meet coverage requirements
     return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
   }
+
+  /**
+   * Retrieves many existing settlement missions at once, in a single protobuf message.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}", produces = APPLICATION_X_PROTOBUF)
+  public ResponseEntity<SettlementMissionProtoMessages> getMissions(
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<SettlementMission> missions;
+    try {
+      missions = getMissionsInternal(parseIds(ids));
+    } catch (EntityNotFoundException e) {
+      // As with getMission, the not-found error can't be written as protobuf (see issue #272)
+      log.info("Not all of the requested missions were found", e);
+      return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+    }
+
+    SettlementMissionProtoMessages.Builder messages = SettlementMissionProtoMessages.newBuilder();
+    for (SettlementMission mission : missions) {
+      messages.addMessage(settlementMissionTranslator.translate(mission));
+    }
+    return new ResponseEntity<>(messages.build(), HttpStatus.OK);
+  }
+
+  /**
+   * Streams the settlement missions with the given IDs as length-delimited messages. Each
+   * message is written as soon as its mission has been read, and missions are read a page at a
+   * time, so memory use doesn't depend on how many IDs are asked for.
+   *
+   * <p>IDs that don't exist are skipped, since the response has already started by the time
+   * they're found.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}",
+      produces = MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamMissions(
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<Long> idLongs = parseIds(ids);
+    StreamingResponseBody body = out -> {
+      Iterator<SettlementMission> missions = iterateMissionsInternal(idLongs);
+      while (missions.hasNext()) {
+        settlementMissionTranslator.translate(missions.next()).writeDelimitedTo(out);
+      }
+    };
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED)
+        .body(body);
+  }
+
+  /**
+   * Streams all the settlement missions with the given depot as length-delimited messages,
+   * optionally narrowed down to an instrument and/or direction.
+   *
+   * <p>Missions are loaded a page at a time and written out as they're loaded, so memory use
+   * doesn't depend on how many missions match.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}" + "/depot/{depot}/stream",
+      produces = MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamMissionsByDepot(
+      @PathVariable final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "direction", required = false) final String direction,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    StreamingResponseBody body = out -> {
+      Iterator<SettlementMission> missions =
+          iterateMissionsByDepotInternal(depot, instrument, direction);
+      while (missions.hasNext()) {
+        settlementMissionTranslator.translate(missions.next()).writeDelimitedTo(out);
+      }
+    };
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED)
+        .body(body);
+  }
+
+  /**
+   * Updates many existing settlement missions at once, in a single transaction. Missions that
+   * have changed since the version they carry, or don't exist, are left alone.
+   */
+  @PutMapping(value = "${mvc.updateMissionsPath}", consumes = APPLICATION_X_PROTOBUF,
+      produces = APPLICATION_X_PROTOBUF)
+  public SettlementBatchResponseProtoMessage updateMissions(
+      @RequestBody final SettlementMissionProtoMessages messages,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<SettlementMission> missions = settlementMissionMessagesTranslator.translate(messages);
+    return toBatchResponse(updateMissionsInternal(missions));
+  }
+
+  /**
+   * Deletes many settlement missions at once, in a single transaction.
+   */
+  @DeleteMapping(value = "${mvc.deleteMissionsPath}", produces = APPLICATION_X_PROTOBUF)
+  public SettlementBatchResponseProtoMessage deleteMissions(
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return toBatchResponse(deleteMissionsInternal(parseIds(ids)));
+  }
+
+  private static List<Long> parseIds(final String ids) {
+    return Arrays.stream(ids.split(",")).map(Long::parseLong).collect(Collectors.toList());
+  }
+
+  private static SettlementBatchResponseProtoMessage toBatchResponse(
+      final List<MissionChangeResult> results) {
+    SettlementBatchResponseProtoMessage.Builder response =
+        SettlementBatchResponseProtoMessage.newBuilder();
+    for (MissionChangeResult result : results) {
+      response.addResult(MissionChangeResultProtoMessage.newBuilder().setId(result.getId())
+          .setStatus(result.getStatus()));
+    }
+    return response.build();
+  }
+
+  /*
+   * Lazily reads length-delimited trade agreement messages from the given stream, translating
+   * each one as it's read.
+   */
+  private Iterator<TradeAgreement> readDelimitedAgreements(final InputStream body) {
+    return new AbstractIterator<TradeAgreement>() {
+      @Override
+      protected TradeAgreement computeNext() {
+        TradeAgreementProtoMessage message;
+        try {
+          message = TradeAgreementProtoMessage.parseDelimitedFrom(body);
+        } catch (IOException e) {
+          throw new TranslationException("Could not read a trade agreement from the stream.", e);
+        }
+
+        // parseDelimitedFrom returns null once the end of the stream is reached
+        if (message == null) {
+          return endOfData();
+        }
+        return tradeAgreementMessageTranslator.translate(message);
+      }
+    };
+  }
 }
@@ -1,27 +1,51 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.Iterators;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SortedSet;
 import java.util.stream.Collectors;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.SettlementJob;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementBatchResponseMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementIngestSummaryMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementJobMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionPage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.MissionResponseCache;
+import org.galatea.starter.service.SettlementJobService;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.http.converter.CachedResponseBody;
+import org.galatea.starter.utils.http.converter.CsvSerializer;
+import org.galatea.starter.utils.http.converter.XlsxSerializer;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -29,8 +53,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * REST Controller that generates and listens to http endpoints which allow the caller to create
@@ -42,15 +68,35 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class SettlementRestController extends BaseSettlementRestController {
 
+  @NonNull
+  SettlementJobService settlementJobService;
+
+  // Built from the application's ObjectMapper, so streamed agreements are read with the same
+  // settings as agreements posted as a JSON array. ObjectReaders are immutable and thread-safe,
+  // so one instance can be shared by all requests.
+  @NonNull
+  ObjectReader agreementReader;
+
+  // Writes each streamed mission the same way the JSON endpoints do
+  @NonNull
+  ObjectWriter missionWriter;
+
   @NonNull
   ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator;
 
   @NonNull
   ITranslator<SettlementMissionMessage, SettlementMission> settlementMissionMsgTranslator;
 
+  @NonNull
+  ITranslator<SettlementMissionMessages, List<SettlementMission>>
+      settlementMissionMessagesTranslator;
+
   @NonNull
   ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
@@ -63,14 +109,25 @@ public class SettlementRestController extends BaseSettlementRestController {
    * constructor, necessitating a call to super() from here.
    */
   public SettlementRestController(final SettlementService settlementService,
+      final MissionResponseCache missionResponseCache,
+      final SettlementJobService settlementJobService,
       final ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator,
+      final ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator,
       final ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator,
       final ITranslator<SettlementMissionMessage, SettlementMission>
-          settlementMissionMsgTranslator) {
-    super(settlementService);
+          settlementMissionMsgTranslator,
+      final ITranslator<SettlementMissionMessages, List<SettlementMission>>
+          settlementMissionMessagesTranslator,
+      final ObjectMapper objectMapper) {
+    super(settlementService, missionResponseCache);
+    this.settlementJobService = settlementJobService;
+    this.agreementReader = objectMapper.readerFor(TradeAgreementMessage.class);
+    this.missionWriter = objectMapper.writerFor(SettlementMissionMessage.class);
     this.tradeAgreementTranslator = tradeAgreementTranslator;
+    this.tradeAgreementMessageTranslator = tradeAgreementMessageTranslator;
     this.settlementMissionTranslator = settlementMissionTranslator;
     this.settlementMissionMsgTranslator = settlementMissionMsgTranslator;
+    this.settlementMissionMessagesTranslator = settlementMissionMessagesTranslator;
   }
 
   /**
@@ -78,11 +135,16 @@ public class SettlementRestController extends BaseSettlementRestController {
    */
   // @PostMapping to link http POST requests to this method
   // @RequestBody to have the post request body deserialized into a list of TradeAgreement objects
+  // @RequestHeader to take an optional header, here the key that makes client retries idempotent
+  // idFormat=RANGES returns runs of mission IDs instead of a path per mission, which keeps the
+  // response small for large batches (PACKED is protobuf only, so is treated as RANGES here)
   @PostMapping(value = "${mvc.settleMissionPath}", consumes = {MediaType.APPLICATION_JSON_VALUE,
       MediaType.APPLICATION_XML_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE,
       MediaType.APPLICATION_XML_VALUE})
   public SettlementResponseMessage settleAgreement(
       @RequestBody final TradeAgreementMessages messages,
+      @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey,
+      @RequestParam(value = "idFormat", defaultValue = "PATHS") final MissionIdFormat idFormat,
       @RequestParam(value = "requestId", required = false) final String requestId) {
 
     // if an external request id was provided, grab it
@@ -90,11 +152,136 @@ public class SettlementRestController extends BaseSettlementRestController {
 
     List<TradeAgreement> agreements = tradeAgreementTranslator.translate(messages);
 
-    Set<String> missionPaths = settleAgreementInternal(agreements, getMissionPath);
+    if (idFormat != MissionIdFormat.PATHS) {
+      SortedSet<Long> missionIds = spawnMissionIdsInternal(agreements, idempotencyKey);
+      return SettlementResponseMessage.builder().missionPath(getMissionPath)
+          .spawnedMissionRanges(toMissionIdRanges(missionIds)).build();
+    }
+
+    Set<String> missionPaths = settleAgreementInternal(agreements, idempotencyKey, getMissionPath);
 
     return SettlementResponseMessage.builder().spawnedMissions(missionPaths).build();
   }
 
+  /**
+   * Queue the generation of Missions from the provided TradeAgreements and return straight away.
+   *
+   * <p>Responds with 202 Accepted and a job handle whose status path can be polled until the job
+   * completes, at which point it lists the spawned missions. Responds with 503 if too many jobs
+   * are already queued. An Idempotency-Key header is honoured as it is by the synchronous endpoint.
+   */
+  @PostMapping(value = "${mvc.settleMissionPath}" + "/async", consumes = {
+      MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE}, produces = {
+      MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  public ResponseEntity<SettlementJobMessage> settleAgreementAsync(
+      @RequestBody final TradeAgreementMessages messages,
+      @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    // Translation happens on the job's thread too, so this request thread is released right away
+    SettlementJob job = settlementJobService.submit(() -> spawnMissionIdsInternal(
+        tradeAgreementTranslator.translate(messages), idempotencyKey));
+
+    SettlementJobMessage jobMessage = toJobMessage(job);
+    return ResponseEntity.accepted().location(URI.create(jobMessage.getStatusPath()))
+        .body(jobMessage);
+  }
+
+  /**
+   * Retrieve the status of a job queued through the async settlement endpoint.
+   */
+  @GetMapping(value = "${mvc.settleMissionPath}" + "/job/{jobId}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementJobMessage getSettlementJob(@PathVariable final String jobId,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    Optional<SettlementJob> job = settlementJobService.findJob(jobId);
+
+    if (job.isPresent()) {
+      return toJobMessage(job.get());
+    }
+
+    throw new EntityNotFoundException(SettlementJob.class, jobId);
+  }
+
+  /**
+   * Generate Missions from a newline-delimited JSON stream of TradeAgreements.
+   *
+   * <p>Agreements are parsed one at a time straight off the request body and settled in
+   * fixed-size chunks, so memory use doesn't depend on the size of the upload. Only a summary of
+   * what was spawned is returned.
+   */
+  // A plain InputStream argument gives us the raw request body without any message converter
+  @PostMapping(value = "${mvc.settleMissionPath}" + "/stream",
+      consumes = MvcConfig.APPLICATION_NDJSON_VALUE, produces = {MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementIngestSummaryMessage settleAgreementStream(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    try (MappingIterator<TradeAgreementMessage> messages = agreementReader.readValues(body)) {
+      return settleAgreementStreamInternal(
+          Iterators.transform(messages, tradeAgreementMessageTranslator::translate));
+    }
+  }
+
+  /**
+   * Generate Missions from a CSV document of TradeAgreements, with a header row naming the field
+   * each column holds.
+   *
+   * <p>Like the NDJSON stream, rows are parsed one at a time straight off the request body and
+   * settled in fixed-size chunks.
+   */
+  @PostMapping(value = "${mvc.settleMissionPath}" + "/stream",
+      consumes = MvcConfig.TEXT_CSV_VALUE, produces = {MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementIngestSummaryMessage settleAgreementCsvStream(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    try (MappingIterator<TradeAgreementMessage> messages =
+        CsvSerializer.readCsv(body, TradeAgreementMessage.class)) {
+      return settleAgreementStreamInternal(
+          Iterators.transform(messages, tradeAgreementMessageTranslator::translate));
+    }
+  }
+
+  /**
+   * Generate Missions from an XLSX spreadsheet of TradeAgreements, with a header row on each sheet
+   * naming the field each column holds.
+   *
+   * <p>The sheets are parsed as SAX events rather than loaded as a workbook, and each row is
+   * settled in fixed-size chunks as soon as it has been parsed.
+   */
+  @PostMapping(value = "${mvc.settleMissionPath}" + "/stream",
+      consumes = {MvcConfig.APPLICATION_XLSX_VALUE, MvcConfig.APPLICATION_EXCEL_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  public SettlementIngestSummaryMessage settleAgreementXlsxStream(final InputStream body,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    ChunkedMissionSpawner spawner = newMissionSpawner();
+    XlsxSerializer.readXlsx(body, TradeAgreementMessage.class,
+        message -> spawner.accept(tradeAgreementMessageTranslator.translate(message)));
+    return spawner.finish();
+  }
+
   /**
    * Retrieve a previously generated Mission.
    */
@@ -104,16 +291,19 @@ public class SettlementRestController extends BaseSettlementRestController {
   @GetMapping(value = "${mvc.getMissionPath}" + "{id}", produces = {
       MediaType.APPLICATION_JSON_VALUE,
       MediaType.APPLICATION_XML_VALUE})
-  public SettlementMissionMessage getMission(@PathVariable final Long id,
+  public CachedResponseBody getMission(@PathVariable final Long id,
       @RequestParam(value = "requestId", required = false) final String requestId) {
 
     // if an external request id was provided, grab it
     processRequestId(requestId);
 
-    Optional<SettlementMission> msn = getMissionInternal(id);
+    // The body is serialized (or fetched from the cache) once content negotiation has picked
+    // between JSON and XML
+    Optional<CachedResponseBody> body =
+        getMissionBodyInternal(id, settlementMissionTranslator::translate);
 
-    if (msn.isPresent()) {
-      return settlementMissionTranslator.translate(msn.get());
+    if (body.isPresent()) {
+      return body.get();
     }
 
     throw new EntityNotFoundException(SettlementMission.class, id.toString());
@@ -145,6 +335,110 @@ public class SettlementRestController extends BaseSettlementRestController {
     return new SettlementMissionList(missions);
   }
 
+  /**
+   * Retrieve a page of the Missions with the given depot, optionally narrowed down to an
+   * instrument and/or direction.
+   *
+   * <p>Pages are in ascending id order. The next page is retrieved by passing the nextAfterId of
+   * this one as afterId, which keeps every page as cheap to fetch as the first.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}" + "/depot/{depot}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementMissionPage getMissionsByDepot(@PathVariable final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "direction", required = false) final String direction,
+      @RequestParam(value = "afterId", required = false) final Long afterId,
+      @RequestParam(value = "limit", required = false) final Integer limit,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    return getMissionPageByDepotInternal(depot, instrument, direction, afterId, limit,
+        settlementMissionTranslator::translate);
+  }
+
+  /**
+   * Stream all the Missions with the given depot as newline-delimited JSON, optionally narrowed
+   * down to an instrument and/or direction.
+   *
+   * <p>Missions are loaded a page at a time and written out as they're loaded, so memory use
+   * doesn't depend on how many missions match.
+   */
+  // StreamingResponseBody writes the response on a separate thread once this method returns
+  @GetMapping(value = "${mvc.getMissionsPath}" + "/depot/{depot}/stream",
+      produces = MvcConfig.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamMissionsByDepot(
+      @PathVariable final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "direction", required = false) final String direction,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    StreamingResponseBody body = out -> {
+      Iterator<SettlementMission> missions =
+          iterateMissionsByDepotInternal(depot, instrument, direction);
+      while (missions.hasNext()) {
+        // Not writeValue(out, ...), since that would close the response stream
+        out.write(missionWriter.writeValueAsBytes(
+            settlementMissionTranslator.translate(missions.next())));
+        out.write('\n');
+      }
+    };
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Stream all the Missions with the given depot as a CSV document, optionally narrowed down to
+   * an instrument and/or direction. Like the NDJSON stream, rows are written as the missions are
+   * loaded, so exports of any size can be downloaded.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}" + "/depot/{depot}/stream",
+      produces = MvcConfig.TEXT_CSV_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamMissionsByDepotAsCsv(
+      @PathVariable final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "direction", required = false) final String direction,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    StreamingResponseBody body = out -> CsvSerializer.writeCsv(
+        iterateMissionsByDepotInternal(depot, instrument, direction), SettlementMission.class,
+        out);
+    return ResponseEntity.ok().contentType(MvcConfig.TEXT_CSV)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=SettlementMissions.csv")
+        .body(body);
+  }
+
+  /**
+   * Stream all the Missions with the given depot as an XLSX spreadsheet, optionally narrowed down
+   * to an instrument and/or direction. Rows are added as the missions are loaded and only a few
+   * are held in memory at a time, but the spreadsheet can only be sent once all rows are in.
+   */
+  @GetMapping(value = "${mvc.getMissionsPath}" + "/depot/{depot}/stream",
+      produces = MvcConfig.APPLICATION_EXCEL_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamMissionsByDepotAsXlsx(
+      @PathVariable final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "direction", required = false) final String direction,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    StreamingResponseBody body = out -> XlsxSerializer.writeXlsx(
+        iterateMissionsByDepotInternal(depot, instrument, direction), SettlementMission.class,
+        out);
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_EXCEL)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=SettlementMissions.xlsx")
+        .body(body);
+  }
+
   /**
    * Update an existing mission given an ID.
    */
@@ -173,6 +467,29 @@ public class SettlementRestController extends BaseSettlementRestController {
     }
   }
 
+  /**
+   * Update many existing missions at once.
+   *
+   * <p>Each mission carries its ID and the version it was based on. Missions that have changed
+   * since then, or don't exist, are left alone; the rest are updated in a single transaction. The
+   * response lists the outcome for each mission, in the order they were sent.
+   */
+  @PutMapping(value = "${mvc.updateMissionsPath}",
+      consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE})
+  public SettlementBatchResponseMessage updateMissions(
+      @RequestBody final SettlementMissionMessages messages,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<SettlementMission> missions = settlementMissionMessagesTranslator.translate(messages);
+
+    return SettlementBatchResponseMessage.builder().results(updateMissionsInternal(missions))
+        .build();
+  }
+
   /**
    * Delete a previously created mission.
    */
@@ -196,4 +513,35 @@ public class SettlementRestController extends BaseSettlementRestController {
     }
   }
 
+  /**
+   * Delete many previously created missions at once, in a single transaction. The response lists
+   * the outcome for each mission, in the order they were sent.
+   */
+  @DeleteMapping(value = "${mvc.deleteMissionsPath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementBatchResponseMessage deleteMissions(
+      // @RequestParam to take a comma-separated list of ids from the url (ex: http://url?ids=1,2,3)
+      @RequestParam(value = "ids") final String ids,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    List<Long> idLongs = Arrays.stream(ids.split(","))
+        .map(Long::parseLong)
+        .collect(Collectors.toList());
+
+    return SettlementBatchResponseMessage.builder().results(deleteMissionsInternal(idLongs))
+        .build();
+  }
+
+  private SettlementJobMessage toJobMessage(final SettlementJob job) {
+    return SettlementJobMessage.builder()
+        .jobId(job.getId())
+        .status(job.getStatus().name())
+        .statusPath(settleMissionPath + "/job/" + job.getId())
+        .spawnedMissions(toMissionPaths(job.getMissionIds(), getMissionPath))
+        .error(job.getError()).build();
+  }
 }
@@ -0,0 +1,36 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Singular;
+
+/**
+ * Handle for an asynchronous settlement request. The spawned missions are only listed once the job
+ * has completed.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE) // For builder
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Builder
+@Data
+@XmlRootElement(name = "settlementJob")
+@XmlAccessorType(XmlAccessType.FIELD) // required if using lombok to avoid duplicate properties
+public class SettlementJobMessage {
+
+  protected String jobId;
+  protected String status;
+  protected String statusPath;
+
+  @Singular
+  @XmlElement(name = "spawnedMission")
+  protected List<String> spawnedMissions;
+
+  protected String error;
+}
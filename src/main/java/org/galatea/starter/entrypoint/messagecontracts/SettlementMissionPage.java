@@ -0,0 +1,30 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of the missions matching a query, in ascending id order. The next page is requested
+ * by passing nextAfterId back as the afterId parameter; it's left out on the last page.
+ */
+@AllArgsConstructor()
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Data
+@XmlRootElement(name = "settlementMissionPage")
+@XmlAccessorType(XmlAccessType.FIELD) // required if using lombok to avoid duplicate properties
+public class SettlementMissionPage {
+
+  @XmlElement(name = "settlementMission")
+  protected List<SettlementMissionMessage> settlementMissions;
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  protected Long nextAfterId;
+}
@@ -1,5 +1,7 @@
 package org.galatea.starter.entrypoint.messagecontracts;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import java.util.List;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -25,4 +27,14 @@ public class SettlementResponseMessage {
   @Singular
   @XmlElement(name = "spawnedMission")
   protected List<String> spawnedMissions;
+
+  // Only set when the client asked for ranges, in which case it is the prefix of every mission's
+  // path and spawnedMissions is left empty
+  @JsonInclude(Include.NON_NULL)
+  protected String missionPath;
+
+  @Singular
+  @JsonInclude(Include.NON_EMPTY)
+  @XmlElement(name = "spawnedMissionRange")
+  protected List<MissionIdRange> spawnedMissionRanges;
 }
@@ -0,0 +1,170 @@
+package org.galatea.starter.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import org.galatea.starter.domain.AgreementFingerprint;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.domain.rpsy.IAgreementFingerprintRpsy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Dedup index mapping agreement fingerprints to the missions spawned for them.
+ *
+ * <p>Lookups go through an in-memory bloom filter first. Most agreements are new, and the filter
+ * answers those without touching the database; only possible duplicates are confirmed against the
+ * fingerprint table. Until the filter has been loaded from the table at startup every lookup goes
+ * to the database.
+ */
+@Slf4j
+@Log
+@Component
+@ConditionalOnProperty(name = "settlement.idempotency.enabled", havingValue = "true")
+public class AgreementFingerprintIndex {
+
+  // Separates fields so that e.g. ("AB", "C") and ("A", "BC") hash differently
+  private static final char FIELD_SEPARATOR = '\u001f';
+
+  private final IAgreementFingerprintRpsy fingerprintRpsy;
+
+  // Guarded by itself since older versions of BloomFilter aren't safe for concurrent puts
+  private final BloomFilter<CharSequence> filter;
+
+  private volatile boolean primed;
+
+  /**
+   * Creates an index whose bloom filter is sized for the given number of fingerprints.
+   */
+  public AgreementFingerprintIndex(final IAgreementFingerprintRpsy fingerprintRpsy,
+      @Value("${settlement.idempotency.expected-insertions:1000000}")
+      final long expectedInsertions,
+      @Value("${settlement.idempotency.false-positive-rate:0.01}")
+      final double falsePositiveRate) {
+    this.fingerprintRpsy = fingerprintRpsy;
+    this.filter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+        expectedInsertions, falsePositiveRate);
+  }
+
+  /**
+   * Fingerprint identifying an agreement by its contents.
+   */
+  public static String fingerprint(final TradeAgreement agreement) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    putField(hasher, agreement.getInstrument());
+    putField(hasher, agreement.getInternalParty());
+    putField(hasher, agreement.getExternalParty());
+    putField(hasher, agreement.getBuySell());
+    putField(hasher, agreement.getQty());
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Fingerprint identifying the agreement at the given position of a request that the client
+   * labelled with an idempotency key.
+   */
+  public static String fingerprint(final String idempotencyKey, final int index) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    putField(hasher, idempotencyKey);
+    putField(hasher, index);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Finds the missions already spawned for any of the given fingerprints.
+   *
+   * @return mission ids keyed by fingerprint; fingerprints that have not been seen are absent
+   */
+  public Map<String, Long> findExisting(final Collection<String> fingerprints) {
+    List<String> candidates = fingerprints.stream().filter(this::mightContain)
+        .collect(Collectors.toList());
+    log.debug("{} of {} fingerprint(s) may already exist", candidates.size(),
+        fingerprints.size());
+    if (candidates.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Map<String, Long> existing = new HashMap<>();
+    fingerprintRpsy.findAllById(candidates)
+        .forEach(f -> existing.put(f.getFingerprint(), f.getMissionId()));
+    return existing;
+  }
+
+  /**
+   * Records the missions spawned for the given fingerprints. If a concurrent request recorded one
+   * of them first, the unique key rejects the insert and the caller's transaction (along with the
+   * duplicate missions) is rolled back.
+   */
+  public void record(final Map<String, Long> missionIdsByFingerprint) {
+    // Added to the filter first, so that if the insert is rejected, looking the fingerprints up
+    // again goes to the table and finds the concurrent request's missions
+    missionIdsByFingerprint.keySet().forEach(this::put);
+    fingerprintRpsy.saveAll(missionIdsByFingerprint.entrySet().stream()
+        .map(e -> AgreementFingerprint.builder().fingerprint(e.getKey()).missionId(e.getValue())
+            .build())
+        .collect(Collectors.toList()));
+  }
+
+  /**
+   * Forgets the fingerprints of the given missions once they have been deleted, so that their
+   * agreements spawn new missions if they come again. The bloom filter can't forget them, which
+   * only costs a lookup in the table.
+   */
+  public void forget(final Collection<Long> missionIds) {
+    int forgotten = fingerprintRpsy.deleteByMissionIdIn(missionIds);
+    log.debug("Forgot {} fingerprint(s) of deleted missions", forgotten);
+  }
+
+  /**
+   * Loads every recorded fingerprint into the bloom filter.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void prime() {
+    long count = 0;
+    try (Stream<String> fingerprints = fingerprintRpsy.streamAllFingerprints()) {
+      Iterator<String> it = fingerprints.iterator();
+      while (it.hasNext()) {
+        put(it.next());
+        count++;
+      }
+    }
+    primed = true;
+    log.info("Loaded {} agreement fingerprint(s) into the dedup filter", count);
+  }
+
+  private boolean mightContain(final String fingerprint) {
+    if (!primed) {
+      return true;
+    }
+    synchronized (filter) {
+      return filter.mightContain(fingerprint);
+    }
+  }
+
+  private void put(final String fingerprint) {
+    synchronized (filter) {
+      filter.put(fingerprint);
+    }
+  }
+
+  private static void putField(final Hasher hasher, final Object value) {
+    hasher.putString(String.valueOf(value), StandardCharsets.UTF_8).putChar(FIELD_SEPARATOR);
+  }
+}
@@ -0,0 +1,188 @@
+package org.galatea.starter.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Path;
+import javax.validation.Validator;
+import javax.validation.metadata.ConstraintDescriptor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.hibernate.validator.internal.engine.path.PathImpl;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Validates trade agreements and transforms them into settlement missions. Small batches are
+ * handled on the calling thread; batches at or above the parallel threshold are split across a
+ * dedicated fork-join pool so that large uploads use every core rather than just one.
+ *
+ * <p>Either way the missions come back in the same order as the agreements, and every validation
+ * failure in the batch is reported together in a single ConstraintViolationException. Each
+ * violation's property path starts with the position of its agreement in the batch (e.g.
+ * agreements[17].instrument), so that a client can tell which agreement is invalid.
+ */
+@Slf4j
+@Log
+@Component
+public class AgreementPipeline {
+
+  private final Validator validator;
+  private final IAgreementTransformer agreementTransformer;
+  private final ForkJoinPool pool;
+  private final int parallelThreshold;
+
+  /**
+   * Creates a pipeline that switches to the given pool once a batch holds at least
+   * parallelThreshold agreements.
+   */
+  public AgreementPipeline(final Validator validator,
+      final IAgreementTransformer agreementTransformer,
+      @Qualifier("settlementPipelinePool") final ForkJoinPool pool,
+      @Value("${settlement.pipeline.parallel-threshold:1000}") final int parallelThreshold) {
+    this.validator = validator;
+    this.agreementTransformer = agreementTransformer;
+    this.pool = pool;
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  /**
+   * Validate the agreements and transform them into missions.
+   *
+   * @param agreements the agreements used to generate missions
+   * @return one mission per agreement, in the same order as the agreements
+   * @throws ConstraintViolationException listing the violations of every invalid agreement
+   */
+  public List<SettlementMission> toMissions(final List<TradeAgreement> agreements) {
+    List<Outcome> outcomes;
+    if (agreements.size() >= parallelThreshold) {
+      log.debug("Preparing {} agreement(s) in parallel", agreements.size());
+      // Parallel streams run on the pool of whichever fork-join thread starts them, so submitting
+      // the whole pipeline keeps this work off the common pool
+      outcomes = pool.submit(() -> agreements.parallelStream().map(this::process)
+          .collect(Collectors.toList())).join();
+    } else {
+      outcomes = agreements.stream().map(this::process).collect(Collectors.toList());
+    }
+
+    List<ConstraintViolation<TradeAgreement>> violations = new ArrayList<>();
+    List<SettlementMission> missions = new ArrayList<>(outcomes.size());
+    for (int i = 0; i < outcomes.size(); i++) {
+      for (ConstraintViolation<TradeAgreement> violation : outcomes.get(i).violations) {
+        violations.add(new IndexedViolation(violation, i));
+      }
+      missions.add(outcomes.get(i).mission);
+    }
+
+    if (!violations.isEmpty()) {
+      // In agreement order; the index keeps the same violation on two agreements apart
+      throw new ConstraintViolationException(new LinkedHashSet<>(violations));
+    }
+    return missions;
+  }
+
+  private Outcome process(final TradeAgreement agreement) {
+    Set<ConstraintViolation<TradeAgreement>> violations = validator.validate(agreement);
+    if (!violations.isEmpty()) {
+      return new Outcome(violations, null);
+    }
+    return new Outcome(violations, agreementTransformer.transform(agreement));
+  }
+
+  /*
+   * A violation of one agreement in the batch, with the agreement's index in its property path.
+   */
+  private static final class IndexedViolation implements ConstraintViolation<TradeAgreement> {
+
+    private final ConstraintViolation<TradeAgreement> violation;
+    private final Path propertyPath;
+
+    private IndexedViolation(final ConstraintViolation<TradeAgreement> violation,
+        final int index) {
+      this.violation = violation;
+      String path = violation.getPropertyPath().toString();
+      this.propertyPath = PathImpl.createPathFromString(
+          "agreements[" + index + "]" + (path.isEmpty() ? "" : "." + path));
+    }
+
+    @Override
+    public String getMessage() {
+      return violation.getMessage();
+    }
+
+    @Override
+    public String getMessageTemplate() {
+      return violation.getMessageTemplate();
+    }
+
+    @Override
+    public TradeAgreement getRootBean() {
+      return violation.getRootBean();
+    }
+
+    @Override
+    public Class<TradeAgreement> getRootBeanClass() {
+      return violation.getRootBeanClass();
+    }
+
+    @Override
+    public Object getLeafBean() {
+      return violation.getLeafBean();
+    }
+
+    @Override
+    public Object[] getExecutableParameters() {
+      return violation.getExecutableParameters();
+    }
+
+    @Override
+    public Object getExecutableReturnValue() {
+      return violation.getExecutableReturnValue();
+    }
+
+    @Override
+    public Path getPropertyPath() {
+      return propertyPath;
+    }
+
+    @Override
+    public Object getInvalidValue() {
+      return violation.getInvalidValue();
+    }
+
+    @Override
+    public ConstraintDescriptor<?> getConstraintDescriptor() {
+      return violation.getConstraintDescriptor();
+    }
+
+    @Override
+    public <U> U unwrap(final Class<U> type) {
+      return violation.unwrap(type);
+    }
+
+    @Override
+    public String toString() {
+      return propertyPath + ": " + getMessage();
+    }
+  }
+
+  private static final class Outcome {
+
+    private final Set<ConstraintViolation<TradeAgreement>> violations;
+    private final SettlementMission mission;
+
+    private Outcome(final Set<ConstraintViolation<TradeAgreement>> violations,
+        final SettlementMission mission) {
+      this.violations = violations;
+      this.mission = mission;
+    }
+  }
+}
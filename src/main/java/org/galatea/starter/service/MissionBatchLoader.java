@@ -0,0 +1,152 @@
+package org.galatea.starter.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads single missions that aren't cached in batches, enabled with
+ * settlement.cache.batch-loader.enabled.
+ *
+ * <p>A lookup that misses the missions cache joins the current batch and waits. The batch is
+ * loaded with one query (through the missions cache, see SettlementMissionCache.findAllUncounted,
+ * as each lookup's miss has already been counted) once its window has passed or it has reached
+ * its maximum size, whichever comes first, and each waiting lookup then gets its own mission.
+ * Concurrent lookups of the same id share one slot in the batch.
+ *
+ * <p>Lookups that hit the cache don't wait at all, so this only adds latency (at most the window)
+ * to reads that would have gone to the database anyway.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "settlement.cache.batch-loader.enabled", havingValue = "true")
+public class MissionBatchLoader {
+
+  private final SettlementMissionCache missionCache;
+  private final Cache cache;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService scheduler;
+
+  // Lookups waiting for the next batch, by mission id. Guarded by this.
+  private Map<Long, CompletableFuture<Optional<SettlementMission>>> batch = new LinkedHashMap<>();
+
+  /**
+   * Creates a loader whose batches are loaded after windowMillis, or as soon as they hold
+   * maxBatchSize ids, by up to threads threads at once.
+   */
+  public MissionBatchLoader(final SettlementMissionCache missionCache,
+      final CacheManager cacheManager,
+      @Value("${settlement.cache.batch-loader.window-millis:2}") final long windowMillis,
+      @Value("${settlement.cache.batch-loader.max-batch-size:100}") final int maxBatchSize,
+      @Value("${settlement.cache.batch-loader.threads:2}") final int threads) {
+    if (maxBatchSize < 1) {
+      throw new IllegalArgumentException("Max batch size must be positive but was "
+          + maxBatchSize);
+    }
+    this.missionCache = missionCache;
+    this.cache = cacheManager.getCache("missions");
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    CustomizableThreadFactory threadFactory =
+        new CustomizableThreadFactory("mission-batch-loader-");
+    // Batches still waiting at shutdown mustn't keep the JVM alive
+    threadFactory.setDaemon(true);
+    this.scheduler = Executors.newScheduledThreadPool(threads, threadFactory);
+  }
+
+  /**
+   * Retrieves the mission with the given id, from the cache if it is there, otherwise as part of
+   * the next batch. Blocks until that batch has been loaded.
+   */
+  public Optional<SettlementMission> load(final Long id) {
+    ValueWrapper cached = cache.get(id);
+    if (cached != null && cached.get() != null) {
+      return Optional.of((SettlementMission) cached.get());
+    }
+
+    CompletableFuture<Optional<SettlementMission>> mission;
+    Map<Long, CompletableFuture<Optional<SettlementMission>>> fullBatch = null;
+    synchronized (this) {
+      mission = batch.get(id);
+      if (mission == null) {
+        if (batch.isEmpty()) {
+          Map<Long, CompletableFuture<Optional<SettlementMission>>> newBatch = batch;
+          scheduler.schedule(() -> loadIfStillWaiting(newBatch), windowMillis,
+              TimeUnit.MILLISECONDS);
+        }
+        mission = new CompletableFuture<>();
+        batch.put(id, mission);
+        if (batch.size() >= maxBatchSize) {
+          fullBatch = batch;
+          batch = new LinkedHashMap<>();
+        }
+      }
+    }
+    // A full batch is loaded straight away, by whichever lookup filled it
+    if (fullBatch != null) {
+      loadBatch(fullBatch);
+    }
+
+    try {
+      return mission.join();
+    } catch (CompletionException e) {
+      // Rethrow what the query threw, as findById would have
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Stops loading batches. Batches that are already waiting are still loaded.
+   */
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdown();
+  }
+
+  private void loadIfStillWaiting(
+      final Map<Long, CompletableFuture<Optional<SettlementMission>>> waitingBatch) {
+    synchronized (this) {
+      // Otherwise it filled up and has already been loaded
+      if (batch != waitingBatch) {
+        return;
+      }
+      batch = new LinkedHashMap<>();
+    }
+    loadBatch(waitingBatch);
+  }
+
+  private void loadBatch(
+      final Map<Long, CompletableFuture<Optional<SettlementMission>>> batchToLoad) {
+    try {
+      Map<Long, SettlementMission> missions = missionCache.findAllUncounted(batchToLoad.keySet())
+          .stream().collect(Collectors.toMap(SettlementMission::getId, Function.identity()));
+      log.debug("Loaded a batch of {} mission(s), {} found", batchToLoad.size(),
+          missions.size());
+      batchToLoad.forEach((id, mission) -> mission.complete(
+          Optional.ofNullable(missions.get(id))));
+    } catch (RuntimeException e) {
+      batchToLoad.values().forEach(mission -> mission.completeExceptionally(e));
+    }
+  }
+}
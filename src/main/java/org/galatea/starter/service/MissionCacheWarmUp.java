@@ -0,0 +1,146 @@
+package org.galatea.starter.service;
+
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the newest missions into the missions cache at startup, so that a freshly started
+ * instance doesn't send all of its first reads to the database.
+ *
+ * <p>Until the warm-up has finished this reports OUT_OF_SERVICE to the actuator health endpoint
+ * (which then answers 503), so a load balancer checking it holds traffic back until the cache is
+ * warm. A warm-up that fails still lets the instance come into service, with whatever it managed
+ * to load, rather than keeping it out indefinitely.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "settlement.cache.warm-up.enabled", havingValue = "true")
+public class MissionCacheWarmUp implements HealthIndicator {
+
+  private final ISettlementMissionRpsy missionrpsy;
+  private final SettlementMissionCache missionCache;
+  private final int missionCount;
+  private final String depot;
+  private final Long fromId;
+  private final Long toId;
+  private final int chunkSize;
+  private final int threads;
+
+  private volatile boolean complete;
+  private volatile int loadedCount;
+  private volatile long elapsedMillis;
+  private volatile Exception failure;
+
+  /**
+   * Creates a warm-up that loads up to missionCount missions, optionally only those with the given
+   * depot and/or ids, in chunks of chunkSize missions with up to threads chunks loading at once.
+   */
+  public MissionCacheWarmUp(final ISettlementMissionRpsy missionrpsy,
+      final SettlementMissionCache missionCache,
+      @Value("${settlement.cache.warm-up.mission-count:100000}") final int missionCount,
+      @Value("${settlement.cache.warm-up.depot:#{null}}") final String depot,
+      @Value("${settlement.cache.warm-up.from-id:#{null}}") final Long fromId,
+      @Value("${settlement.cache.warm-up.to-id:#{null}}") final Long toId,
+      @Value("${settlement.cache.warm-up.chunk-size:1000}") final int chunkSize,
+      @Value("${settlement.cache.warm-up.threads:4}") final int threads) {
+    this.missionrpsy = missionrpsy;
+    this.missionCache = missionCache;
+    this.missionCount = missionCount;
+    this.depot = depot;
+    this.fromId = fromId;
+    this.toId = toId;
+    this.chunkSize = chunkSize;
+    this.threads = threads;
+  }
+
+  /**
+   * Starts the warm-up in the background once the application is up, so that startup itself
+   * isn't held up by it.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    Thread thread = new Thread(this::warmUp, "mission-cache-warm-up");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Loads the missions into the cache, blocking until they have all been loaded.
+   */
+  public void warmUp() {
+    long start = System.nanoTime();
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+        new CustomizableThreadFactory("mission-cache-warm-up-"));
+    try {
+      List<Long> ids = missionrpsy.findRecentIds(depot, fromId, toId, missionCount);
+      log.info("Warming up the missions cache with {} mission(s)", ids.size());
+
+      // Each chunk is a single findAllById, run alongside the other chunks. Not counted as cache
+      // misses, since no caller asked for these missions
+      List<Future<List<SettlementMission>>> chunks = new ArrayList<>();
+      for (List<Long> chunk : Lists.partition(ids, chunkSize)) {
+        chunks.add(executor.submit(() -> missionCache.findAllUncounted(chunk)));
+      }
+      int loaded = 0;
+      for (Future<List<SettlementMission>> chunk : chunks) {
+        loaded += chunk.get().size();
+      }
+      loadedCount = loaded;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failure = e;
+    } catch (ExecutionException | RuntimeException e) {
+      failure = e;
+    } finally {
+      executor.shutdownNow();
+      elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      complete = true;
+    }
+
+    if (failure == null) {
+      log.info("Warmed up the missions cache with {} mission(s) in {}ms", loadedCount,
+          elapsedMillis);
+    } else {
+      log.warn("Warming up the missions cache failed after {}ms; going into service anyway",
+          elapsedMillis, failure);
+    }
+  }
+
+  /**
+   * Whether the warm-up has finished, successfully or not.
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  @Override
+  public Health health() {
+    if (!complete) {
+      return Health.outOfService().withDetail("warmUp", "in progress").build();
+    }
+
+    Health.Builder health = Health.up().withDetail("missions", loadedCount)
+        .withDetail("millis", elapsedMillis);
+    if (failure != null) {
+      health.withDetail("error", failure.toString());
+    }
+    return health.build();
+  }
+}
@@ -0,0 +1,150 @@
+package org.galatea.starter.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.utils.http.converter.CachedResponseBody;
+import org.galatea.starter.utils.http.converter.SerializedBody;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+/**
+ * Cache of serialized single-mission responses, so that repeated reads of a mission can be
+ * answered with bytes written for an earlier response instead of translating and serializing the
+ * mission all over again.
+ *
+ * <p>Entries live in the "missionResponses" cache, keyed by mission id, and hold the bytes for each
+ * media type the mission has been asked for in. An entry is only used if it was made from the same
+ * version of the mission that is being read, and the repository evicts it alongside the mission
+ * itself, so a stale response is never served.
+ */
+@Slf4j
+@Component
+public class MissionResponseCache {
+
+  public static final String CACHE_NAME = "missionResponses";
+
+  // The converters MvcConfig registers (in the same order), so that a cached body is byte for
+  // byte what the response would otherwise have been
+  private final List<HttpMessageConverter<?>> converters;
+
+  private final Cache responseCache;
+
+  /**
+   * Looks up the "missionResponses" cache, and serializes bodies with the message converters that
+   * Spring MVC writes responses with.
+   */
+  @Autowired
+  public MissionResponseCache(final CacheManager cacheManager,
+      final RequestMappingHandlerAdapter handlerAdapter) {
+    this(cacheManager, handlerAdapter.getMessageConverters());
+  }
+
+  /**
+   * Looks up the "missionResponses" cache, and serializes bodies with the first of the given
+   * converters that can write them.
+   */
+  public MissionResponseCache(final CacheManager cacheManager,
+      final List<HttpMessageConverter<?>> converters) {
+    this.responseCache = cacheManager.getCache(CACHE_NAME);
+    this.converters = converters;
+  }
+
+  /**
+   * Returns a response body for the mission that is serialized once the response's media type is
+   * known, from the cache if possible.
+   *
+   * @param translator turns the mission into the message to serialize; only called on a miss
+   */
+  public CachedResponseBody bodyFor(final SettlementMission mission,
+      final Function<SettlementMission, ?> translator) {
+    return mediaType -> serialize(mission, mediaType, translator);
+  }
+
+  private SerializedBody serialize(final SettlementMission mission, final MediaType mediaType,
+      final Function<SettlementMission, ?> translator) {
+    String type = mediaType.toString();
+    MissionResponses cached = responseCache.get(mission.getId(), MissionResponses.class);
+    boolean sameVersion =
+        cached != null && Objects.equals(cached.getVersion(), mission.getVersion());
+    if (sameVersion && cached.getBodies().containsKey(type)) {
+      return cached.getBodies().get(type);
+    }
+
+    SerializedBody body = write(translator.apply(mission), mediaType);
+    log.debug("Caching {} response for version {} of mission {}", type, mission.getVersion(),
+        mission.getId());
+
+    // Entries are never changed once cached, so other threads can read them without locking
+    Map<String, SerializedBody> bodies = sameVersion ? new HashMap<>(cached.getBodies())
+        : new HashMap<>();
+    bodies.put(type, body);
+    responseCache.put(mission.getId(), new MissionResponses(mission.getVersion(), bodies));
+    return body;
+  }
+
+  @SuppressWarnings("unchecked")
+  private SerializedBody write(final Object message, final MediaType mediaType) {
+    for (HttpMessageConverter<?> converter : converters) {
+      if (converter.canWrite(message.getClass(), mediaType)) {
+        BufferedOutputMessage output = new BufferedOutputMessage();
+        try {
+          ((HttpMessageConverter<Object>) converter).write(message, mediaType, output);
+        } catch (IOException e) {
+          throw new HttpMessageNotWritableException("Could not serialize " + message, e);
+        }
+        return new SerializedBody(output.getHeaders(), output.body.toByteArray());
+      }
+    }
+    throw new HttpMessageNotWritableException("No converter for " + message.getClass().getName()
+        + " as " + mediaType);
+  }
+
+  /**
+   * Serialized responses for one version of a mission, keyed by media type.
+   */
+  @Value
+  private static class MissionResponses implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    Long version;
+    Map<String, SerializedBody> bodies;
+  }
+
+  /**
+   * HttpOutputMessage that collects what is written to it in memory.
+   */
+  private static class BufferedOutputMessage implements HttpOutputMessage {
+
+    private final HttpHeaders headers = new HttpHeaders();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    @Override
+    public OutputStream getBody() {
+      return body;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJobStatus;
+import org.galatea.starter.entrypoint.ConstraintViolationMessageFormatter;
+import org.galatea.starter.utils.http.converter.SpreadsheetFormatException;
+import org.galatea.starter.utils.translation.TranslationException;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs settlement work in the background on a dedicated, bounded executor and keeps track of its
+ * progress so that callers can poll for the result.
+ */
+@Slf4j
+@Log
+@Service
+public class SettlementJobService {
+
+  private final TaskExecutor settlementJobExecutor;
+
+  // Jobs are forgotten some time after their last state change so finished jobs don't pile up
+  private final Cache<String, SettlementJob> jobs;
+
+  /**
+   * Creates a service that runs jobs on the given executor and lets them be polled for the given
+   * number of minutes after they last changed state.
+   */
+  public SettlementJobService(
+      @Qualifier("settlementJobExecutor") final TaskExecutor settlementJobExecutor,
+      @Value("${settlement.async.job-retention-minutes:60}") final long jobRetentionMinutes) {
+    this.settlementJobExecutor = settlementJobExecutor;
+    this.jobs = CacheBuilder.newBuilder()
+        .expireAfterWrite(jobRetentionMinutes, TimeUnit.MINUTES).build();
+  }
+
+  /**
+   * Queue the given settlement work and return immediately.
+   *
+   * @param work produces the ids of the missions that were spawned
+   * @return a snapshot of the newly queued job
+   * @throws TaskRejectedException if the executor's queue is full
+   */
+  public SettlementJob submit(final Supplier<Set<Long>> work) {
+    SettlementJob job = SettlementJob.builder().id(UUID.randomUUID().toString())
+        .status(SettlementJobStatus.QUEUED).build();
+    jobs.put(job.getId(), job);
+
+    // Carry the request's logging context (e.g. the external request id) over to the worker
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    try {
+      settlementJobExecutor.execute(() -> run(job.getId(), work, mdc));
+    } catch (TaskRejectedException e) {
+      jobs.invalidate(job.getId());
+      throw e;
+    }
+
+    log.info("Queued settlement job {}", job.getId());
+    return job;
+  }
+
+  /**
+   * Retrieve the latest snapshot of a previously submitted job.
+   *
+   * @param id the id returned when the job was submitted
+   */
+  public Optional<SettlementJob> findJob(final String id) {
+    return Optional.ofNullable(jobs.getIfPresent(id));
+  }
+
+  /*
+   * The error reported to whoever polls the job, worded as RestExceptionHandler words the same
+   * failure for the synchronous endpoint. Anything that isn't the client's fault is reported
+   * without its details (which may include SQL and constraint names); those are only logged.
+   */
+  private static String toClientError(final RuntimeException exception) {
+    if (exception instanceof ConstraintViolationException) {
+      return ConstraintViolationMessageFormatter.toMessage(
+          (ConstraintViolationException) exception);
+    }
+    if (exception instanceof TranslationException
+        || exception instanceof RuntimeJsonMappingException
+        || exception instanceof SpreadsheetFormatException) {
+      return "Incorrectly formatted message.  Please consult the documentation.";
+    }
+    return "An internal application error occurred.";
+  }
+
+  private void run(final String id, final Supplier<Set<Long>> work,
+      final Map<String, String> mdc) {
+    // Put back whatever the worker thread had afterwards, in case the executor ran us inline
+    Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+    if (mdc != null) {
+      MDC.setContextMap(mdc);
+    }
+    try {
+      jobs.put(id, SettlementJob.builder().id(id).status(SettlementJobStatus.RUNNING).build());
+
+      Set<Long> missionIds = work.get();
+      jobs.put(id, SettlementJob.builder().id(id).status(SettlementJobStatus.COMPLETED)
+          .missionIds(missionIds).build());
+      log.info("Settlement job {} spawned {} mission(s)", id, missionIds.size());
+    } catch (RuntimeException e) {
+      log.error("Settlement job {} failed", id, e);
+      jobs.put(id, SettlementJob.builder().id(id).status(SettlementJobStatus.FAILED)
+          .error(toClientError(e)).build());
+    } finally {
+      if (previousMdc != null) {
+        MDC.setContextMap(previousMdc);
+      } else {
+        MDC.clear();
+      }
+    }
+  }
+}
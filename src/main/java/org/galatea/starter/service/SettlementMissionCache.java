@@ -0,0 +1,211 @@
+package org.galatea.starter.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.utils.cache.InstrumentedCache;
+import org.galatea.starter.utils.cache.VersionedMissionCache;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Multi-get over the "missions" cache that ISettlementMissionRpsy.findById reads through.
+ * CrudRepository.findAllById bypasses that cache altogether, so this serves whatever missions are
+ * already cached, loads the rest with a single findAllById and caches them for next time.
+ *
+ * <p>Also lets freshly written missions be put straight into the cache (see writeThrough), so
+ * that the first read after a create or update doesn't have to go to the database. The cache
+ * itself (a VersionedMissionCache) never replaces a mission with an older version of it, whichever
+ * order concurrent writers and readers get there in.
+ */
+@Slf4j
+@Component
+public class SettlementMissionCache {
+
+  private final ISettlementMissionRpsy missionrpsy;
+  private final Cache missionCache;
+  private final Cache responseCache;
+  private final Counter hits;
+  private final Counter misses;
+
+  /**
+   * Looks up the "missions" and "missionResponses" caches and registers the hit and miss counters.
+   */
+  public SettlementMissionCache(final ISettlementMissionRpsy missionrpsy,
+      final CacheManager cacheManager, final MeterRegistry meterRegistry) {
+    this.missionrpsy = missionrpsy;
+    this.missionCache = cacheManager.getCache("missions");
+    this.responseCache = cacheManager.getCache(MissionResponseCache.CACHE_NAME);
+    this.hits = Counter.builder("settlement.missions.multiget").tag("result", "hit")
+        .description("Missions served from the cache by a multi-get").register(meterRegistry);
+    this.misses = Counter.builder("settlement.missions.multiget").tag("result", "miss")
+        .description("Missions loaded from the database by a multi-get").register(meterRegistry);
+  }
+
+  /**
+   * Retrieves the missions with the given IDs, in the order they were asked for. IDs that don't
+   * exist are left out, as with findAllById; repeated IDs are only returned once.
+   */
+  public List<SettlementMission> findAll(final Collection<Long> ids) {
+    return findAll(ids, true, true);
+  }
+
+  /**
+   * Like findAll, except that looking the missions up in the cache doesn't count towards its hits
+   * and misses (see InstrumentedCache.peek). For reads the application makes for itself, such as
+   * warming the cache up, or loading missions whose cache miss has already been counted.
+   */
+  public List<SettlementMission> findAllUncounted(final Collection<Long> ids) {
+    return findAll(ids, false, true);
+  }
+
+  /**
+   * Like findAll, except that missions loaded from the database aren't put into the cache. For
+   * bulk reads (e.g. an export) that would otherwise push the hot missions out of the cache for
+   * ones that won't be read again.
+   */
+  public List<SettlementMission> findAllWithoutCaching(final Collection<Long> ids) {
+    return findAll(ids, true, false);
+  }
+
+  private List<SettlementMission> findAll(final Collection<Long> ids, final boolean countLookups,
+      final boolean cacheLoaded) {
+    Set<Long> distinctIds = new LinkedHashSet<>(ids);
+    Map<Long, SettlementMission> found = new HashMap<>();
+    List<Long> idsToLoad = new ArrayList<>();
+
+    for (Long id : distinctIds) {
+      ValueWrapper cached =
+          countLookups ? missionCache.get(id) : InstrumentedCache.peek(missionCache, id);
+      // findById also caches missions that weren't found (as null); those are looked up again in
+      // case they have been created since
+      if (cached != null && cached.get() != null) {
+        found.put(id, (SettlementMission) cached.get());
+      } else {
+        idsToLoad.add(id);
+      }
+    }
+    hits.increment(found.size());
+    misses.increment(idsToLoad.size());
+
+    if (!idsToLoad.isEmpty()) {
+      for (SettlementMission mission : missionrpsy.findAllById(idsToLoad)) {
+        if (cacheLoaded) {
+          putIfNewer(mission);
+        }
+        found.put(mission.getId(), mission);
+      }
+    }
+    log.debug("Multi-get of {} mission(s): {} cached, {} looked up", distinctIds.size(),
+        distinctIds.size() - idsToLoad.size(), idsToLoad.size());
+
+    List<SettlementMission> missions = new ArrayList<>(found.size());
+    for (Long id : distinctIds) {
+      if (found.containsKey(id)) {
+        missions.add(found.get(id));
+      }
+    }
+    return missions;
+  }
+
+  /**
+   * Puts the given missions, as just saved, into the cache. If a transaction is in progress this
+   * waits until it commits, so that a rolled back write never becomes visible.
+   */
+  public void writeThrough(final Iterable<SettlementMission> missions) {
+    // Copies, since the caller still holds on to (and may change) the saved instances
+    List<SettlementMission> copies = new ArrayList<>();
+    missions.forEach(mission -> copies.add(mission.toBuilder().build()));
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              copies.forEach(SettlementMissionCache.this::putIfNewer);
+            }
+          });
+    } else {
+      copies.forEach(this::putIfNewer);
+    }
+  }
+
+  /**
+   * Evicts the missions with the given IDs, along with their cached responses, as the repository
+   * does for a single save or delete. If a transaction is in progress this waits until it
+   * commits, so that the old missions can't be cached again by a read in between.
+   */
+  public void evictAll(final Collection<Long> ids) {
+    List<Long> idsToEvict = new ArrayList<>(ids);
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              evictNow(idsToEvict);
+            }
+          });
+    } else {
+      evictNow(idsToEvict);
+    }
+  }
+
+  /**
+   * Like evictAll, for missions that have just been updated: until the cache's tombstones expire,
+   * no version older than the updated one can be cached again, e.g. by a read that loaded the
+   * mission before the update and puts it after the evict.
+   *
+   * @param missions the missions as updated, carrying their new versions
+   */
+  public void evictUpdated(final Collection<SettlementMission> missions) {
+    Map<Long, Long> versions = new HashMap<>();
+    missions.forEach(mission -> versions.put(mission.getId(), mission.getVersion()));
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              evictNow(versions);
+            }
+          });
+    } else {
+      evictNow(versions);
+    }
+  }
+
+  private void evictNow(final Map<Long, Long> versions) {
+    versions.forEach((id, version) -> {
+      VersionedMissionCache.evictOlderThan(missionCache, id, version);
+      responseCache.evict(id);
+    });
+    log.debug("Evicted {} updated mission(s) from the cache", versions.size());
+  }
+
+  private void evictNow(final List<Long> ids) {
+    for (Long id : ids) {
+      missionCache.evict(id);
+      responseCache.evict(id);
+    }
+    log.debug("Evicted {} mission(s) from the cache", ids.size());
+  }
+
+  private void putIfNewer(final SettlementMission mission) {
+    // Skipped by the cache if a newer version is already there
+    missionCache.put(mission.getId(), mission);
+  }
+}
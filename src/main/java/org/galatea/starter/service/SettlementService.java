@@ -1,9 +1,18 @@
 package org.galatea.starter.service;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -13,11 +22,18 @@ import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
+import org.galatea.starter.domain.MissionChangeStatus;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
 @RequiredArgsConstructor
@@ -31,21 +47,140 @@ public class SettlementService {
   ISettlementMissionRpsy missionrpsy;
 
   @NonNull
-  IAgreementTransformer agreementTransformer;
+  AgreementPipeline agreementPipeline;
+
+  @NonNull
+  SettlementMissionCache missionCache;
+
+  @NonNull
+  TransactionTemplate transactionTemplate;
+
+  // Only present when settlement.idempotency.enabled is set
+  @NonNull
+  Optional<AgreementFingerprintIndex> fingerprintIndex;
+
+  // Only present when settlement.write-behind.enabled is set
+  @NonNull
+  Optional<WriteBehindMissionStore> writeBehindStore;
+
+  // Only present when settlement.cache.batch-loader.enabled is set
+  @NonNull
+  Optional<MissionBatchLoader> batchLoader;
+
+  @Value("${settlement.jdbc-insert.enabled:false}")
+  private boolean jdbcInsertEnabled;
+
+  @Value("${settlement.cache.write-through:false}")
+  private boolean cacheWriteThrough;
 
   /**
-   * Create missions based on the agreements provided.
+   * Create missions based on the agreements provided. All agreements are validated before
+   * anything is saved, and large batches are validated and transformed in parallel.
    *
    * @param agreements the agreements used to generate missions
    * @return the ids of the missions that were created
    */
-  public Set<Long> spawnMissions(@Valid final List<TradeAgreement> agreements) {
+  public Set<Long> spawnMissions(final List<TradeAgreement> agreements) {
+    return spawnMissions(agreements, null);
+  }
 
-    // Map each agreement to a mission, collect to a list, and then same in bulk
-    Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(agreements.stream()
-        .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList()));
+  /**
+   * Create missions based on the agreements provided. When idempotency is enabled, agreements
+   * that have already been settled are answered with the ids of their original missions instead
+   * of spawning new ones.
+   *
+   * <p>The missions are saved in one transaction. If a concurrent request records some of the same
+   * agreements first, the fingerprints' unique key rolls this one back, and it is tried once more
+   * so that it answers with the missions the other request spawned. That retry isn't possible
+   * within a transaction of the caller's, which the failure has already doomed.
+   *
+   * @param agreements the agreements used to generate missions
+   * @param idempotencyKey client-supplied key identifying the request; if null, agreements are
+   *     identified by their contents
+   * @return the ids of the missions that were created (or previously created)
+   */
+  public Set<Long> spawnMissions(final List<TradeAgreement> agreements,
+      final String idempotencyKey) {
+    List<SettlementMission> missions = agreementPipeline.toMissions(agreements);
+
+    if (!fingerprintIndex.isPresent()) {
+      return transactionTemplate.execute(status -> toIds(saveMissions(missions)));
+    }
+
+    List<String> fingerprints = new ArrayList<>(agreements.size());
+    for (int i = 0; i < agreements.size(); i++) {
+      fingerprints.add(idempotencyKey == null
+          ? AgreementFingerprintIndex.fingerprint(agreements.get(i))
+          : AgreementFingerprintIndex.fingerprint(idempotencyKey, i));
+    }
+
+    boolean canRetry = !TransactionSynchronizationManager.isActualTransactionActive();
+    try {
+      return transactionTemplate.execute(status -> spawnUnsettled(missions, fingerprints));
+    } catch (DataIntegrityViolationException e) {
+      if (!canRetry) {
+        throw e;
+      }
+      // The other request has committed by now, so its fingerprints are found this time
+      log.info("Agreements were settled by a concurrent request, looking their missions up");
+      return transactionTemplate.execute(status -> spawnUnsettled(missions, fingerprints));
+    }
+  }
+
+  /*
+   * Saves missions for the fingerprints that haven't been recorded yet and records them, returning
+   * the ids of the missions for every fingerprint.
+   */
+  private Set<Long> spawnUnsettled(final List<SettlementMission> missions,
+      final List<String> fingerprints) {
+    Map<String, Long> existing = fingerprintIndex.get().findExisting(fingerprints);
+
+    // Keep one mission per fingerprint that hasn't been settled before, so that duplicates within
+    // the same batch are collapsed too
+    Map<String, SettlementMission> fresh = new LinkedHashMap<>();
+    for (int i = 0; i < missions.size(); i++) {
+      if (!existing.containsKey(fingerprints.get(i))) {
+        fresh.putIfAbsent(fingerprints.get(i), missions.get(i));
+      }
+    }
+    log.info("Skipping {} already-settled agreement(s)", missions.size() - fresh.size());
+
+    Set<Long> idSet = new HashSet<>(existing.values());
+    if (!fresh.isEmpty()) {
+      // saveAll hands back the saved missions in the order they were passed in
+      Iterator<String> freshFingerprints = fresh.keySet().iterator();
+      Map<String, Long> created = new HashMap<>();
+      saveMissions(fresh.values())
+          .forEach(mission -> created.put(freshFingerprints.next(), mission.getId()));
+
+      fingerprintIndex.get().record(created);
+      idSet.addAll(created.values());
+    }
+
+    log.info("Returning {} mission id(s)", idSet.size());
+    return idSet;
+  }
+
+  private Iterable<SettlementMission> saveMissions(final Iterable<SettlementMission> missions) {
+    Iterable<SettlementMission> savedMissions;
+    if (writeBehindStore.isPresent()) {
+      savedMissions = writeBehindStore.get().create(Lists.newArrayList(missions));
+    } else if (jdbcInsertEnabled) {
+      // Spawned missions are always new, so they can skip JPA and be inserted directly
+      savedMissions = missionrpsy.insertAll(missions);
+    } else {
+      savedMissions = missionrpsy.saveAll(missions);
+    }
     log.debug("The following missions were saved: {}", savedMissions);
 
+    // Pending write-behind missions are already served from memory
+    if (cacheWriteThrough && !writeBehindStore.isPresent()) {
+      missionCache.writeThrough(savedMissions);
+    }
+    return savedMissions;
+  }
+
+  private Set<Long> toIds(final Iterable<SettlementMission> savedMissions) {
     // We have to do all of this StreamSupport crap since the repository returns an iterable instead
     // of a normal collection
     Set<Long> idSet = StreamSupport.stream(savedMissions.spliterator(), false)
@@ -55,7 +190,6 @@ public class SettlementService {
     return idSet;
   }
 
-
   /**
    * Retrieve a previously-generated settlement mission from the database.
    *
@@ -63,7 +197,13 @@ public class SettlementService {
    */
   public Optional<SettlementMission> findMission(final Long id) {
     log.info("Retrieving settlement mission with id {}", id);
-    return missionrpsy.findById(id);
+    Optional<SettlementMission> pendingMission =
+        writeBehindStore.flatMap(store -> store.findPending(id));
+    if (pendingMission.isPresent()) {
+      return pendingMission;
+    }
+    // Concurrent cache misses are loaded together rather than one query each
+    return batchLoader.isPresent() ? batchLoader.get().load(id) : missionrpsy.findById(id);
   }
 
   /**
@@ -73,11 +213,10 @@ public class SettlementService {
    */
   public List<SettlementMission> findMissions(final List<Long> ids) {
     log.info("Retrieving settlement missions with ids: {}", ids);
+    List<SettlementMission> retrievedMissions = retrieveMissions(ids, true);
 
-    List<SettlementMission> retrievedMissions = Lists.newArrayList(missionrpsy.findAllById(ids));
-
-    // CrudRepository.findAll(Iterable ids) succeeds even if some provided IDs aren't found, so
-    // if we want to alert on any not-found IDs we have to manually check
+    // Like CrudRepository.findAll(Iterable ids), the cache succeeds even if some provided IDs
+    // aren't found, so if we want to alert on any not-found IDs we have to manually check
     Set<Long> retrievedMissionIds = retrievedMissions.stream()
         .map(SettlementMission::getId)
         .collect(Collectors.toSet());
@@ -90,17 +229,226 @@ public class SettlementService {
   }
 
   /**
-   * Update the mission with the given ID.
+   * Lazily iterate over the missions with the given IDs. Missions are loaded pageSize IDs at a
+   * time as the iterator reaches them, so only one page is ever held in memory.
+   *
+   * <p>Unlike findMissions, IDs that don't exist are skipped rather than failing the whole
+   * retrieval, since by the time they're found earlier missions may already have been used. Cached
+   * missions are used, but the ones loaded aren't cached, so that one large export doesn't push
+   * the missions that are actually being read out of the cache.
+   *
+   * @param pageSize IDs looked up by each query
+   */
+  public Iterator<SettlementMission> iterateMissions(final List<Long> ids, final int pageSize) {
+    log.info("Iterating over {} settlement mission(s)", ids.size());
+    return Iterators.concat(Iterators.transform(Lists.partition(ids, pageSize).iterator(),
+        page -> retrieveMissions(page, false).iterator()));
+  }
+
+  /*
+   * Retrieve the missions with the given IDs that exist, caching the ones loaded if cacheLoaded.
+   */
+  private List<SettlementMission> retrieveMissions(final List<Long> ids,
+      final boolean cacheLoaded) {
+    // Missions that haven't been written behind yet are served from memory
+    List<SettlementMission> retrievedMissions = new ArrayList<>();
+    List<Long> idsToLoad = new ArrayList<>();
+    for (Long id : ids) {
+      Optional<SettlementMission> pendingMission =
+          writeBehindStore.flatMap(store -> store.findPending(id));
+      if (pendingMission.isPresent()) {
+        retrievedMissions.add(pendingMission.get());
+      } else {
+        idsToLoad.add(id);
+      }
+    }
+    if (!idsToLoad.isEmpty()) {
+      // Served from the missions cache where possible, with one query for the rest
+      retrievedMissions.addAll(cacheLoaded ? missionCache.findAll(idsToLoad)
+          : missionCache.findAllWithoutCaching(idsToLoad));
+    }
+    return retrievedMissions;
+  }
+
+  /**
+   * Retrieve a page of the missions with the given depot, in ascending id order.
+   *
+   * @param instrument only return missions for this instrument; null for any
+   * @param direction only return missions in this direction; null for any
+   * @param afterId only return missions with a greater id (the last id of the previous page);
+   *     null for the first page
+   * @param limit most missions to return
+   */
+  public List<SettlementMission> findMissionsByDepot(final String depot, final String instrument,
+      final String direction, final Long afterId, final int limit) {
+    log.info("Retrieving up to {} settlement mission(s) with depot {} after id {}", limit, depot,
+        afterId);
+    // The query goes straight to the database, so it needs to see any pending writes
+    writeBehindStore.ifPresent(WriteBehindMissionStore::flush);
+    return missionrpsy.findPageByDepot(depot, instrument, direction, afterId, limit);
+  }
+
+  /**
+   * Lazily iterate over all the missions with the given depot, in ascending id order. Missions
+   * are loaded one page at a time as the iterator reaches them, so only one page is ever held in
+   * memory however many missions match.
+   *
+   * @param instrument only return missions for this instrument; null for any
+   * @param direction only return missions in this direction; null for any
+   * @param pageSize missions loaded by each query
+   */
+  public Iterator<SettlementMission> iterateMissionsByDepot(final String depot,
+      final String instrument, final String direction, final int pageSize) {
+    log.info("Iterating over settlement missions with depot {}", depot);
+    writeBehindStore.ifPresent(WriteBehindMissionStore::flush);
+
+    // Each page is its own query outside of any transaction, so the missions it returns are
+    // detached and don't pile up in a persistence context as the iteration goes on
+    return new AbstractIterator<SettlementMission>() {
+      private Iterator<SettlementMission> page = Collections.emptyIterator();
+      private Long afterId;
+      private boolean lastPage;
+
+      @Override
+      protected SettlementMission computeNext() {
+        if (!page.hasNext() && !lastPage) {
+          List<SettlementMission> missions =
+              missionrpsy.findPageByDepot(depot, instrument, direction, afterId, pageSize);
+          lastPage = missions.size() < pageSize;
+          if (!missions.isEmpty()) {
+            afterId = missions.get(missions.size() - 1).getId();
+          }
+          page = missions.iterator();
+        }
+        return page.hasNext() ? page.next() : endOfData();
+      }
+    };
+  }
+
+  /**
+   * Update the mission with the given ID, provided it hasn't changed since the version the given
+   * mission is based on.
+   *
+   * <p>The update is a single conditional UPDATE on the id and version, so it takes one round
+   * trip to the database instead of loading the mission first. Only an update that fails needs a
+   * second query, to tell a missing mission apart from one that was changed meanwhile.
    *
    * @param id identifier of the mission
-   * @param mission the mission to update
-   * @return optional containing the saved mission
+   * @param mission the mission to update, carrying the version it was based on
+   * @return optional containing the saved mission, or empty if there is no mission with the ID
+   * @throws ObjectOptimisticLockingFailureException if the mission has changed since that version
    */
-  public Optional<SettlementMission> updateMission(final Long id, final SettlementMission mission) {
+  public Optional<SettlementMission> updateMission(final Long id,
+      @Valid final SettlementMission mission) {
+    if (writeBehindStore.isPresent()) {
+      SettlementMission savedMission = writeBehindStore.get().update(id, mission);
+      log.info("The following mission was journaled: {}", savedMission);
+      return Optional.of(savedMission);
+    }
+
     mission.setId(id);
-    SettlementMission savedMission = missionrpsy.save(mission);
+    if (missionrpsy.updateIfVersionMatches(mission) == 0) {
+      if (!missionrpsy.existsById(id)) {
+        return Optional.empty();
+      }
+      throw new ObjectOptimisticLockingFailureException(SettlementMission.class, id);
+    }
+    SettlementMission savedMission =
+        mission.toBuilder().version(mission.getVersion() + 1).build();
     log.info("The following mission was updated: {}", savedMission);
-    return Optional.ofNullable(savedMission);
+
+    // The repository has evicted the mission, but a read in flight could still cache the version
+    // it loaded before the update
+    missionCache.evictUpdated(Collections.singletonList(savedMission));
+    // Without this the next read would go to the database
+    if (cacheWriteThrough) {
+      missionCache.writeThrough(Collections.singletonList(savedMission));
+    }
+    return Optional.of(savedMission);
+  }
+
+  /**
+   * Update many missions in one transaction. Each mission is updated only if it hasn't changed
+   * since the version it carries; the rest are left as they are and reported as such.
+   *
+   * <p>The updates are sent to the database as JDBC batches of conditional updates, and the
+   * missions are evicted from the cache in one go once the transaction commits. With write-behind
+   * enabled they are journaled instead, like single updates, and checked against the version held
+   * there.
+   *
+   * @param missions the missions to update, each carrying its ID and the version it was based on
+   * @return the outcome of each update, in the same order as the missions
+   */
+  @Transactional
+  public List<MissionChangeStatus> updateMissions(@Valid final List<SettlementMission> missions) {
+    if (writeBehindStore.isPresent()) {
+      // Going around the store would change missions under updates it has already acknowledged
+      List<MissionChangeStatus> statuses = writeBehindStore.get().updateAll(missions);
+      log.info("Journaled {} of {} mission update(s)",
+          statuses.stream().filter(MissionChangeStatus.UPDATED::equals).count(), missions.size());
+      return statuses;
+    }
+
+    int[] rowCounts = missionrpsy.updateAllIfVersionMatches(missions);
+
+    // Only the updates that failed need a query, to tell missing missions from changed ones
+    List<Long> failedIds = new ArrayList<>();
+    for (int i = 0; i < rowCounts.length; i++) {
+      if (rowCounts[i] == 0) {
+        failedIds.add(missions.get(i).getId());
+      }
+    }
+    Set<Long> existingIds = failedIds.isEmpty() ? Collections.emptySet()
+        : missionrpsy.findExistingIds(failedIds);
+
+    List<MissionChangeStatus> statuses = new ArrayList<>(missions.size());
+    List<SettlementMission> updatedMissions = new ArrayList<>();
+    List<Long> notUpdatedIds = new ArrayList<>();
+    for (int i = 0; i < rowCounts.length; i++) {
+      SettlementMission mission = missions.get(i);
+      if (rowCounts[i] > 0) {
+        statuses.add(MissionChangeStatus.UPDATED);
+        updatedMissions.add(mission.toBuilder().version(mission.getVersion() + 1).build());
+      } else {
+        statuses.add(existingIds.contains(mission.getId()) ? MissionChangeStatus.CONFLICT
+            : MissionChangeStatus.NOT_FOUND);
+        notUpdatedIds.add(mission.getId());
+      }
+    }
+    log.info("Updated {} of {} mission(s)", updatedMissions.size(), missions.size());
+
+    missionCache.evictUpdated(updatedMissions);
+    missionCache.evictAll(notUpdatedIds);
+    if (cacheWriteThrough) {
+      missionCache.writeThrough(updatedMissions);
+    }
+    return statuses;
+  }
+
+  /**
+   * Delete many missions in one transaction, as JDBC batches of deletes. The missions are
+   * evicted from the cache in one go once the transaction commits.
+   *
+   * @param ids identifiers of the missions to delete
+   * @return the outcome of each delete, in the same order as the IDs
+   */
+  @Transactional
+  public List<MissionChangeStatus> deleteMissions(final List<Long> ids) {
+    // Make sure a pending (or replayed) write can't bring a mission back after it has been deleted
+    writeBehindStore.ifPresent(store -> store.delete(ids));
+
+    int[] rowCounts = missionrpsy.deleteAllById(ids);
+    // A retried agreement mustn't be answered with a mission that no longer exists
+    fingerprintIndex.ifPresent(index -> index.forget(ids));
+
+    List<MissionChangeStatus> statuses = Arrays.stream(rowCounts)
+        .mapToObj(count -> count > 0 ? MissionChangeStatus.DELETED : MissionChangeStatus.NOT_FOUND)
+        .collect(Collectors.toList());
+    log.info("Deleted {} of {} mission(s)",
+        statuses.stream().filter(MissionChangeStatus.DELETED::equals).count(), ids.size());
+
+    missionCache.evictAll(ids);
+    return statuses;
   }
 
   /**
@@ -110,6 +458,9 @@ public class SettlementService {
    * @return does a mission with the id exist?
    */
   public boolean missionExists(final Long id) {
+    if (writeBehindStore.isPresent() && writeBehindStore.get().findPending(id).isPresent()) {
+      return true;
+    }
     return missionrpsy.existsById(id);
   }
 
@@ -120,7 +471,11 @@ public class SettlementService {
    * @param id identifier of the mission to delete
    */
   public void deleteMission(final Long id) {
+    // Make sure a pending (or replayed) write can't bring the mission back after it has been
+    // deleted
+    writeBehindStore.ifPresent(store -> store.delete(Collections.singletonList(id)));
     missionrpsy.deleteById(id);
+    fingerprintIndex.ifPresent(index -> index.forget(Collections.singletonList(id)));
     log.info("Mission with id '{}' was deleted", id);
   }
 }
@@ -0,0 +1,489 @@
+package org.galatea.starter.service;
+
+import com.google.common.primitives.Longs;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.MissionChangeStatus;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.utils.cache.VersionedMissionCache;
+import org.galatea.starter.utils.journal.AppendOnlyJournal;
+import org.galatea.starter.utils.journal.AppendOnlyJournal.Record;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Write-behind store for settlement missions, enabled with settlement.write-behind.enabled.
+ *
+ * <p>Creates and updates are appended to a memory-mapped journal and acknowledged as soon as the
+ * append has been forced to disk (creates made within a transaction once it has committed). Until
+ * they reach the database they are kept in memory and served from there. A scheduled flush writes
+ * everything pending to the database in one transaction (creates as bulk inserts, updates as bulk
+ * updates), then discards the journal records it has written. Whatever is left in the journal when
+ * the application stops is replayed on the next start. Deletes are journaled too, as tombstones,
+ * so that a replay can't bring a deleted mission back.
+ *
+ * <p>Optimistic locking is enforced here rather than by the database: an update must carry the
+ * version currently held in memory (or in the database, if the mission isn't pending), and is
+ * rejected straight away otherwise. The flush checks it again, since a mission can still be
+ * changed in the database without going through here (e.g. by another instance): an update is
+ * only written if the mission is still at the version it was based on. The same goes for replayed
+ * updates, so a stale record can never overwrite a newer row. An acknowledged update that can't be
+ * written is never thrown away: it is appended to a separate conflict journal (the journal path
+ * with ".conflicts" appended), kept across restarts, logged as an error and counted by the
+ * settlement.write-behind.conflicts gauge, so that it can be reconciled by hand.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "settlement.write-behind.enabled", havingValue = "true")
+public class WriteBehindMissionStore {
+
+  private static final byte CREATE = 1;
+  private static final byte UPDATE = 2;
+  private static final byte DELETE = 3;
+
+  private final ISettlementMissionRpsy missionrpsy;
+  private final TransactionTemplate transactionTemplate;
+  private final Cache missionCache;
+  private final Cache responseCache;
+  private final AppendOnlyJournal journal;
+  private final AppendOnlyJournal conflictJournal;
+
+  // Journaled missions are stored as their protobuf messages
+  private final ITranslator<SettlementMission, SettlementMissionProtoMessage> toProto;
+  private final ITranslator<SettlementMissionProtoMessage, SettlementMission> fromProto;
+
+  // Latest state of every mission that hasn't been flushed yet. Only ever changed while holding
+  // the journal's lock, so under that lock it reflects every record appended so far.
+  private final Map<Long, SettlementMission> pending = new ConcurrentHashMap<>();
+
+  // Pending missions that don't exist in the database yet, i.e. need inserting rather than updating
+  private final Set<Long> unflushedCreates = ConcurrentHashMap.newKeySet();
+
+  // The version in the database of each pending mission that does exist there, which the flush
+  // must still find before overwriting it
+  private final Map<Long, Long> flushedVersions = new ConcurrentHashMap<>();
+
+  // Acknowledged updates that the flush couldn't write, since their mission had changed in the
+  // database meanwhile. Latest per mission, as kept in the conflict journal.
+  private final Map<Long, SettlementMission> conflicts = new ConcurrentHashMap<>();
+
+  // Only one flush at a time, otherwise the same creates could be inserted twice
+  private final Lock flushLock = new ReentrantLock();
+
+  /**
+   * Opens (or creates) the journal files and registers the conflicts gauge.
+   */
+  public WriteBehindMissionStore(final ISettlementMissionRpsy missionrpsy,
+      final TransactionTemplate transactionTemplate, final CacheManager cacheManager,
+      final MeterRegistry meterRegistry,
+      final ITranslator<SettlementMission, SettlementMissionProtoMessage> toProto,
+      final ITranslator<SettlementMissionProtoMessage, SettlementMission> fromProto,
+      @Value("${settlement.write-behind.journal-path:mission.journal}") final String journalPath,
+      @Value("${settlement.write-behind.journal-size-mb:64}") final int journalSizeMb)
+      throws IOException {
+    this.missionrpsy = missionrpsy;
+    this.transactionTemplate = transactionTemplate;
+    this.toProto = toProto;
+    this.fromProto = fromProto;
+    this.missionCache = cacheManager.getCache("missions");
+    this.responseCache = cacheManager.getCache(MissionResponseCache.CACHE_NAME);
+    this.journal = new AppendOnlyJournal(Paths.get(journalPath), journalSizeMb * 1024 * 1024);
+    this.conflictJournal = new AppendOnlyJournal(Paths.get(journalPath + ".conflicts"),
+        journalSizeMb * 1024 * 1024);
+    Gauge.builder("settlement.write-behind.conflicts", conflicts, Map::size)
+        .description("Acknowledged mission updates that couldn't be written to the database")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Rebuilds the pending missions from whatever was left in the journal by the last run.
+   *
+   * <p>The last run may have written some of them before it stopped. A mission whose row is
+   * identical to one of its journaled states was written up to that state, so only what came after
+   * it is still pending; otherwise a create is still to be inserted, and an update still expects
+   * the version its first journaled state was based on.
+   */
+  @PostConstruct
+  public void replay() {
+    for (Record record : conflictJournal.readAll()) {
+      SettlementMission mission = fromPayload(record.getPayload());
+      conflicts.put(mission.getId(), mission);
+    }
+    if (!conflicts.isEmpty()) {
+      log.error("{} acknowledged mission update(s) are still in conflict with the database",
+          conflicts.size());
+    }
+
+    List<Record> records = journal.readAll();
+    Map<Long, List<SettlementMission>> journaledStates = new HashMap<>();
+    for (Record record : records) {
+      if (record.getType() == DELETE) {
+        Long id = Longs.fromByteArray(record.getPayload());
+        journaledStates.remove(id);
+        forget(id);
+        continue;
+      }
+
+      SettlementMission mission = fromPayload(record.getPayload());
+      if (record.getType() == CREATE) {
+        unflushedCreates.add(mission.getId());
+      } else if (!pending.containsKey(mission.getId())) {
+        flushedVersions.put(mission.getId(), mission.getVersion() - 1);
+      }
+      pending.put(mission.getId(), mission);
+      journaledStates.computeIfAbsent(mission.getId(), id -> new ArrayList<>()).add(mission);
+    }
+
+    if (!pending.isEmpty()) {
+      for (SettlementMission row : missionrpsy.findAllById(new ArrayList<>(pending.keySet()))) {
+        if (journaledStates.get(row.getId()).contains(row)) {
+          unflushedCreates.remove(row.getId());
+          flushedVersions.put(row.getId(), row.getVersion());
+          pending.remove(row.getId(), row);
+        } else if (unflushedCreates.remove(row.getId())) {
+          // Can't have been inserted by anything else, so it was changed since it was inserted
+          log.warn("Dropping journaled mission {}: it has been changed since it was written",
+              row.getId());
+          forget(row.getId());
+        }
+      }
+    }
+    log.info("Replayed {} journal record(s) for {} pending mission(s)", records.size(),
+        pending.size());
+  }
+
+  /**
+   * Assigns ids to the given new missions and journals them. When called within a transaction,
+   * they are only journaled once it commits, so that a rollback can't leave missions behind to be
+   * flushed later.
+   *
+   * @return copies of the missions with their ids set
+   */
+  public List<SettlementMission> create(final List<SettlementMission> missions) {
+    List<Long> ids = missionrpsy.reserveIds(missions.size());
+    List<SettlementMission> created = new ArrayList<>(missions.size());
+    for (int i = 0; i < missions.size(); i++) {
+      created.add(missions.get(i).toBuilder().id(ids.get(i)).build());
+    }
+
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+              append(CREATE, created);
+            }
+          });
+    } else {
+      append(CREATE, created);
+    }
+    return created.stream().map(this::copy).collect(Collectors.toList());
+  }
+
+  /**
+   * Journals a new state for an existing mission.
+   *
+   * @param mission the new state, carrying the version it was based on
+   * @return a copy of the stored mission, with its version incremented
+   * @throws ObjectOptimisticLockingFailureException if the mission has changed since that version
+   * @throws EntityNotFoundException if the mission doesn't exist
+   */
+  public synchronized SettlementMission update(final Long id, final SettlementMission mission) {
+    SettlementMission current = pending.get(id);
+    if (current == null) {
+      current = missionrpsy.findById(id)
+          .orElseThrow(() -> new EntityNotFoundException(SettlementMission.class, id.toString()));
+    }
+    if (!Objects.equals(current.getVersion(), mission.getVersion())) {
+      throw new ObjectOptimisticLockingFailureException(SettlementMission.class, id);
+    }
+
+    SettlementMission updated = mission.toBuilder().id(id).version(current.getVersion() + 1)
+        .build();
+    appendUpdates(Collections.singletonList(updated),
+        Collections.singletonMap(id, current.getVersion()));
+    return copy(updated);
+  }
+
+  /**
+   * Journals new states for many existing missions in one append. Each mission is only updated if
+   * it is still at the version it carries; the rest are left as they are and reported as such.
+   *
+   * @param missions the new states, each carrying its ID and the version it was based on
+   * @return the outcome of each update, in the same order as the missions
+   */
+  public synchronized List<MissionChangeStatus> updateAll(final List<SettlementMission> missions) {
+    // Missions that aren't pending are checked against the database, with one query for them all
+    Map<Long, SettlementMission> current = new HashMap<>();
+    List<Long> idsToLoad = new ArrayList<>();
+    for (SettlementMission mission : missions) {
+      SettlementMission pendingMission = pending.get(mission.getId());
+      if (pendingMission != null) {
+        current.put(mission.getId(), pendingMission);
+      } else {
+        idsToLoad.add(mission.getId());
+      }
+    }
+    if (!idsToLoad.isEmpty()) {
+      missionrpsy.findAllById(idsToLoad).forEach(row -> current.putIfAbsent(row.getId(), row));
+    }
+
+    List<MissionChangeStatus> statuses = new ArrayList<>(missions.size());
+    List<SettlementMission> updated = new ArrayList<>();
+    Map<Long, Long> baseVersions = new HashMap<>();
+    for (SettlementMission mission : missions) {
+      SettlementMission latest = current.get(mission.getId());
+      if (latest == null) {
+        statuses.add(MissionChangeStatus.NOT_FOUND);
+      } else if (!Objects.equals(latest.getVersion(), mission.getVersion())) {
+        statuses.add(MissionChangeStatus.CONFLICT);
+      } else {
+        SettlementMission next = mission.toBuilder().version(latest.getVersion() + 1).build();
+        baseVersions.putIfAbsent(mission.getId(), latest.getVersion());
+        // A later update of the same mission in this batch has to be based on this one
+        current.put(mission.getId(), next);
+        updated.add(next);
+        statuses.add(MissionChangeStatus.UPDATED);
+      }
+    }
+    if (!updated.isEmpty()) {
+      appendUpdates(updated, baseVersions);
+    }
+    return statuses;
+  }
+
+  /**
+   * Flushes whatever is pending and journals that the missions with the given ids are being
+   * deleted, so that nothing journaled for them before can bring them back on a replay. Call this
+   * before deleting them from the database.
+   */
+  public void delete(final Collection<Long> ids) {
+    flush();
+    List<Record> tombstones = ids.stream().map(id -> new Record(DELETE, Longs.toByteArray(id)))
+        .collect(Collectors.toList());
+    // Anything that arrived since the flush is deleted along with the mission
+    append(tombstones, () -> ids.forEach(this::forget));
+  }
+
+  /**
+   * Returns the latest acknowledged update of each mission that the flush couldn't write, since
+   * the mission had changed in the database meanwhile.
+   */
+  public List<SettlementMission> getConflicts() {
+    return conflicts.values().stream().map(this::copy).collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the mission if it hasn't been flushed to the database yet.
+   */
+  public Optional<SettlementMission> findPending(final Long id) {
+    return Optional.ofNullable(pending.get(id)).map(this::copy);
+  }
+
+  /**
+   * Writes everything pending to the database, then discards the journal records that have been
+   * written. Records appended meanwhile are kept for the next flush.
+   */
+  @Scheduled(fixedDelayString = "${settlement.write-behind.flush-interval-millis:200}")
+  public void flush() {
+    flushLock.lock();
+    try {
+      List<SettlementMission> batch;
+      int journalPosition;
+      synchronized (journal) {
+        // Every record before this position is reflected in the batch, or was flushed already
+        batch = new ArrayList<>(pending.values());
+        journalPosition = journal.getPosition();
+      }
+      if (!batch.isEmpty()) {
+        write(batch);
+      }
+      journal.discardBefore(journalPosition);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Flushes whatever is still pending before the application stops.
+   */
+  @PreDestroy
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      journal.close();
+      conflictJournal.close();
+    }
+  }
+
+  private void write(final List<SettlementMission> batch) {
+    List<SettlementMission> creates = new ArrayList<>();
+    List<SettlementMission> updates = new ArrayList<>();
+    List<Long> expectedVersions = new ArrayList<>();
+    for (SettlementMission mission : batch) {
+      if (unflushedCreates.contains(mission.getId())) {
+        creates.add(copy(mission));
+      } else {
+        updates.add(copy(mission));
+        expectedVersions.add(flushedVersions.get(mission.getId()));
+      }
+    }
+
+    int[] rowCounts = transactionTemplate.execute(status -> {
+      if (!creates.isEmpty()) {
+        missionrpsy.insertAll(creates);
+      }
+      return updates.isEmpty() ? new int[0]
+          : missionrpsy.updateAllIfVersionIs(updates, expectedVersions);
+    });
+    List<SettlementMission> conflicting = new ArrayList<>();
+    for (int i = 0; i < rowCounts.length; i++) {
+      if (rowCounts[i] == 0) {
+        log.error("Version {} of mission {} can't be written: it is no longer at version {} in the "
+            + "database. Keeping it in the conflict journal", updates.get(i).getVersion(),
+            updates.get(i).getId(), expectedVersions.get(i));
+        conflicting.add(updates.get(i));
+      }
+    }
+    if (!conflicting.isEmpty()) {
+      keepConflicts(conflicting);
+    }
+
+    // The database now has these missions, so any later state for them is an update
+    creates.forEach(mission -> unflushedCreates.remove(mission.getId()));
+    // Cached copies were read before these updates reached the database
+    updates.forEach(mission -> {
+      VersionedMissionCache.evictOlderThan(missionCache, mission.getId(), mission.getVersion());
+      responseCache.evict(mission.getId());
+    });
+    for (SettlementMission mission : batch) {
+      flushedVersions.remove(mission.getId());
+      // Anything that changed while we were writing stays pending for the next flush, as an
+      // update of what was just written
+      if (!pending.remove(mission.getId(), mission)) {
+        flushedVersions.put(mission.getId(), mission.getVersion());
+      }
+    }
+
+    log.info("Flushed {} new and {} updated mission(s)", creates.size(), updates.size());
+  }
+
+  private void keepConflicts(final List<SettlementMission> conflicting) {
+    List<Record> records = conflicting.stream()
+        .map(mission -> new Record(UPDATE, toPayload(mission))).collect(Collectors.toList());
+    synchronized (conflictJournal) {
+      if (!conflictJournal.append(records)) {
+        log.error("Conflict journal is full, {} conflicting update(s) are only kept in memory",
+            records.size());
+      }
+      conflicting.forEach(mission -> conflicts.put(mission.getId(), mission));
+    }
+  }
+
+  private void appendUpdates(final List<SettlementMission> updated,
+      final Map<Long, Long> baseVersions) {
+    append(UPDATE, updated, () -> baseVersions.forEach((id, baseVersion) -> {
+      // Already set if the mission was pending, unless it has just been flushed
+      if (!unflushedCreates.contains(id)) {
+        flushedVersions.putIfAbsent(id, baseVersion);
+      }
+    }));
+  }
+
+  private void append(final byte type, final List<SettlementMission> missions) {
+    append(type, missions, () -> { });
+  }
+
+  private void append(final byte type, final List<SettlementMission> missions,
+      final Runnable onAppended) {
+    List<Record> records = missions.stream().map(mission -> new Record(type, toPayload(mission)))
+        .collect(Collectors.toList());
+    append(records, () -> {
+      for (SettlementMission mission : missions) {
+        pending.put(mission.getId(), mission);
+        if (type == CREATE) {
+          unflushedCreates.add(mission.getId());
+        }
+      }
+      onAppended.run();
+    });
+  }
+
+  /*
+   * Appends the records and, while still holding the journal's lock, runs onAppended to bring the
+   * pending state in line with them.
+   */
+  private void append(final List<Record> records, final Runnable onAppended) {
+    while (true) {
+      synchronized (journal) {
+        if (journal.append(records)) {
+          onAppended.run();
+          return;
+        }
+        if (journal.isEmpty()) {
+          throw new IllegalStateException("Journal is too small for " + records.size()
+              + " record(s)");
+        }
+      }
+      // The journal is full; flushing discards what has been written, and once nothing is left
+      // the whole journal is free again
+      log.warn("Journal is full, flushing pending missions before appending");
+      flush();
+    }
+  }
+
+  private void forget(final Long id) {
+    pending.remove(id);
+    unflushedCreates.remove(id);
+    flushedVersions.remove(id);
+  }
+
+  private SettlementMission copy(final SettlementMission mission) {
+    // Callers get their own copy so that nothing can change the pending state behind our back
+    return mission.toBuilder().build();
+  }
+
+  private byte[] toPayload(final SettlementMission mission) {
+    return toProto.translate(mission).toByteArray();
+  }
+
+  private SettlementMission fromPayload(final byte[] payload) {
+    try {
+      return fromProto.translate(SettlementMissionProtoMessage.parseFrom(payload));
+    } catch (InvalidProtocolBufferException e) {
+      throw new IllegalStateException("Journal holds an unreadable mission", e);
+    }
+  }
+}
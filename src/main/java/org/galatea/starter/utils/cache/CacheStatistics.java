@@ -0,0 +1,37 @@
+package org.galatea.starter.utils.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Map;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Point-in-time configuration and statistics of a single cache, as reported by the cachestats
+ * actuator endpoint. Statistics the cache can't provide are left null.
+ */
+@Value
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CacheStatistics {
+
+  String name;
+  // Class of the cache implementation behind the Spring cache
+  String type;
+  Map<String, Object> configuration;
+
+  Long hits;
+  Long misses;
+  // Null until the cache has been read from
+  Double hitRatio;
+
+  Long loads;
+  Double loadMeanMillis;
+  Double loadMaxMillis;
+  // Keyed by percentile, e.g. 0.95
+  Map<String, Double> loadPercentileMillis;
+
+  Long size;
+  Long evictions;
+  // Per-tier statistics, for caches with more than one tier
+  Map<String, Map<String, Long>> tiers;
+}
@@ -0,0 +1,216 @@
+package org.galatea.starter.utils.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.EhCache2Metrics;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.ehcache.core.statistics.TierStatistics;
+import org.springframework.cache.Cache;
+
+/**
+ * Spring cache that publishes metrics for the cache it wraps: hits, misses and the hit ratio as
+ * seen by callers, and how long values that weren't cached took to load (with percentiles).
+ *
+ * <p>A cached null (e.g. findById's "not found") counts as a miss, as it does for the multi-get
+ * in SettlementMissionCache. Reads the application makes for its own purposes rather than for a
+ * caller can be made with peek, which isn't counted at all.
+ *
+ * <p>Loads are only timed for values read through get(key, valueLoader), which is what
+ * {@code @Cacheable(sync = true)} uses. Ehcache 2 caches additionally get Micrometer's own
+ * statistics (size, evictions, puts and so on), since those are only available from the native
+ * cache.
+ */
+public class InstrumentedCache implements Cache {
+
+  private static final double[] LOAD_PERCENTILES = {0.5, 0.95, 0.99};
+
+  private final Cache cache;
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer loads;
+
+  /**
+   * Wraps the given cache, registering its meters (tagged with the cache name) in the registry.
+   */
+  public InstrumentedCache(final Cache cache, final MeterRegistry registry) {
+    this.cache = cache;
+
+    Tags tags = Tags.of("cache", cache.getName());
+    this.hits = Counter.builder("settlement.cache.gets").tags(tags).tag("result", "hit")
+        .description("Reads that were answered from the cache").register(registry);
+    this.misses = Counter.builder("settlement.cache.gets").tags(tags).tag("result", "miss")
+        .description("Reads that found nothing in the cache").register(registry);
+    Gauge.builder("settlement.cache.hit.ratio", this, InstrumentedCache::hitRatio).tags(tags)
+        .description("Share of reads that were answered from the cache").register(registry);
+    this.loads = Timer.builder("settlement.cache.loads").tags(tags)
+        .description("Time taken to load values that weren't cached")
+        .publishPercentiles(LOAD_PERCENTILES).register(registry);
+
+    if (cache.getNativeCache() instanceof Ehcache) {
+      // Tags the meters with the cache name itself
+      EhCache2Metrics.monitor(registry, (Ehcache) cache.getNativeCache(), Tags.empty());
+    }
+  }
+
+  @Override
+  public String getName() {
+    return cache.getName();
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return cache.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(final Object key) {
+    ValueWrapper cached = cache.get(key);
+    (cached != null && cached.get() != null ? hits : misses).increment();
+    return cached;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(final Object key, final Class<T> type) {
+    ValueWrapper cached = get(key);
+    Object value = cached != null ? cached.get() : null;
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException(
+          "Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  @Override
+  public <T> T get(final Object key, final Callable<T> valueLoader) {
+    // The wrapped cache decides whether (and how many times) the loader is called
+    AtomicBoolean loaded = new AtomicBoolean();
+    T value = cache.get(key, () -> {
+      loaded.set(true);
+      return loads.recordCallable(valueLoader);
+    });
+    (loaded.get() || value == null ? misses : hits).increment();
+    return value;
+  }
+
+  @Override
+  public void put(final Object key, final Object value) {
+    cache.put(key, value);
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(final Object key, final Object value) {
+    return cache.putIfAbsent(key, value);
+  }
+
+  @Override
+  public void evict(final Object key) {
+    cache.evict(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Reads the given cache without the read counting as a hit or a miss, if the cache is
+   * instrumented. For reads the application makes for itself, such as looking again for values a
+   * caller has already missed, that would otherwise skew the hit ratio.
+   */
+  public static ValueWrapper peek(final Cache cache, final Object key) {
+    return cache instanceof InstrumentedCache ? ((InstrumentedCache) cache).cache.get(key)
+        : cache.get(key);
+  }
+
+  /**
+   * Returns the configuration of the wrapped cache along with its current statistics.
+   */
+  public CacheStatistics getStatistics() {
+    long hitCount = (long) hits.count();
+    long missCount = (long) misses.count();
+
+    Map<String, Double> loadPercentiles = new LinkedHashMap<>();
+    for (ValueAtPercentile percentile : loads.takeSnapshot().percentileValues()) {
+      loadPercentiles.put(String.valueOf(percentile.percentile()),
+          percentile.value(TimeUnit.MILLISECONDS));
+    }
+
+    CacheStatistics.CacheStatisticsBuilder statistics = CacheStatistics.builder()
+        .name(getName()).type(getNativeCache().getClass().getName())
+        .hits(hitCount).misses(missCount)
+        .hitRatio(hitCount + missCount > 0 ? hitRatio() : null)
+        .loads(loads.count()).loadMeanMillis(loads.mean(TimeUnit.MILLISECONDS))
+        .loadMaxMillis(loads.max(TimeUnit.MILLISECONDS)).loadPercentileMillis(loadPercentiles);
+
+    if (getNativeCache() instanceof Ehcache) {
+      addEhCacheStatistics(statistics, (Ehcache) getNativeCache());
+    } else if (innermostCache() instanceof TieredMissionCache) {
+      addTieredStatistics(statistics, (TieredMissionCache) innermostCache());
+    }
+    return statistics.build();
+  }
+
+  /**
+   * Returns the cache this instruments.
+   */
+  public Cache getTargetCache() {
+    return cache;
+  }
+
+  private Cache innermostCache() {
+    // The missions cache is wrapped once more, to guard its puts
+    return cache instanceof VersionedMissionCache
+        ? ((VersionedMissionCache) cache).getTargetCache() : cache;
+  }
+
+  private double hitRatio() {
+    double total = hits.count() + misses.count();
+    return total > 0 ? hits.count() / total : Double.NaN;
+  }
+
+  private static void addEhCacheStatistics(
+      final CacheStatistics.CacheStatisticsBuilder statistics, final Ehcache ehcache) {
+    CacheConfiguration config = ehcache.getCacheConfiguration();
+    Map<String, Object> configuration = new LinkedHashMap<>();
+    configuration.put("maxEntriesLocalHeap", config.getMaxEntriesLocalHeap());
+    configuration.put("timeToLiveSeconds", config.getTimeToLiveSeconds());
+    configuration.put("timeToIdleSeconds", config.getTimeToIdleSeconds());
+    configuration.put("eternal", config.isEternal());
+    configuration.put("evictionPolicy", config.getMemoryStoreEvictionPolicy().toString());
+
+    statistics.configuration(configuration).size(ehcache.getStatistics().getSize())
+        .evictions(ehcache.getStatistics().cacheEvictedCount());
+  }
+
+  private static void addTieredStatistics(
+      final CacheStatistics.CacheStatisticsBuilder statistics, final TieredMissionCache cache) {
+    Map<String, Map<String, Long>> tiers = new LinkedHashMap<>();
+    long evictions = 0;
+    for (Map.Entry<String, TierStatistics> tier : cache.getTierStatistics().entrySet()) {
+      Map<String, Long> tierStatistics = new LinkedHashMap<>();
+      tierStatistics.put("hits", tier.getValue().getHits());
+      tierStatistics.put("misses", tier.getValue().getMisses());
+      tierStatistics.put("evictions", tier.getValue().getEvictions());
+      tierStatistics.put("entries", tier.getValue().getMappings());
+      tierStatistics.put("occupiedBytes", tier.getValue().getOccupiedByteSize());
+      tiers.put(tier.getKey(), tierStatistics);
+      evictions += tier.getValue().getEvictions();
+    }
+
+    // Every mission is in the lowest (off-heap) tier, so it holds the size of the whole cache
+    TierStatistics offHeap = cache.getTierStatistics().get("OffHeap");
+    statistics.configuration(cache.getConfiguration()).tiers(tiers).evictions(evictions)
+        .size(offHeap != null ? offHeap.getMappings() : null);
+  }
+}
@@ -0,0 +1,44 @@
+package org.galatea.starter.utils.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Cache manager that hands out an InstrumentedCache for each cache of the manager it wraps, so
+ * that every cache used through Spring publishes metrics.
+ */
+public class InstrumentedCacheManager implements CacheManager {
+
+  private final CacheManager cacheManager;
+  private final MeterRegistry registry;
+  private final ConcurrentMap<String, InstrumentedCache> caches = new ConcurrentHashMap<>();
+
+  public InstrumentedCacheManager(final CacheManager cacheManager, final MeterRegistry registry) {
+    this.cacheManager = cacheManager;
+    this.registry = registry;
+  }
+
+  @Override
+  public Cache getCache(final String name) {
+    InstrumentedCache instrumented = caches.get(name);
+    if (instrumented != null) {
+      return instrumented;
+    }
+
+    Cache cache = cacheManager.getCache(name);
+    if (cache == null) {
+      return null;
+    }
+    // One wrapper per cache, so that everything reading a cache adds to the same hit counts
+    return caches.computeIfAbsent(name, key -> new InstrumentedCache(cache, registry));
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return cacheManager.getCacheNames();
+  }
+}
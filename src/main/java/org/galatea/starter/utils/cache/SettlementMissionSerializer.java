@@ -0,0 +1,75 @@
+package org.galatea.starter.utils.cache;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.nio.ByteBuffer;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.cache.support.NullValue;
+
+/**
+ * Ehcache serializer that stores settlement missions as SettlementMissionProtoMessage bytes, which
+ * are far smaller than their Java serialized form.
+ *
+ * <p>Values are typed as Object because Spring also caches NullValue, for lookups that found
+ * nothing. Each value is prefixed with a byte saying which of the two it is.
+ *
+ * <p>Missions are mapped to and from their protobuf messages by the application's translators, so
+ * that the mapping is only maintained in one place.
+ */
+public class SettlementMissionSerializer implements Serializer<Object> {
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte MISSION = 1;
+
+  private final ITranslator<SettlementMission, SettlementMissionProtoMessage> toProto;
+  private final ITranslator<SettlementMissionProtoMessage, SettlementMission> fromProto;
+
+  /**
+   * Creates a serializer that maps missions with the given translators.
+   */
+  public SettlementMissionSerializer(
+      final ITranslator<SettlementMission, SettlementMissionProtoMessage> toProto,
+      final ITranslator<SettlementMissionProtoMessage, SettlementMission> fromProto) {
+    this.toProto = toProto;
+    this.fromProto = fromProto;
+  }
+
+  @Override
+  public ByteBuffer serialize(final Object value) {
+    if (value == NullValue.INSTANCE) {
+      return ByteBuffer.wrap(new byte[] {NULL_VALUE});
+    }
+    if (!(value instanceof SettlementMission)) {
+      throw new SerializerException("Can't cache a " + value.getClass().getName());
+    }
+
+    byte[] payload = toProto.translate((SettlementMission) value).toByteArray();
+
+    ByteBuffer buffer = ByteBuffer.allocate(payload.length + 1);
+    buffer.put(MISSION).put(payload).flip();
+    return buffer;
+  }
+
+  @Override
+  public Object read(final ByteBuffer binary) {
+    // Ehcache may hand us a buffer that is shared, so leave its position alone
+    ByteBuffer buffer = binary.duplicate();
+    if (buffer.get() == NULL_VALUE) {
+      return NullValue.INSTANCE;
+    }
+
+    try {
+      return fromProto.translate(SettlementMissionProtoMessage.parseFrom(buffer));
+    } catch (InvalidProtocolBufferException e) {
+      throw new SerializerException("Cached mission is unreadable", e);
+    }
+  }
+
+  @Override
+  public boolean equals(final Object value, final ByteBuffer binary) {
+    return value.equals(read(binary));
+  }
+}
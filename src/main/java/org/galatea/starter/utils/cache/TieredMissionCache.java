@@ -0,0 +1,210 @@
+package org.galatea.starter.utils.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.function.ToDoubleFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheManagerBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.core.internal.statistics.DefaultStatisticsService;
+import org.ehcache.core.spi.service.StatisticsService;
+import org.ehcache.core.statistics.TierStatistics;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+/**
+ * Spring cache for settlement missions backed by Ehcache 3, with an off-heap tier sized in bytes
+ * and an optional (small) on-heap tier in front of it.
+ *
+ * <p>Missions in the off-heap tier are stored as protobuf bytes outside the Java heap, so millions
+ * of them can be cached without adding to GC pauses. The on-heap tier keeps the hottest missions
+ * as objects so that they don't have to be deserialized on every read.
+ *
+ * <p>Hits, misses, evictions, entry counts and byte sizes are published per tier (see bindTo).
+ */
+@Slf4j
+public class TieredMissionCache extends AbstractValueAdaptingCache implements MeterBinder,
+    Closeable {
+
+  private final String name;
+  private final Map<String, Object> configuration;
+  private final StatisticsService statisticsService;
+  private final CacheManager cacheManager;
+  private final Cache<Long, Object> cache;
+
+  // Makes sure only one thread loads a missing mission in get(key, valueLoader)
+  private final Striped<Lock> loadLocks = Striped.lock(64);
+
+  /**
+   * Creates the cache.
+   *
+   * @param heapEntries most missions held on heap; 0 for no on-heap tier
+   * @param offHeapMb size of the off-heap tier (the JVM's MaxDirectMemorySize must allow for it)
+   * @param timeToLive how long a mission stays cached after it was put
+   * @param serializer how missions are stored in the off-heap tier
+   */
+  public TieredMissionCache(final String name, final long heapEntries, final long offHeapMb,
+      final Duration timeToLive, final SettlementMissionSerializer serializer) {
+    super(true);
+    this.name = name;
+    this.configuration = ImmutableMap.<String, Object>of("heapEntries", heapEntries,
+        "offHeapMb", offHeapMb, "timeToLiveSeconds", timeToLive.getSeconds());
+
+    ResourcePoolsBuilder pools = heapEntries > 0
+        ? ResourcePoolsBuilder.newResourcePoolsBuilder().heap(heapEntries, EntryUnit.ENTRIES)
+        : ResourcePoolsBuilder.newResourcePoolsBuilder();
+    pools = pools.offheap(offHeapMb, MemoryUnit.MB);
+
+    statisticsService = new DefaultStatisticsService();
+    cacheManager = CacheManagerBuilder.newCacheManagerBuilder().using(statisticsService)
+        .withCache(name, CacheConfigurationBuilder
+            .newCacheConfigurationBuilder(Long.class, Object.class, pools)
+            .withValueSerializer(serializer)
+            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive)))
+        .build(true);
+    cache = cacheManager.getCache(name, Long.class, Object.class);
+
+    log.info("Created cache '{}' with {} on-heap entries and {}MB off-heap", name, heapEntries,
+        offHeapMb);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return cache;
+  }
+
+  @Override
+  protected Object lookup(final Object key) {
+    return cache.get(toKey(key));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(final Object key, final Callable<T> valueLoader) {
+    ValueWrapper cached = get(key);
+    if (cached != null) {
+      return (T) cached.get();
+    }
+
+    Lock lock = loadLocks.get(key);
+    lock.lock();
+    try {
+      // Another thread may have loaded it while we waited
+      cached = get(key);
+      if (cached != null) {
+        return (T) cached.get();
+      }
+
+      T value;
+      try {
+        value = valueLoader.call();
+      } catch (Exception e) {
+        throw new ValueRetrievalException(key, valueLoader, e);
+      }
+      put(key, value);
+      return value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final Object key, final Object value) {
+    cache.put(toKey(key), toStoreValue(value));
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(final Object key, final Object value) {
+    return toValueWrapper(cache.putIfAbsent(toKey(key), toStoreValue(value)));
+  }
+
+  @Override
+  public void evict(final Object key) {
+    cache.remove(toKey(key));
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Returns the current statistics of each tier, keyed by tier name (e.g. OnHeap, OffHeap).
+   */
+  public Map<String, TierStatistics> getTierStatistics() {
+    return statisticsService.getCacheStatistics(name).getTierStatistics();
+  }
+
+  /**
+   * Returns the sizes and time to live the cache was created with.
+   */
+  public Map<String, Object> getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Publishes the statistics of each tier, tagged with the cache and tier names.
+   */
+  @Override
+  public void bindTo(final MeterRegistry registry) {
+    for (String tier : getTierStatistics().keySet()) {
+      Tags tags = Tags.of("cache", name, "tier", tier);
+      tierCounter(registry, "hits", tags, tier, TierStatistics::getHits);
+      tierCounter(registry, "misses", tags, tier, TierStatistics::getMisses);
+      tierCounter(registry, "evictions", tags, tier, TierStatistics::getEvictions);
+      tierGauge(registry, "entries", null, tags, tier, TierStatistics::getMappings);
+      tierGauge(registry, "occupied", "bytes", tags, tier, TierStatistics::getOccupiedByteSize);
+      tierGauge(registry, "allocated", "bytes", tags, tier,
+          TierStatistics::getAllocatedByteSize);
+    }
+  }
+
+  /**
+   * Closes the underlying cache manager, releasing the off-heap memory.
+   */
+  @Override
+  public void close() {
+    cacheManager.close();
+  }
+
+  private void tierCounter(final MeterRegistry registry, final String stat, final Tags tags,
+      final String tier, final ToDoubleFunction<TierStatistics> value) {
+    FunctionCounter.builder("settlement.cache.tier." + stat, this,
+        tieredCache -> value.applyAsDouble(tieredCache.getTierStatistics().get(tier)))
+        .tags(tags).register(registry);
+  }
+
+  private void tierGauge(final MeterRegistry registry, final String stat, final String baseUnit,
+      final Tags tags, final String tier, final ToDoubleFunction<TierStatistics> value) {
+    Gauge.builder("settlement.cache.tier." + stat, this,
+        tieredCache -> value.applyAsDouble(tieredCache.getTierStatistics().get(tier)))
+        .baseUnit(baseUnit).tags(tags).register(registry);
+  }
+
+  private static Long toKey(final Object key) {
+    if (!(key instanceof Long)) {
+      throw new IllegalArgumentException("Missions are cached by their Long id, not by " + key);
+    }
+    return (Long) key;
+  }
+}
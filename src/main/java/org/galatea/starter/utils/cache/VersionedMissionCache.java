@@ -0,0 +1,212 @@
+package org.galatea.starter.utils.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.springframework.cache.Cache;
+
+/**
+ * Spring cache for settlement missions that never lets an older version of a mission replace a
+ * newer one, whoever puts it: findById's {@code @Cacheable} population, a multi-get or a
+ * write-through after a save. A reader that loaded a mission just before it was updated can
+ * therefore never overwrite the updated mission with the one it read.
+ *
+ * <p>"Not found" (null) is only cached when nothing is cached for the mission yet, since a mission
+ * that is cached has been found since.
+ *
+ * <p>Missions are only evicted once they have changed, which leaves nothing cached to compare a
+ * late put against. So an evict leaves a tombstone holding the lowest version that may still be
+ * cached: one past the version that was cached, or the version the mission was updated to if the
+ * evict says (see evictOlderThan). A reader that loaded the mission before the update can then
+ * not cache what it read after the evict either. Tombstones only need to outlive reads that were
+ * in flight at the time, so they expire after a minute.
+ */
+@Slf4j
+public class VersionedMissionCache implements Cache {
+
+  private static final long TOMBSTONE_TTL_SECONDS = 60;
+
+  private final Cache cache;
+
+  // Makes the version check and the put that follows it atomic, per mission
+  private final Striped<Lock> locks = Striped.lock(64);
+
+  // Lowest version of each recently evicted mission that may be cached again
+  private final com.google.common.cache.Cache<Object, Long> tombstones = CacheBuilder.newBuilder()
+      .expireAfterWrite(TOMBSTONE_TTL_SECONDS, TimeUnit.SECONDS).build();
+
+  public VersionedMissionCache(final Cache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Evicts the mission with the given key from the missions cache, and keeps any version of it
+   * older than the given one from being cached again. Caches that aren't versioned (or wrapping a
+   * VersionedMissionCache) are simply evicted.
+   *
+   * @param version the version the mission has been updated to
+   */
+  public static void evictOlderThan(final Cache cache, final Object key, final long version) {
+    Cache target = cache instanceof InstrumentedCache
+        ? ((InstrumentedCache) cache).getTargetCache() : cache;
+    if (target instanceof VersionedMissionCache) {
+      ((VersionedMissionCache) target).evictOlderThan(key, version);
+    } else {
+      cache.evict(key);
+    }
+  }
+
+  /**
+   * Returns the cache this guards.
+   */
+  public Cache getTargetCache() {
+    return cache;
+  }
+
+  @Override
+  public String getName() {
+    return cache.getName();
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return cache.getNativeCache();
+  }
+
+  @Override
+  public ValueWrapper get(final Object key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public <T> T get(final Object key, final Class<T> type) {
+    return cache.get(key, type);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(final Object key, final Callable<T> valueLoader) {
+    ValueWrapper cached = cache.get(key);
+    if (cached != null) {
+      return (T) cached.get();
+    }
+
+    // Held while loading, so that only one thread loads a missing mission (as sync = true asks)
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      cached = cache.get(key);
+      if (cached != null) {
+        return (T) cached.get();
+      }
+
+      T value;
+      try {
+        value = valueLoader.call();
+      } catch (Exception e) {
+        throw new ValueRetrievalException(key, valueLoader, e);
+      }
+      // A newer version may have been written through while this one was loading
+      return (T) putIfNewer(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final Object key, final Object value) {
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      putIfNewer(key, value);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public ValueWrapper putIfAbsent(final Object key, final Object value) {
+    // Never replaces anything, so there is no version to check
+    return cache.putIfAbsent(key, value);
+  }
+
+  @Override
+  public void evict(final Object key) {
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      ValueWrapper cached = cache.get(key);
+      if (cached != null && cached.get() != null) {
+        // Whatever was cached is out of date now
+        tombstone(key, ((SettlementMission) cached.get()).getVersion() + 1);
+      }
+      cache.evict(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Evicts the mission, and keeps any version of it older than the given one from being cached
+   * again (until the tombstone expires).
+   *
+   * @param version the version the mission has been updated to
+   */
+  public void evictOlderThan(final Object key, final long version) {
+    Lock lock = locks.get(key);
+    lock.lock();
+    try {
+      tombstone(key, version);
+      cache.evict(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+  }
+
+  /*
+   * Puts the value unless a newer version is already cached, or the mission has been evicted since
+   * this version. Returns whichever is cached after, or the value itself if nothing is. Must be
+   * called holding the key's lock.
+   */
+  private Object putIfNewer(final Object key, final Object value) {
+    ValueWrapper cached = cache.get(key);
+    SettlementMission current = cached == null ? null : (SettlementMission) cached.get();
+    SettlementMission mission = (SettlementMission) value;
+
+    Long tombstone = tombstones.getIfPresent(key);
+    if (tombstone != null && (mission == null || mission.getVersion() < tombstone)) {
+      log.debug("Not caching {} of mission {}, it has been evicted since",
+          mission == null ? "not found" : "version " + mission.getVersion(), key);
+      return cached == null ? mission : current;
+    }
+    if (cached == null || isNewer(mission, current)) {
+      cache.put(key, mission);
+      return mission;
+    }
+    log.debug("Not caching {} of mission {}, version {} is already cached",
+        mission == null ? "not found" : "version " + mission.getVersion(), key,
+        current == null ? "not found" : current.getVersion());
+    return current;
+  }
+
+  private void tombstone(final Object key, final long version) {
+    tombstones.asMap().merge(key, version, Math::max);
+  }
+
+  private static boolean isNewer(final SettlementMission mission,
+      final SettlementMission current) {
+    if (mission == null) {
+      return false;
+    }
+    return current == null || current.getVersion() < mission.getVersion();
+  }
+}
@@ -0,0 +1,44 @@
+package org.galatea.starter.utils.cache;
+
+import java.util.Collection;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Cache manager that hands out the "missions" cache of the manager it wraps as a
+ * VersionedMissionCache, so that every put into it is guarded by the mission's version. Every other
+ * cache is handed out as it is.
+ */
+public class VersionedMissionCacheManager implements CacheManager {
+
+  private static final String MISSIONS = "missions";
+
+  private final CacheManager cacheManager;
+  private volatile VersionedMissionCache missionCache;
+
+  public VersionedMissionCacheManager(final CacheManager cacheManager) {
+    this.cacheManager = cacheManager;
+  }
+
+  @Override
+  public Cache getCache(final String name) {
+    if (!MISSIONS.equals(name)) {
+      return cacheManager.getCache(name);
+    }
+    if (missionCache == null) {
+      synchronized (this) {
+        Cache cache = cacheManager.getCache(name);
+        // One wrapper, so that every put into the cache shares the same locks
+        if (missionCache == null && cache != null) {
+          missionCache = new VersionedMissionCache(cache);
+        }
+      }
+    }
+    return missionCache;
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return cacheManager.getCacheNames();
+  }
+}
@@ -0,0 +1,17 @@
+package org.galatea.starter.utils.http.converter;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Response body that serializes itself once the response's media type has been negotiated,
+ * typically by fetching bytes serialized for an earlier response from a cache. Written out by
+ * SerializedBodyConverter.
+ */
+@FunctionalInterface
+public interface CachedResponseBody {
+
+  /**
+   * Returns the body serialized to the given media type.
+   */
+  SerializedBody serializeTo(MediaType mediaType);
+}
@@ -1,14 +1,29 @@
 package org.galatea.starter.utils.http.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CsvSerializer {
 
+  private static final CsvMapper MAPPER = createMapper();
+
+  // Deriving a schema means introspecting the row class, so each writer is only made once. Like
+  // the mapper, writers are immutable and thread-safe.
+  private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
   private CsvSerializer() {}
 
   /**
@@ -27,15 +42,63 @@ public class CsvSerializer {
    */
   public static <T> String serializeToCsv(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
+    return writerFor(clazz).writeValueAsString(rows);
+    // See CsvWriterTest for examples of Jackson CSV behavior
+  }
+
+  /**
+   * Write the given objects to the given stream as a CSV document, the same document that
+   * serializeToCsv would return. Rows are written one at a time as they are taken from the
+   * iterator, so the document is never held in memory as a whole. The stream is not closed.
+   *
+   * @param rows the objects that should be written as the rows of the CSV document
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the UTF-8 encoded document to
+   * @param <T> the type of the row data
+   */
+  public static <T> void writeCsv(final Iterator<? extends T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    try (SequenceWriter writer = writerFor(clazz).writeValues(out)) {
+      while (rows.hasNext()) {
+        writer.write(rows.next());
+      }
+    }
+  }
+
+  /**
+   * Read the rows of a CSV document from the given stream, one at a time as the returned iterator
+   * is advanced, so the document is never held in memory as a whole.
+   *
+   * <p>The first row must be a header naming the property each column holds; columns may be in
+   * any order and missing columns are left null. A malformed row is reported by the iterator
+   * throwing a RuntimeJsonMappingException when it is reached.
+   *
+   * @param in the stream to read the UTF-8 encoded document from
+   * @param clazz the class that is the type of the row data
+   * @param <T> the type of the row data
+   * @return an iterator over the rows, which should be closed once done with
+   */
+  public static <T> MappingIterator<T> readCsv(final InputStream in, final Class<T> clazz)
+      throws IOException {
+    // Columns are bound by the header row rather than by a schema derived from the class
+    return MAPPER.readerFor(clazz).with(CsvSchema.emptySchema().withHeader()).readValues(in);
+  }
+
+  private static CsvMapper createMapper() {
     // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
     // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
     CsvMapper mapper = new CsvMapper();
     mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    // Streamed rows are written to a stream we don't own (e.g. an HTTP response body)
+    mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    return mapper;
+  }
+
+  private static ObjectWriter writerFor(final Class<?> clazz) {
     // Jackson CSV uses the property names for the header row by default. To have a custom header
     // for one or more columns, see
     // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
-    CsvSchema schema = mapper.schemaFor(clazz).withHeader();
-    return mapper.writer(schema).writeValueAsString(rows);
-    // See CsvWriterTest for examples of Jackson CSV behavior
+    return WRITERS.computeIfAbsent(clazz,
+        rowClass -> MAPPER.writer(MAPPER.schemaFor(rowClass).withHeader()));
   }
 }
@@ -0,0 +1,20 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.Serializable;
+import lombok.ToString;
+import lombok.Value;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * A response body that has already been serialized, along with the headers (content type
+ * included) that the converter which serialized it set.
+ */
+@Value
+@ToString(exclude = "bytes")
+public class SerializedBody implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  HttpHeaders headers;
+  byte[] bytes;
+}
@@ -0,0 +1,56 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+
+/**
+ * HttpMessageConverter that writes a CachedResponseBody to the response as is, for whichever media
+ * type content negotiation settled on. Any media type is supported, since the body does its own
+ * serialization.
+ *
+ * <p>This implements HttpMessageConverter directly because AbstractHttpMessageConverter doesn't
+ * pass the negotiated media type on to its subclasses.
+ */
+public class SerializedBodyConverter implements HttpMessageConverter<CachedResponseBody> {
+
+  @Override
+  public boolean canRead(final Class<?> clazz, final MediaType mediaType) {
+    return false;
+  }
+
+  @Override
+  public boolean canWrite(final Class<?> clazz, final MediaType mediaType) {
+    return CachedResponseBody.class.isAssignableFrom(clazz);
+  }
+
+  @Override
+  public List<MediaType> getSupportedMediaTypes() {
+    return Collections.singletonList(MediaType.ALL);
+  }
+
+  @Override
+  public CachedResponseBody read(final Class<? extends CachedResponseBody> clazz,
+      final HttpInputMessage inputMessage) {
+    throw new UnsupportedOperationException("Reading a CachedResponseBody is not supported");
+  }
+
+  @Override
+  public void write(final CachedResponseBody body, final MediaType contentType,
+      final HttpOutputMessage outputMessage) throws IOException {
+    SerializedBody serialized = body.serializeTo(contentType);
+
+    // Use the headers set when the body was first serialized (e.g. the charset that Jackson added
+    // to the content type) so that a cached response can't be told apart from a fresh one
+    HttpHeaders headers = outputMessage.getHeaders();
+    serialized.getHeaders().forEach(headers::put);
+    headers.setContentLength(serialized.getBytes().length);
+    outputMessage.getBody().write(serialized.getBytes());
+    outputMessage.getBody().flush();
+  }
+}
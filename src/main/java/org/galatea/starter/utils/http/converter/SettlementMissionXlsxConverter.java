@@ -44,8 +44,9 @@ public class SettlementMissionXlsxConverter
   protected void writeInternal(final SettlementMissionList settlementMissionList,
       final HttpOutputMessage outputMessage) throws IOException {
     log.info("Converting SettlementMissionList to XLSX for HTTP response");
-    outputMessage.getBody().write(XlsxSerializer.serializeToXlsx(
-        settlementMissionList.getSettlementMissions(), SettlementMission.class));
+    // Streamed, so that the spreadsheet is never held in memory as a whole
+    XlsxSerializer.writeXlsx(settlementMissionList.getSettlementMissions().iterator(),
+        SettlementMission.class, outputMessage.getBody());
     log.info("Converted SettlementMissionList to XLSX");
   }
 
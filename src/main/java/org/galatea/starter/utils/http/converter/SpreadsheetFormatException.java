@@ -0,0 +1,15 @@
+package org.galatea.starter.utils.http.converter;
+
+/**
+ * Represents an uploaded spreadsheet that couldn't be read, either because it isn't a spreadsheet
+ * of the expected format or because one of its rows couldn't be converted.
+ */
+public class SpreadsheetFormatException extends RuntimeException {
+
+  /**
+   * Constructs a new SpreadsheetFormatException with the specified detail message and cause.
+   */
+  public SpreadsheetFormatException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -2,34 +2,89 @@ package org.galatea.starter.utils.http.converter;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import javax.xml.parsers.ParserConfigurationException;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.ooxml.util.SAXHelper;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.InvalidOperationException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 @Slf4j
 // See XlsxSerializerTest for example output
 public class XlsxSerializer {
 
+  // Rows of a streamed sheet kept in memory; older rows are flushed to a temp file
+  private static final int STREAMING_WINDOW_SIZE = 100;
+
+  // Field types written as numeric cells; anything else is written as a string
+  private static final Set<Class<?>> NUMERIC_TYPES = ImmutableSet.of(byte.class, short.class,
+      int.class, long.class, float.class, double.class, Byte.class, Short.class, Integer.class,
+      Long.class, Float.class, Double.class);
+
+  // Working out the columns of a class means walking its hierarchy and reading annotations, so
+  // it is only done once per class
+  private static final Map<Class<?>, List<Column>> COLUMNS = new ConcurrentHashMap<>();
+
+  // Converts the cells of a row that has been read, keyed by header, into a row object
+  private static final ObjectMapper ROW_MAPPER = new ObjectMapper();
+
   private XlsxSerializer() {}
 
   /**
    * Serialize the given objects to an XLSX spreadsheet.
    *
-   * <p>Doesn't do any special handling of nested complex objects or collections in the given
-   * row objects - each field in the row object is basically toString()'ed and put in a cell.
+   * <p>Numeric and boolean fields are written as numeric and boolean cells. Doesn't do any special
+   * handling of nested complex objects or collections in the given row objects - every other
+   * field in the row object is basically toString()'ed and put in a cell.
    *
    * @param rows the row data that the spreadsheet should hold
    * @param clazz the class that is the type of the row data
@@ -42,13 +97,147 @@ public class XlsxSerializer {
     // SXSSF is the streaming version of XSSF, and is useful for working with large spreadsheets
     try (Workbook wb = new XSSFWorkbook()) {
       Sheet sheet = wb.createSheet(clazz.getSimpleName());
-      List<Field> fieldsToSerialize = getFieldsToSerialize(clazz);
-      populateHeaderRow(sheet, getHeaderValues(fieldsToSerialize));
-      populateDataRows(sheet, fieldsToSerialize, rows);
+      List<Column> columns = getColumns(clazz);
+      populateHeaderRow(sheet, columns);
+      populateDataRows(sheet, columns, rows);
       return writeSpreadsheetToBytes(wb);
     }
   }
 
+  /**
+   * Write the given objects to the given stream as an XLSX spreadsheet, with the same contents as
+   * serializeToXlsx would produce. The stream is not closed.
+   *
+   * <p>The spreadsheet is built with SXSSF: only the last few rows are kept in memory, and the
+   * rest of each sheet goes to a (compressed) temp file until the spreadsheet is written out, so
+   * memory use doesn't grow with the number of rows. Rows past the most an Excel sheet can hold
+   * continue on additional sheets, each with its own header row.
+   *
+   * @param rows the objects that should be written as the rows of the spreadsheet
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the spreadsheet to
+   * @param <T> the type of the row data
+   */
+  public static <T> void writeXlsx(final Iterator<? extends T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    writeXlsx(rows, clazz, out, SpreadsheetVersion.EXCEL2007.getMaxRows());
+  }
+
+  /*
+   * Write the given objects as a streamed spreadsheet with at most maxRowsPerSheet rows
+   * (including the header) in each sheet.
+   */
+  static <T> void writeXlsx(final Iterator<? extends T> rows, final Class<T> clazz,
+      final OutputStream out, final int maxRowsPerSheet) throws IOException {
+    SXSSFWorkbook wb = new SXSSFWorkbook(STREAMING_WINDOW_SIZE);
+    wb.setCompressTempFiles(true);
+    try {
+      List<Column> columns = getColumns(clazz);
+
+      int sheetCount = 1;
+      Sheet sheet = wb.createSheet(clazz.getSimpleName());
+      populateHeaderRow(sheet, columns);
+      int rowIndex = 1; // header is row 0
+      while (rows.hasNext()) {
+        if (rowIndex >= maxRowsPerSheet) {
+          sheetCount++;
+          sheet = wb.createSheet(clazz.getSimpleName() + " " + sheetCount);
+          populateHeaderRow(sheet, columns);
+          rowIndex = 1;
+        }
+        populateDataRow(sheet.createRow(rowIndex), columns, rows.next());
+        rowIndex++;
+      }
+      wb.write(out);
+    } finally {
+      // Deletes the temp files backing the sheets
+      wb.dispose();
+      wb.close();
+    }
+  }
+
+  /**
+   * Read the rows of an XLSX spreadsheet from the given stream, handing each one to the given
+   * consumer as soon as it has been parsed.
+   *
+   * <p>Sheets are parsed from their XML as a series of SAX events rather than loaded as a
+   * workbook, so only the current row is held in memory. The first row of every sheet must be a
+   * header naming the property each column holds (as written by serializeToXlsx and writeXlsx);
+   * columns may be in any order, and blank cells are left null. Cells are read as the text Excel
+   * would display and converted to the property types the same way Jackson converts JSON strings.
+   *
+   * <p>An xlsx file is a zip archive whose entries can't be read in order straight off a stream,
+   * so the spreadsheet is first copied to a temp file. The table of shared strings is the only
+   * other thing held in memory while reading.
+   *
+   * @param in the stream to read the spreadsheet from
+   * @param clazz the class that is the type of the row data
+   * @param rows the consumer to hand each row object to
+   * @param <T> the type of the row data
+   * @throws SpreadsheetFormatException if the stream doesn't hold an xlsx spreadsheet, or one of
+   *     its rows can't be converted to the given class
+   */
+  public static <T> void readXlsx(final InputStream in, final Class<T> clazz,
+      final Consumer<? super T> rows) throws IOException {
+    Path file = Files.createTempFile("upload", ".xlsx");
+    try {
+      Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+      readXlsx(file.toFile(), clazz, rows);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static <T> void readXlsx(final File file, final Class<T> clazz,
+      final Consumer<? super T> rows) throws IOException {
+    OPCPackage pkg;
+    try {
+      pkg = OPCPackage.open(file, PackageAccess.READ);
+    } catch (InvalidFormatException | InvalidOperationException
+        | UnsupportedFileFormatException e) {
+      throw new SpreadsheetFormatException("Unable to open spreadsheet", e);
+    }
+
+    try {
+      ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+      XSSFReader reader = new XSSFReader(pkg);
+      StylesTable styles = reader.getStylesTable();
+      Iterator<InputStream> sheets = reader.getSheetsData();
+      while (sheets.hasNext()) {
+        try (InputStream sheet = sheets.next()) {
+          XMLReader parser = SAXHelper.newXMLReader();
+          parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings,
+              new RowReader<>(clazz, rows), new DataFormatter(), false));
+          parser.parse(new InputSource(sheet));
+        }
+      }
+    } catch (OpenXML4JException | SAXException e) {
+      throw new SpreadsheetFormatException("Unable to read spreadsheet", e);
+    } catch (ParserConfigurationException e) {
+      throw new IllegalStateException("Unable to create an XML parser", e);
+    } finally {
+      // Only opened for reading, so there is nothing to save
+      pkg.revert();
+    }
+  }
+
+  /*
+   * Get the columns to write for the given class, one for each field to serialize.
+   */
+  private static List<Column> getColumns(final Class<?> clazz) {
+    return COLUMNS.computeIfAbsent(clazz, XlsxSerializer::createColumns);
+  }
+
+  private static List<Column> createColumns(final Class<?> clazz) {
+    List<Field> fields = getFieldsToSerialize(clazz);
+    List<String> headers = getHeaderValues(fields);
+    List<Column> columns = new ArrayList<>(fields.size());
+    for (int col = 0; col < fields.size(); col++) {
+      columns.add(new Column(headers.get(col), fields.get(col)));
+    }
+    return columns;
+  }
+
   /*
    * Get a list of all fields in the given class, including inherited and private fields, but
    * excluding any @JsonIgnore'd fields.
@@ -110,31 +299,35 @@ public class XlsxSerializer {
   }
 
   /*
-   * Populate the first row of the given sheet using the given list of header values.
+   * Populate the first row of the given sheet with the headers of the given columns.
    */
-  private static void populateHeaderRow(final Sheet sheet, final List<String> headers) {
+  private static void populateHeaderRow(final Sheet sheet, final List<Column> columns) {
     Row headerRow = sheet.createRow(0);
-    for (int col = 0; col < headers.size(); col++) {
+    for (int col = 0; col < columns.size(); col++) {
       Cell headerCell = headerRow.createCell(col);
-      headerCell.setCellValue(headers.get(col));
+      headerCell.setCellValue(columns.get(col).header);
     }
   }
 
   /*
    * Populate the rows of the given sheet using the given row data.
    */
-  @SneakyThrows(IllegalAccessException.class)
-  private static <T> void populateDataRows(final Sheet sheet, final List<Field> fieldsToSerialize,
+  private static <T> void populateDataRows(final Sheet sheet, final List<Column> columns,
       final Iterable<T> rows) {
     int rowIndex = 1; // header is row 0
     for (T row : rows) {
-      Row dataRow = sheet.createRow(rowIndex);
+      populateDataRow(sheet.createRow(rowIndex), columns, row);
       rowIndex++;
-      for (int col = 0; col < fieldsToSerialize.size(); col++) {
-        Cell dataCell = dataRow.createCell(col);
-        Object cellObject = FieldUtils.readField(fieldsToSerialize.get(col), row, true);
-        dataCell.setCellValue(stringify(cellObject));
-      }
+    }
+  }
+
+  /*
+   * Populate the cells of the given row using the given row data.
+   */
+  private static void populateDataRow(final Row dataRow, final List<Column> columns,
+      final Object row) {
+    for (int col = 0; col < columns.size(); col++) {
+      columns.get(col).populateCell(dataRow.createCell(col), row);
     }
   }
 
@@ -170,4 +363,129 @@ public class XlsxSerializer {
       throw e;
     }
   }
+
+  /*
+   * A column of the spreadsheet: its header, and how to read its cell value from a row object.
+   * Values are read through a MethodHandle rather than reflectively, and primitive numbers are
+   * read without being boxed.
+   */
+  private static final class Column {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class,
+        Object.class);
+    private static final MethodType DOUBLE_GETTER = MethodType.methodType(double.class,
+        Object.class);
+    private static final MethodType BOOLEAN_GETTER = MethodType.methodType(boolean.class,
+        Object.class);
+
+    private final String header;
+    private final boolean primitiveBoolean;
+    private final boolean primitiveNumber;
+    private final MethodHandle getter;
+
+    @SneakyThrows(IllegalAccessException.class)
+    Column(final String header, final Field field) {
+      this.header = header;
+      this.primitiveBoolean = field.getType() == boolean.class;
+      this.primitiveNumber = field.getType().isPrimitive()
+          && NUMERIC_TYPES.contains(field.getType());
+      // Private fields (and fields of private classes) can only be read once made accessible
+      field.setAccessible(true);
+      MethodHandle fieldGetter = MethodHandles.lookup().unreflectGetter(field);
+      if (primitiveBoolean) {
+        this.getter = fieldGetter.asType(BOOLEAN_GETTER);
+      } else if (primitiveNumber) {
+        // Widened to a double, which is what numeric cells hold
+        this.getter = fieldGetter.asType(DOUBLE_GETTER);
+      } else {
+        this.getter = fieldGetter.asType(OBJECT_GETTER);
+      }
+    }
+
+    @SneakyThrows
+    void populateCell(final Cell cell, final Object row) {
+      if (primitiveBoolean) {
+        cell.setCellValue((boolean) getter.invokeExact(row));
+      } else if (primitiveNumber) {
+        cell.setCellValue((double) getter.invokeExact(row));
+      } else {
+        Object value = (Object) getter.invokeExact(row);
+        if (value instanceof Number && NUMERIC_TYPES.contains(value.getClass())) {
+          cell.setCellValue(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+          cell.setCellValue((Boolean) value);
+        } else {
+          cell.setCellValue(stringify(value));
+        }
+      }
+    }
+  }
+
+  /*
+   * Receives the cells of one sheet as it is parsed. The first row holding any cells is taken to
+   * be the header row; each row after it is converted to a row object and handed on.
+   */
+  private static final class RowReader<T> implements SheetContentsHandler {
+
+    private final Class<T> clazz;
+    private final Consumer<? super T> rows;
+    private final Map<Integer, String> headers = new HashMap<>();
+    private final Map<Integer, String> cells = new HashMap<>();
+
+    private int nextColumn;
+
+    RowReader(final Class<T> clazz, final Consumer<? super T> rows) {
+      this.clazz = clazz;
+      this.rows = rows;
+    }
+
+    @Override
+    public void startRow(final int rowNum) {
+      cells.clear();
+      nextColumn = 0;
+    }
+
+    @Override
+    public void cell(final String cellReference, final String formattedValue,
+        final XSSFComment comment) {
+      // The reference is optional in the file format; without one a cell follows the last one
+      int column = cellReference == null ? nextColumn : new CellReference(cellReference).getCol();
+      nextColumn = column + 1;
+      if (formattedValue != null && !formattedValue.isEmpty()) {
+        cells.put(column, formattedValue);
+      }
+    }
+
+    @Override
+    public void endRow(final int rowNum) {
+      if (cells.isEmpty()) {
+        return;
+      }
+      if (headers.isEmpty()) {
+        headers.putAll(cells);
+        return;
+      }
+
+      ObjectNode row = ROW_MAPPER.createObjectNode();
+      // Cells under a blank header have nothing to be bound to
+      cells.forEach((column, value) -> {
+        String header = headers.get(column);
+        if (header != null) {
+          row.put(header, value);
+        }
+      });
+
+      try {
+        rows.accept(ROW_MAPPER.treeToValue(row, clazz));
+      } catch (JsonProcessingException e) {
+        // Reported with the row number Excel shows
+        throw new SpreadsheetFormatException("Unable to read row " + (rowNum + 1), e);
+      }
+    }
+
+    @Override
+    public void headerFooter(final String text, final boolean isHeader, final String tagName) {
+      // Page headers and footers don't hold row data
+    }
+  }
 }
@@ -0,0 +1,31 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Collections;
+import java.util.List;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * Listener that handles several messages at once. When run by a FuseBatchMessageListenerContainer
+ * each call receives a whole batch; any other container hands it one message at a time.
+ */
+@FunctionalInterface
+public interface BatchMessageListener extends MessageListener {
+
+  /**
+   * Handle a batch of messages. Throwing a JMSException marks every message in the batch as failed,
+   * while throwing a RuntimeException rolls the batch back so that it is redelivered.
+   */
+  void onMessages(List<Message> messages) throws JMSException;
+
+  @Override
+  default void onMessage(final Message message) {
+    try {
+      onMessages(Collections.singletonList(message));
+    } catch (JMSException e) {
+      throw JmsUtils.convertJmsAccessException(e);
+    }
+  }
+}
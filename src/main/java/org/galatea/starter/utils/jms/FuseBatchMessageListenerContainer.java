@@ -0,0 +1,107 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.TransactionStatus;
+
+/**
+ * Listener container that drains up to batchSize messages (waiting at most batchWindowMillis after
+ * the first one arrives) and hands them to a BatchMessageListener in one call. The session is
+ * committed, acknowledging the whole batch, only once the listener has returned.
+ *
+ * <p>Batching needs a session and consumer that stay open between receives, i.e. a cache level of
+ * at least CACHE_CONSUMER and no external transaction manager. Otherwise, or if the listener isn't
+ * a BatchMessageListener, messages are handled one at a time as usual.
+ */
+@Slf4j
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+public class FuseBatchMessageListenerContainer extends FuseMessageListenerContainer {
+
+  protected final int batchSize;
+
+  protected final long batchWindowMillis;
+
+  /**
+   * Creates a container that hands out batches of at most batchSize messages, collected over at
+   * most batchWindowMillis.
+   */
+  public FuseBatchMessageListenerContainer(
+      final BiConsumer<Message, Exception> failedMessageConsumer, final int batchSize,
+      final long batchWindowMillis) {
+    super(failedMessageConsumer);
+    this.batchSize = batchSize;
+    this.batchWindowMillis = batchWindowMillis;
+  }
+
+  @Override
+  protected boolean doReceiveAndExecute(final Object invoker, final Session session,
+      final MessageConsumer consumer, final TransactionStatus status) throws JMSException {
+    if (!(getMessageListener() instanceof BatchMessageListener) || session == null
+        || consumer == null || status != null) {
+      return super.doReceiveAndExecute(invoker, session, consumer, status);
+    }
+
+    List<Message> batch = receiveBatch(consumer);
+    if (batch.isEmpty()) {
+      noMessageReceived(invoker, session);
+      return false;
+    }
+
+    if (!isAcceptMessagesWhileStopping() && !isRunning()) {
+      log.warn("Rejecting batch of {} message(s) because the container is stopping", batch.size());
+      rollbackIfNecessary(session);
+      return false;
+    }
+
+    messageReceived(invoker, session);
+    log.debug("Received batch of {} message(s)", batch.size());
+
+    try {
+      ((BatchMessageListener) getMessageListener()).onMessages(batch);
+    } catch (JMSException e) {
+      // As with single messages, a JMSException means the batch can't be processed and shouldn't
+      // be retried
+      batch.forEach(message -> failedMessageConsumer.accept(message, e));
+    } catch (RuntimeException | Error e) {
+      rollbackOnExceptionIfNecessary(session, e);
+      handleListenerException(e);
+      return true;
+    }
+
+    // Acknowledges every message consumed by the session so far, i.e. the whole batch
+    commitIfNecessary(session, batch.get(batch.size() - 1));
+    return true;
+  }
+
+  private List<Message> receiveBatch(final MessageConsumer consumer) throws JMSException {
+    List<Message> batch = new ArrayList<>(batchSize);
+
+    // Block for the usual receive timeout until the first message shows up...
+    Message message = receiveMessage(consumer);
+    if (message == null) {
+      return batch;
+    }
+    batch.add(message);
+
+    // ...then only wait out what's left of the batch window for the rest
+    long deadline = System.currentTimeMillis() + batchWindowMillis;
+    while (batch.size() < batchSize) {
+      long remaining = deadline - System.currentTimeMillis();
+      message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+      if (message == null) {
+        break;
+      }
+      batch.add(message);
+    }
+    return batch;
+  }
+}
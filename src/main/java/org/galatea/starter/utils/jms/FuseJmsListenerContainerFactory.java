@@ -5,6 +5,7 @@ import javax.jms.Message;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
@@ -20,8 +21,19 @@ public class FuseJmsListenerContainerFactory extends DefaultJmsListenerContainer
   @NonNull
   protected BiConsumer<Message, Exception> failedMessageConsumer;
 
+  // Batching is only switched on for sizes above one
+  @Setter
+  protected int batchSize = 1;
+
+  @Setter
+  protected long batchWindowMillis;
+
   @Override
   protected DefaultMessageListenerContainer createContainerInstance() {
+    if (batchSize > 1) {
+      return new FuseBatchMessageListenerContainer(failedMessageConsumer, batchSize,
+          batchWindowMillis);
+    }
     return new FuseMessageListenerContainer(failedMessageConsumer);
   }
 
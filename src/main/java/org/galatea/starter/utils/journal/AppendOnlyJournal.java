@@ -0,0 +1,225 @@
+package org.galatea.starter.utils.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fixed-size journal file of typed records, memory-mapped so that appends are plain memory writes
+ * followed by a single force() to make them durable.
+ *
+ * <p>The file starts with a header holding the current generation, and every record is stamped
+ * with the generation it was written in. Calling checkpoint() bumps the generation and starts
+ * writing from the top of the file again, which discards every earlier record without having to
+ * clear the file: readers stop at the first record from another generation. Each record also
+ * carries a CRC of its contents, so a record torn by a crash part way through an append is ignored
+ * along with anything after it.
+ *
+ * <p>Records can also be discarded up to a position (see discardBefore) while later ones are kept,
+ * by moving the start offset held in the header. Their space is only reused once every record has
+ * been discarded, at which point the journal starts a new generation as checkpoint() does.
+ *
+ * <p>Layout: header = [magic int][start offset int][generation long], record = [payload length
+ * int][generation long][type byte][crc int][payload].
+ */
+@Slf4j
+public class AppendOnlyJournal implements Closeable {
+
+  private static final int MAGIC = 0x464a524e;
+  private static final int HEADER_SIZE = 16;
+  private static final int START_OFFSET = 4;
+  private static final int GENERATION_OFFSET = 8;
+  private static final int RECORD_HEADER_SIZE = 17;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+
+  private long generation;
+  private int start;
+  private int position;
+
+  /**
+   * Opens the journal at the given path, creating (and sizing) the file if it doesn't exist.
+   *
+   * @param capacity size of the file in bytes; must not change between runs
+   */
+  public AppendOnlyJournal(final Path path, final int capacity) throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+    if (buffer.getInt(0) == MAGIC) {
+      generation = buffer.getLong(GENERATION_OFFSET);
+      // Files written before records could be discarded left the start offset as 0
+      start = Math.max(buffer.getInt(START_OFFSET), HEADER_SIZE);
+      position = start;
+      // Move past the records that are already there so that new ones are appended after them
+      while (readRecord(position) != null) {
+        position += RECORD_HEADER_SIZE + buffer.getInt(position);
+      }
+    } else {
+      buffer.putInt(0, MAGIC);
+      startGeneration(1);
+    }
+    log.info("Opened journal {} at generation {} with {} byte(s) in use", path, generation,
+        position - start);
+  }
+
+  /**
+   * Reads back every record that hasn't been discarded, in the order they were appended.
+   */
+  public synchronized List<Record> readAll() {
+    List<Record> records = new ArrayList<>();
+    int pos = start;
+    Record record;
+    while ((record = readRecord(pos)) != null) {
+      records.add(record);
+      pos += RECORD_HEADER_SIZE + record.getPayload().length;
+    }
+    return records;
+  }
+
+  /**
+   * Appends the records and forces them to disk. Either all of the records are appended or, if
+   * they don't fit in the space left, none of them are.
+   *
+   * @return false if there isn't room for the records
+   */
+  public synchronized boolean append(final List<Record> records) {
+    long size = 0;
+    for (Record record : records) {
+      if (record.getPayload().length == 0) {
+        // A zero length marks the end of the journal
+        throw new IllegalArgumentException("Journal records must not be empty");
+      }
+      size += RECORD_HEADER_SIZE + record.getPayload().length;
+    }
+    if (position + size > buffer.capacity()) {
+      return false;
+    }
+
+    for (Record record : records) {
+      byte[] payload = record.getPayload();
+      buffer.putInt(position, payload.length);
+      buffer.putLong(position + 4, generation);
+      buffer.put(position + 12, record.getType());
+      buffer.putInt(position + 13, crc(record.getType(), payload));
+      buffer.position(position + RECORD_HEADER_SIZE);
+      buffer.put(payload);
+      position += RECORD_HEADER_SIZE + payload.length;
+    }
+    buffer.force();
+    return true;
+  }
+
+  /**
+   * Discards every record appended so far. Only call this once everything they describe has been
+   * stored elsewhere.
+   */
+  public synchronized void checkpoint() {
+    startGeneration(generation + 1);
+  }
+
+  /**
+   * Discards every record appended before the given position (as returned by getPosition), keeping
+   * any appended since. Only call this once everything those records describe has been stored
+   * elsewhere.
+   */
+  public synchronized void discardBefore(final int discardPosition) {
+    if (position == start) {
+      return;
+    }
+    if (discardPosition >= position) {
+      // Nothing left to keep, so the whole file can be reused
+      startGeneration(generation + 1);
+      return;
+    }
+    if (discardPosition > start) {
+      start = discardPosition;
+      buffer.putInt(START_OFFSET, start);
+      buffer.force();
+    }
+  }
+
+  /**
+   * Returns the position just after the last record appended so far.
+   */
+  public synchronized int getPosition() {
+    return position;
+  }
+
+  /**
+   * Returns true if there are no records, i.e. nothing has been appended since every earlier
+   * record was discarded.
+   */
+  public synchronized boolean isEmpty() {
+    return position == start;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    buffer.force();
+    channel.close();
+  }
+
+  private void startGeneration(final long newGeneration) {
+    generation = newGeneration;
+    buffer.putLong(GENERATION_OFFSET, generation);
+    buffer.putInt(START_OFFSET, HEADER_SIZE);
+    buffer.force();
+    start = HEADER_SIZE;
+    position = HEADER_SIZE;
+  }
+
+  private Record readRecord(final int pos) {
+    if (pos + RECORD_HEADER_SIZE > buffer.capacity()) {
+      return null;
+    }
+    int length = buffer.getInt(pos);
+    if (length <= 0 || pos + RECORD_HEADER_SIZE + length > buffer.capacity()
+        || buffer.getLong(pos + 4) != generation) {
+      return null;
+    }
+
+    byte type = buffer.get(pos + 12);
+    byte[] payload = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(pos + RECORD_HEADER_SIZE);
+    view.get(payload);
+    if (buffer.getInt(pos + 13) != crc(type, payload)) {
+      log.warn("Ignoring torn journal record at offset {}", pos);
+      return null;
+    }
+    return new Record(type, payload);
+  }
+
+  private static int crc(final byte type, final byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * An entry in the journal. The type is left to the caller to interpret.
+   */
+  @Value
+  public static class Record {
+
+    private final byte type;
+    private final byte[] payload;
+  }
+}
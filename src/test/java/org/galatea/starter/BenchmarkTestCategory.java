@@ -0,0 +1,9 @@
+package org.galatea.starter;
+
+/**
+ * Marks long-running performance measurements. These are excluded from both the unit and
+ * integration test runs; use "mvn test -Pbenchmark" to run them.
+ */
+public interface BenchmarkTestCategory {
+
+}
@@ -0,0 +1,72 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.List;
+import javax.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.BenchmarkTestCategory;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Measures how quickly ISettlementMissionRpsy#saveAll inserts new missions. Subclasses pick the
+ * configuration being measured (e.g. the id block size) through @SpringBootTest properties, so the
+ * numbers logged by each subclass can be compared against each other.
+ *
+ * <p>The number of rows per run can be set with -Dbenchmark.rows (defaults to 10000).
+ */
+@Slf4j
+@Category(BenchmarkTestCategory.class)
+public abstract class AMissionInsertBenchmark extends ASpringTest {
+
+  private static final int WARMUP_ROWS = 1000;
+
+  @Autowired
+  protected ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  protected EntityManagerFactory entityManagerFactory;
+
+  @Autowired
+  protected JdbcTemplate jdbcTemplate;
+
+  /**
+   * Describes the configuration being measured. Used to label the logged results.
+   */
+  protected abstract String describe();
+
+  @Test
+  public void measureSaveAll() {
+    int rows = Integer.getInteger("benchmark.rows", 10000);
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.setStatisticsEnabled(true);
+
+    // Let the JIT and connection pool settle before measuring
+    missionRpsy.saveAll(TestDataGenerator.newSettlementMissions(WARMUP_ROWS));
+    statistics.clear();
+
+    List<SettlementMission> missions = TestDataGenerator.newSettlementMissions(rows);
+    long start = System.nanoTime();
+    missionRpsy.saveAll(missions);
+    long elapsedNanos = System.nanoTime() - start;
+
+    double seconds = elapsedNanos / 1e9;
+    long statements = statistics.getPrepareStatementCount();
+    log.info("[{}] saveAll of {} missions took {} ms: {} inserts/s, {} JDBC statements "
+            + "prepared ({} statements/s)", describe(), rows, elapsedNanos / 1_000_000,
+        Math.round(rows / seconds), statements, Math.round(statements / seconds));
+  }
+
+  @After
+  public void deleteMissions() {
+    // deleteAll would load (and delete) every mission one by one
+    jdbcTemplate.update("delete from settlement_mission");
+  }
+}
@@ -0,0 +1,72 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.BenchmarkTestCategory;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Compares missions/s for ISettlementMissionRpsy#saveAll (JPA) against #insertAll (JDBC
+ * multi-row inserts) at several batch sizes.
+ *
+ * <p>The sizes can be set with -Dbenchmark.bulkRows (comma separated, defaults to
+ * 1000,100000,1000000). The largest size keeps a million missions in memory, and saveAll holds
+ * them all in its persistence context too, so give surefire a large enough heap.
+ */
+@Slf4j
+@Category(BenchmarkTestCategory.class)
+@SpringBootTest
+public class MissionJdbcInsertBenchmarkTest extends ASpringTest {
+
+  private static final int WARMUP_ROWS = 1000;
+
+  @Autowired
+  protected ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  protected JdbcTemplate jdbcTemplate;
+
+  @Test
+  public void compareSaveAllWithInsertAll() {
+    List<Integer> sizes = Arrays.stream(
+        System.getProperty("benchmark.bulkRows", "1000,100000,1000000").split(","))
+        .map(String::trim).map(Integer::valueOf).collect(Collectors.toList());
+
+    // Let the JIT and connection pool settle before measuring
+    missionRpsy.saveAll(TestDataGenerator.newSettlementMissions(WARMUP_ROWS));
+    missionRpsy.insertAll(TestDataGenerator.newSettlementMissions(WARMUP_ROWS));
+    deleteMissions();
+
+    for (int rows : sizes) {
+      measure("JPA saveAll", rows, missionRpsy::saveAll);
+      measure("JDBC insertAll", rows, missionRpsy::insertAll);
+    }
+  }
+
+  private void measure(final String path, final int rows,
+      final Consumer<List<SettlementMission>> insert) {
+    List<SettlementMission> missions = TestDataGenerator.newSettlementMissions(rows);
+    long start = System.nanoTime();
+    insert.accept(missions);
+    long elapsedNanos = System.nanoTime() - start;
+
+    log.info("[{}] {} missions took {} ms: {} missions/s", path, rows, elapsedNanos / 1_000_000,
+        Math.round(rows / (elapsedNanos / 1e9)));
+    deleteMissions();
+  }
+
+  private void deleteMissions() {
+    // deleteAll would load (and delete) every mission one by one
+    jdbcTemplate.update("delete from settlement_mission");
+  }
+}
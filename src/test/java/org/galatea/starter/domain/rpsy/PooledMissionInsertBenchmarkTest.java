@@ -0,0 +1,16 @@
+package org.galatea.starter.domain.rpsy;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Measures AMissionInsertBenchmark with ids reserved in blocks, using the block size configured in
+ * hibernate.properties.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class PooledMissionInsertBenchmarkTest extends AMissionInsertBenchmark {
+
+  @Override
+  protected String describe() {
+    return "pooled id blocks (fuse.id.mission_block_size)";
+  }
+}
@@ -0,0 +1,81 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "settlement.jdbc-insert.statements-per-batch=2")
+public class SettlementMissionBatchChangeTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @After
+  public void deleteMissions() {
+    missionRpsy.deleteAll();
+  }
+
+  @Test
+  public void testUpdateAllIfVersionMatches() {
+    SettlementMission mission1 = save();
+    SettlementMission mission2 = save();
+    SettlementMission stale = save();
+    missionRpsy.updateIfVersionMatches(stale.toBuilder().qty(50d).build());
+
+    // More missions than fit in one JDBC batch, so the row counts come back from two batches
+    int[] rowCounts = missionRpsy.updateAllIfVersionMatches(Arrays.asList(
+        mission1.toBuilder().qty(200d).build(),
+        mission2.toBuilder().qty(300d).build(),
+        stale.toBuilder().qty(400d).build()));
+    assertArrayEquals(new int[] {1, 1, 0}, rowCounts);
+
+    SettlementMission found1 = missionRpsy.findById(mission1.getId()).get();
+    assertEquals((Double) 200d, found1.getQty());
+    assertEquals((Long) (mission1.getVersion() + 1), found1.getVersion());
+    assertEquals((Double) 50d, missionRpsy.findById(stale.getId()).get().getQty());
+  }
+
+  @Test
+  public void testUpdateAllIfVersionIs() {
+    SettlementMission mission = save();
+    SettlementMission stale = save();
+    missionRpsy.updateIfVersionMatches(stale.toBuilder().qty(50d).build());
+
+    // Several versions ahead, as a mission updated more than once before being written is
+    int[] rowCounts = missionRpsy.updateAllIfVersionIs(Arrays.asList(
+        mission.toBuilder().qty(200d).version(mission.getVersion() + 3).build(),
+        stale.toBuilder().qty(400d).version(stale.getVersion() + 1).build()),
+        Arrays.asList(mission.getVersion(), stale.getVersion()));
+    assertArrayEquals(new int[] {1, 0}, rowCounts);
+
+    SettlementMission found = missionRpsy.findById(mission.getId()).get();
+    assertEquals((Double) 200d, found.getQty());
+    assertEquals((Long) (mission.getVersion() + 3), found.getVersion());
+    assertEquals((Double) 50d, missionRpsy.findById(stale.getId()).get().getQty());
+  }
+
+  @Test
+  public void testDeleteAllById() {
+    SettlementMission mission1 = save();
+    SettlementMission mission2 = save();
+
+    int[] rowCounts = missionRpsy.deleteAllById(Arrays.asList(mission1.getId(), -1L,
+        mission2.getId()));
+    assertArrayEquals(new int[] {1, 0, 1}, rowCounts);
+    assertFalse(missionRpsy.existsById(mission1.getId()));
+    assertEquals(0, missionRpsy.count());
+  }
+
+  private SettlementMission save() {
+    return missionRpsy.save(TestDataGenerator.defaultSettlementMissionData().id(null).build());
+  }
+}
@@ -0,0 +1,63 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "settlement.jdbc-insert.rows-per-statement=100")
+public class SettlementMissionBulkInsertTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @After
+  public void deleteMissions() {
+    missionRpsy.deleteAll();
+  }
+
+  @Test
+  public void testInsertAll() {
+    // Two full statements plus a partial one
+    List<SettlementMission> missions = new ArrayList<>();
+    for (int i = 1; i <= 250; i++) {
+      missions.add(TestDataGenerator.defaultSettlementMissionData().id(null).qty((double) i)
+          .build());
+    }
+
+    List<SettlementMission> inserted = missionRpsy.insertAll(missions);
+    assertEquals(missions, inserted);
+    inserted.forEach(mission -> assertNotNull(mission.getId()));
+
+    List<Long> ids = inserted.stream().map(SettlementMission::getId).collect(Collectors.toList());
+    List<SettlementMission> found = Lists.newArrayList(missionRpsy.findAllById(ids));
+    assertEquals(new HashSet<>(inserted), new HashSet<>(found));
+  }
+
+  @Test
+  public void testInsertAllSharesIdsWithSaveAll() {
+    SettlementMission saved = missionRpsy.save(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build());
+    List<SettlementMission> inserted = missionRpsy.insertAll(Lists.newArrayList(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(null).build()));
+
+    Set<Long> ids = new HashSet<>();
+    ids.add(saved.getId());
+    inserted.forEach(mission -> ids.add(mission.getId()));
+    assertEquals(3, ids.size());
+    assertEquals(3, missionRpsy.count());
+  }
+}
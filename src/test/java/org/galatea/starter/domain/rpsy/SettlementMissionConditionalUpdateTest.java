@@ -0,0 +1,55 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+public class SettlementMissionConditionalUpdateTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @After
+  public void deleteMissions() {
+    missionRpsy.deleteAll();
+  }
+
+  @Test
+  public void testUpdateIfVersionMatches() {
+    SettlementMission saved = missionRpsy.save(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build());
+
+    int updated = missionRpsy.updateIfVersionMatches(saved.toBuilder().qty(250d).build());
+    assertEquals(1, updated);
+
+    SettlementMission found = missionRpsy.findById(saved.getId()).get();
+    assertEquals((Double) 250d, found.getQty());
+    assertEquals((Long) (saved.getVersion() + 1), found.getVersion());
+  }
+
+  @Test
+  public void testUpdateIfVersionMatchesWithStaleVersion() {
+    SettlementMission saved = missionRpsy.save(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build());
+    missionRpsy.updateIfVersionMatches(saved.toBuilder().qty(250d).build());
+
+    // Still based on the original version, which the first update moved past
+    int updated = missionRpsy.updateIfVersionMatches(saved.toBuilder().qty(300d).build());
+    assertEquals(0, updated);
+    assertEquals((Double) 250d, missionRpsy.findById(saved.getId()).get().getQty());
+  }
+
+  @Test
+  public void testUpdateIfVersionMatchesWithMissingMission() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(-1L).build();
+
+    assertEquals(0, missionRpsy.updateIfVersionMatches(mission));
+  }
+}
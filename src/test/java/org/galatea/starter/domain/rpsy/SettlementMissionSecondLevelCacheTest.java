@@ -0,0 +1,71 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest
+public class SettlementMissionSecondLevelCacheTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private Cache cache;
+
+  @Before
+  public void setup() {
+    cache = entityManagerFactory.getCache();
+  }
+
+  @After
+  public void deleteMissions() {
+    missionRpsy.deleteAll();
+    cache.evictAll();
+  }
+
+  @Test
+  public void testSavedMissionIsCached() {
+    SettlementMission saved = missionRpsy.save(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build());
+
+    assertTrue(cache.contains(SettlementMission.class, saved.getId()));
+  }
+
+  @Test
+  public void testJdbcUpdateEvictsMission() {
+    SettlementMission saved = missionRpsy.save(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build());
+
+    // Written with plain JDBC, so Hibernate would otherwise keep serving the old state
+    missionRpsy.updateAll(Collections.singletonList(
+        saved.toBuilder().qty(250d).version(saved.getVersion() + 1).build()));
+
+    assertFalse(cache.contains(SettlementMission.class, saved.getId()));
+  }
+
+  @Test
+  public void testJdbcInsertInvalidatesCachedQueries() {
+    missionRpsy.save(TestDataGenerator.defaultSettlementMissionData().id(null).build());
+    assertEquals(1, missionRpsy.findByDepot("DTC").size());
+
+    missionRpsy.insertAll(Collections.singletonList(
+        TestDataGenerator.defaultSettlementMissionData().id(null).build()));
+
+    assertEquals(2, missionRpsy.findByDepot("DTC").size());
+  }
+}
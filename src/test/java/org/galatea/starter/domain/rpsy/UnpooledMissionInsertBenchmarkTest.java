@@ -0,0 +1,18 @@
+package org.galatea.starter.domain.rpsy;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Baseline for AMissionInsertBenchmark: one sequence round trip per inserted mission, which is
+ * how ids were allocated before they were pooled.
+ */
+@SpringBootTest(properties = {
+    "spring.jpa.properties.fuse.id.mission_block_size=1",
+    "spring.jpa.properties.hibernate.generate_statistics=true"})
+public class UnpooledMissionInsertBenchmarkTest extends AMissionInsertBenchmark {
+
+  @Override
+  protected String describe() {
+    return "id block size 1";
+  }
+}
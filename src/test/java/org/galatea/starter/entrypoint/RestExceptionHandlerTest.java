@@ -8,8 +8,10 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.translation.TranslationException;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -68,4 +70,18 @@ public class RestExceptionHandlerTest {
     ResponseEntity<Object> response = handler.handleOptimisticLockException(exception);
     assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
   }
+
+  @Test
+  public void handleStreamNotReadable() {
+    TranslationException exception = new TranslationException("msg", new Exception());
+    ResponseEntity<Object> response = handler.handleStreamNotReadable(exception);
+    assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+  }
+
+  @Test
+  public void handleTaskRejected() {
+    TaskRejectedException exception = new TaskRejectedException("msg");
+    ResponseEntity<Object> response = handler.handleTaskRejected(exception);
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+  }
 }
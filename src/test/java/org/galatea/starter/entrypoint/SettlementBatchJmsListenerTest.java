@@ -0,0 +1,249 @@
+package org.galatea.starter.entrypoint;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import javax.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.jms.BatchMessageListener;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.SimpleJmsListenerEndpoint;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@Slf4j
+@SpringBootTest(properties = {"jms.batch.enabled=true", "jms.batch.max-wait-millis=500"})
+public class SettlementBatchJmsListenerTest extends ASpringTest {
+
+  @Autowired
+  protected JmsTemplate jmsTemplate;
+
+  @Autowired
+  protected MeterRegistry meterRegistry;
+
+  @Autowired
+  private ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+
+  @Autowired
+  private ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @MockBean
+  private SettlementService mockSettlementService;
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  protected String protoQueueName;
+
+  // Every agreement handed to the settlement service, whichever batch it arrived in
+  private final List<TradeAgreement> settled = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setup() {
+    given(mockSettlementService.spawnMissions(anyList())).willAnswer(invocation -> {
+      List<TradeAgreement> agreements = invocation.getArgument(0);
+      settled.addAll(agreements);
+      return Collections.emptySet();
+    });
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementsJson() {
+    for (String party : new String[] {"EXT-1", "EXT-2", "EXT-3"}) {
+      jmsTemplate.send(jsonQueueName, s -> s.createTextMessage(
+          "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\"" + party
+              + "\",\"buySell\":\"B\",\"qty\":100}"));
+    }
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> settled, hasSize(3));
+    assertThat(settled, containsInAnyOrder(
+        TestDataGenerator.defaultTradeAgreementData().externalParty("EXT-1").build(),
+        TestDataGenerator.defaultTradeAgreementData().externalParty("EXT-2").build(),
+        TestDataGenerator.defaultTradeAgreementData().externalParty("EXT-3").build()));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementsJson_unknownField() {
+    jmsTemplate.send(jsonQueueName, s -> s.createTextMessage(
+        "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\"EXT-1\","
+            + "\"buySell\":\"B\",\"qty\":100,\"comment\":\"extra\"}"));
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> settled, hasSize(1));
+    assertEquals(TestDataGenerator.defaultTradeAgreementData().build(), settled.get(0));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementsProto() {
+    TradeAgreementProtoMessage message
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
+    jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> settled, hasSize(2));
+    assertThat(settled, containsInAnyOrder(agreement, agreement));
+
+    assertEquals(2, (long) meterRegistry.get("settlement.jms.batch.size")
+        .tag("queue", protoQueueName).summary().totalAmount());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailureAfterFallbackSettledIsDeadLettered() throws Exception {
+    // The batch fails validation, then the second agreement fails on its own for another reason
+    // after the first has already been committed
+    given(mockSettlementService.spawnMissions(anyList())).willAnswer(invocation -> {
+      List<TradeAgreement> agreements = invocation.getArgument(0);
+      if (agreements.size() > 1) {
+        throw new ConstraintViolationException(Collections.emptySet());
+      }
+      if ("EXT-2".equals(agreements.get(0).getExternalParty())) {
+        throw new QueryTimeoutException("Too slow");
+      }
+      settled.addAll(agreements);
+      return Collections.emptySet();
+    });
+    BiConsumer<Message, Exception> mockFailedMessageConsumer = mock(BiConsumer.class);
+    List<Message> messages = Arrays.asList(jsonMessage("EXT-1"), jsonMessage("EXT-2"),
+        jsonMessage("EXT-3"));
+
+    // Throwing would roll the batch back, and redelivery would settle EXT-1 again
+    jsonListener(mockFailedMessageConsumer).onMessages(messages);
+
+    assertThat(settled, containsInAnyOrder(
+        TestDataGenerator.defaultTradeAgreementData().externalParty("EXT-1").build(),
+        TestDataGenerator.defaultTradeAgreementData().externalParty("EXT-3").build()));
+    verify(mockFailedMessageConsumer).accept(eq(messages.get(1)),
+        any(QueryTimeoutException.class));
+    verifyNoMoreInteractions(mockFailedMessageConsumer);
+  }
+
+  @Test(expected = QueryTimeoutException.class)
+  @SuppressWarnings("unchecked")
+  public void testFailureBeforeFallbackSettledIsRedelivered() throws Exception {
+    given(mockSettlementService.spawnMissions(anyList())).willAnswer(invocation -> {
+      List<TradeAgreement> agreements = invocation.getArgument(0);
+      if (agreements.size() > 1) {
+        throw new ConstraintViolationException(Collections.emptySet());
+      }
+      throw new QueryTimeoutException("Too slow");
+    });
+
+    // Nothing has been committed, so the batch can safely be rolled back and redelivered
+    jsonListener(mock(BiConsumer.class))
+        .onMessages(Arrays.asList(jsonMessage("EXT-1"), jsonMessage("EXT-2")));
+  }
+
+  @Test
+  @DirtiesContext
+  public void testUnreadableMessageDoesNotBlockBatch() {
+    jmsTemplate.send(jsonQueueName, s -> s.createTextMessage("not json"));
+    jmsTemplate.send(jsonQueueName, s -> s.createTextMessage(
+        "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\"EXT-1\","
+            + "\"buySell\":\"B\",\"qty\":100}"));
+
+    await().atMost(10, TimeUnit.SECONDS).until(() -> settled, hasSize(1));
+    assertEquals(TestDataGenerator.defaultTradeAgreementData().build(), settled.get(0));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testUnreadableMessageNotDeadLetteredWhenBatchRedelivered() throws Exception {
+    given(mockSettlementService.spawnMissions(anyList()))
+        .willThrow(new QueryTimeoutException("Too slow"));
+    BiConsumer<Message, Exception> mockFailedMessageConsumer = mock(BiConsumer.class);
+    TextMessage unreadable = mock(TextMessage.class);
+    given(unreadable.getText()).willReturn("not json");
+    BatchMessageListener listener = jsonListener(mockFailedMessageConsumer);
+
+    try {
+      listener.onMessages(Arrays.asList(unreadable, jsonMessage("EXT-1")));
+      fail("The batch should have been rolled back");
+    } catch (QueryTimeoutException e) {
+      // It will be dead-lettered when the batch is redelivered and settles
+      verifyZeroInteractions(mockFailedMessageConsumer);
+    }
+
+    given(mockSettlementService.spawnMissions(anyList())).willReturn(Collections.emptySet());
+    listener.onMessages(Arrays.asList(unreadable, jsonMessage("EXT-1")));
+    verify(mockFailedMessageConsumer).accept(eq(unreadable), any(Exception.class));
+  }
+
+  /*
+   * Builds a listener like the application's, except that it reports failed messages to the given
+   * consumer, and returns what it registered for the JSON queue.
+   */
+  private BatchMessageListener jsonListener(
+      final BiConsumer<Message, Exception> failedMessageConsumer) {
+    SettlementBatchJmsListener listener = new SettlementBatchJmsListener(mockSettlementService,
+        tradeAgreementProtoTranslator, tradeAgreementMessageTranslator, null,
+        failedMessageConsumer, meterRegistry, objectMapper);
+    ReflectionTestUtils.setField(listener, "jsonQueueName", jsonQueueName);
+    ReflectionTestUtils.setField(listener, "protoQueueName", protoQueueName);
+
+    JmsListenerEndpointRegistrar mockRegistrar = mock(JmsListenerEndpointRegistrar.class);
+    listener.configureJmsListeners(mockRegistrar);
+    ArgumentCaptor<SimpleJmsListenerEndpoint> endpoints =
+        ArgumentCaptor.forClass(SimpleJmsListenerEndpoint.class);
+    verify(mockRegistrar, times(2)).registerEndpoint(endpoints.capture(), any());
+    return (BatchMessageListener) endpoints.getAllValues().stream()
+        .filter(endpoint -> jsonQueueName.equals(endpoint.getDestination())).findFirst().get()
+        .getMessageListener();
+  }
+
+  private static TextMessage jsonMessage(final String externalParty) throws JMSException {
+    TextMessage message = mock(TextMessage.class);
+    given(message.getText()).willReturn(
+        "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\""
+            + externalParty + "\",\"buySell\":\"B\",\"qty\":100}");
+    return message;
+  }
+}
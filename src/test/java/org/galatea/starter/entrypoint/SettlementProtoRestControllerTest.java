@@ -2,25 +2,44 @@ package org.galatea.starter.entrypoint;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.MissionChangeStatus;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionChangeResultProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.MissionIdRangeProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementBatchResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementIngestSummaryProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessages;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
+import org.galatea.starter.service.MissionResponseCache;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.utils.translation.ITranslator;
@@ -28,7 +47,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -42,7 +65,8 @@ import org.springframework.test.web.servlet.MvcResult;
 // We don't load the entire spring application context for this test.
 @WebMvcTest(SettlementProtoRestController.class)
 // Import Beans from Configuration, enabling them to be Autowired
-@Import({ProtoMessageTranslationConfig.class, RestExceptionHandler.class})
+@Import({ProtoMessageTranslationConfig.class, RestExceptionHandler.class,
+    MissionResponseCache.class})
 // Use this runner since we want to parameterize certain tests.
 // See runner's javadoc for more usage.
 @RunWith(JUnitParamsRunner.class)
@@ -61,6 +85,16 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
 
   private static final Long MISSION_ID_1 = 100L;
 
+  @TestConfiguration
+  static class CacheConfig {
+
+    // Nothing is cached, so that every test sees the response for the mission it set up
+    @Bean
+    CacheManager cacheManager() {
+      return new NoOpCacheManager();
+    }
+  }
+
   @Test
   public void testSettleAgreement() throws Exception {
     TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
@@ -89,6 +123,77 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
         .contains("/settlementEngine/mission/" + expectedId));
   }
 
+  @Test
+  public void testSettleAgreementPacked() throws Exception {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()).build();
+
+    given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(10L, 11L, 12L, 20L)));
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine?idFormat=PACKED&requestId=1234").contentType(APPLICATION_X_PROTOBUF)
+            .accept(APPLICATION_X_PROTOBUF).content(messages.toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementResponseProtoMessage received = SettlementResponseProtoMessage
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertTrue(received.getSpawnedMissionPathsList().isEmpty());
+    assertEquals("/settlementEngine/mission/", received.getMissionPath());
+    assertEquals(Arrays.asList(10L, 1L, 1L, 8L), received.getSpawnedMissionIdDeltasList());
+  }
+
+  @Test
+  public void testSettleAgreementRanges() throws Exception {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreementProtoMessages messages = TradeAgreementProtoMessages.newBuilder()
+        .addMessage(TestDataGenerator.defaultTradeAgreementProtoMessageData()).build();
+
+    given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(10L, 11L, 12L, 20L)));
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine?idFormat=RANGES&requestId=1234").contentType(APPLICATION_X_PROTOBUF)
+            .accept(APPLICATION_X_PROTOBUF).content(messages.toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementResponseProtoMessage received = SettlementResponseProtoMessage
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(2, received.getSpawnedMissionRangesCount());
+    assertEquals(MissionIdRangeProtoMessage.newBuilder().setFirst(10).setLast(12).setCount(3)
+        .build(), received.getSpawnedMissionRanges(0));
+    assertEquals(MissionIdRangeProtoMessage.newBuilder().setFirst(20).setLast(20).setCount(1)
+        .build(), received.getSpawnedMissionRanges(1));
+  }
+
+  @Test
+  public void testSettleAgreementStream() throws Exception {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .externalParty("EXT-2").build();
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    TestDataGenerator.defaultTradeAgreementProtoMessageData().build().writeDelimitedTo(body);
+    TestDataGenerator.defaultTradeAgreementProtoMessageData().setExternalParty("EXT-2").build()
+        .writeDelimitedTo(body);
+
+    given(this.mockSettlementService.spawnMissions(Arrays.asList(agreement1, agreement2)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(1L, 2L)));
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine/stream?requestId=1234")
+            .contentType(MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED_VALUE)
+            .accept(APPLICATION_X_PROTOBUF).content(body.toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementIngestSummaryProtoMessage received = SettlementIngestSummaryProtoMessage
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(2, received.getAgreementCount());
+    assertEquals(2, received.getMissionCount());
+    assertEquals(1, received.getChunkCount());
+  }
+
   @Test
   public void testGetMission() throws Exception {
     SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
@@ -116,4 +221,125 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
             .accept(APPLICATION_X_PROTOBUF))
         .andExpect(status().is4xxClientError());
   }
+
+  @Test
+  public void testGetMissions() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    MvcResult result = this.mvc.perform(
+        get("/settlementEngine/missions?ids=1,2&requestId=1234").accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementMissionProtoMessages received = SettlementMissionProtoMessages
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(Arrays.asList(settlementMissionTranslator.translate(mission1),
+        settlementMissionTranslator.translate(mission2)), received.getMessageList());
+  }
+
+  @Test
+  public void testGetMissionsNotFound() throws Exception {
+    given(this.mockSettlementService.findMissions(Arrays.asList(1L, 2L)))
+        .willThrow(new EntityNotFoundException(SettlementMission.class, Sets.newHashSet(2L)));
+
+    this.mvc.perform(
+        get("/settlementEngine/missions?ids=1,2&requestId=1234").accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void testStreamMissions() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    given(this.mockSettlementService.iterateMissions(Arrays.asList(1L, 2L, 3L), 1000))
+        .willReturn(Arrays.asList(mission1, mission2).iterator());
+
+    // The body is written on another thread, so the request has to be dispatched again to see it
+    MvcResult asyncResult = this.mvc.perform(
+        get("/settlementEngine/missions?ids=1,2,3&requestId=1234")
+            .accept(MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED_VALUE))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult result = this.mvc.perform(asyncDispatch(asyncResult))
+        .andExpect(status().isOk()).andReturn();
+
+    ByteArrayInputStream body =
+        new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    assertEquals(settlementMissionTranslator.translate(mission1),
+        SettlementMissionProtoMessage.parseDelimitedFrom(body));
+    assertEquals(settlementMissionTranslator.translate(mission2),
+        SettlementMissionProtoMessage.parseDelimitedFrom(body));
+    assertNull(SettlementMissionProtoMessage.parseDelimitedFrom(body));
+  }
+
+  @Test
+  public void testStreamMissionsByDepot() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+
+    given(this.mockSettlementService.iterateMissionsByDepot("DTC", null, "REC", 1000))
+        .willReturn(Arrays.asList(mission1, mission2).iterator());
+
+    // The body is written on another thread, so the request has to be dispatched again to see it
+    MvcResult asyncResult = this.mvc.perform(
+        get("/settlementEngine/missions/depot/DTC/stream?direction=REC&requestId=1234")
+            .accept(MvcConfig.APPLICATION_X_PROTOBUF_DELIMITED_VALUE))
+        .andExpect(request().asyncStarted()).andReturn();
+    MvcResult result = this.mvc.perform(asyncDispatch(asyncResult))
+        .andExpect(status().isOk()).andReturn();
+
+    ByteArrayInputStream body =
+        new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    List<SettlementMissionProtoMessage> received = new ArrayList<>();
+    SettlementMissionProtoMessage message;
+    while ((message = SettlementMissionProtoMessage.parseDelimitedFrom(body)) != null) {
+      received.add(message);
+    }
+    assertEquals(Arrays.asList(settlementMissionTranslator.translate(mission1),
+        settlementMissionTranslator.translate(mission2)), received);
+  }
+
+  @Test
+  public void testUpdateMissions() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMissionProtoMessages messages = SettlementMissionProtoMessages.newBuilder()
+        .addMessage(settlementMissionTranslator.translate(mission1))
+        .addMessage(settlementMissionTranslator.translate(mission2)).build();
+
+    given(this.mockSettlementService.updateMissions(Arrays.asList(mission1, mission2)))
+        .willReturn(Arrays.asList(MissionChangeStatus.UPDATED, MissionChangeStatus.NOT_FOUND));
+
+    MvcResult result = this.mvc.perform(
+        put("/settlementEngine/missions?requestId=1234").contentType(APPLICATION_X_PROTOBUF)
+            .accept(APPLICATION_X_PROTOBUF).content(messages.toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementBatchResponseProtoMessage received = SettlementBatchResponseProtoMessage
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(Arrays.asList(
+        MissionChangeResultProtoMessage.newBuilder().setId(1L).setStatus("UPDATED").build(),
+        MissionChangeResultProtoMessage.newBuilder().setId(2L).setStatus("NOT_FOUND").build()),
+        received.getResultList());
+  }
+
+  @Test
+  public void testDeleteMissions() throws Exception {
+    given(this.mockSettlementService.deleteMissions(Arrays.asList(1L, 2L)))
+        .willReturn(Arrays.asList(MissionChangeStatus.DELETED, MissionChangeStatus.DELETED));
+
+    MvcResult result = this.mvc.perform(
+        delete("/settlementEngine/missions?ids=1,2&requestId=1234")
+            .accept(APPLICATION_X_PROTOBUF))
+        .andExpect(status().isOk()).andReturn();
+
+    SettlementBatchResponseProtoMessage received = SettlementBatchResponseProtoMessage
+        .parseFrom(result.getResponse().getContentAsByteArray());
+    assertEquals(2, received.getResultCount());
+    assertEquals("DELETED", received.getResult(0).getStatus());
+    assertEquals(2L, received.getResult(1).getId());
+  }
 }
@@ -7,8 +7,11 @@ import static org.galatea.starter.MvcConfig.TEXT_CSV;
 import static org.hamcrest.Matchers.hasXPath;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -17,12 +20,15 @@ import com.google.common.collect.Sets;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
 import io.restassured.module.mockmvc.response.MockMvcResponse;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
@@ -31,17 +37,29 @@ import junitparams.JUnitParamsRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.MissionChangeStatus;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJobStatus;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.MissionChangeResult;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementBatchResponseMessage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessages;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionPage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
+import org.galatea.starter.service.MissionResponseCache;
+import org.galatea.starter.service.SettlementJobService;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.testutils.TestDataGenerator;
 import org.galatea.starter.testutils.XlsxComparator;
+import org.galatea.starter.utils.http.converter.SerializedBodyConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.galatea.starter.utils.http.converter.XlsxSerializer;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.junit.Before;
 import org.junit.Test;
@@ -53,10 +71,13 @@ import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnNotWebApplication;
 import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpStatus;
@@ -86,9 +107,15 @@ public class SettlementRestControllerTest
   @Value("${mvc.deleteMissionPath}")
   private String deleteMissionPath;
 
+  @Value("${mvc.deleteMissionsPath}")
+  private String deleteMissionsPath;
+
   @Value("${mvc.updateMissionPath}")
   private String updateMissionPath;
 
+  @Value("${mvc.updateMissionsPath}")
+  private String updateMissionsPath;
+
   @Autowired
   private ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
@@ -101,6 +128,9 @@ public class SettlementRestControllerTest
   @MockBean
   private SettlementService mockSettlementService;
 
+  @MockBean
+  private SettlementJobService mockSettlementJobService;
+
   @Autowired
   private SettlementRestController settlementRestController;
 
@@ -133,14 +163,17 @@ public class SettlementRestControllerTest
         MockMvcBuilders.standaloneSetup(settlementRestController).
             addPlaceholderValue("mvc.settleMissionPath", settleMissionPath).
             addPlaceholderValue("mvc.deleteMissionPath", deleteMissionPath).
+            addPlaceholderValue("mvc.deleteMissionsPath", deleteMissionsPath).
             addPlaceholderValue("mvc.updateMissionPath", updateMissionPath).
+            addPlaceholderValue("mvc.updateMissionsPath", updateMissionsPath).
             addPlaceholderValue("mvc.getMissionsPath", getMissionsPath).
             addPlaceholderValue("mvc.getMissionPath", getMissionPath).
             setContentNegotiationManager(manager).
             setMessageConverters(new MappingJackson2HttpMessageConverter(),
                 new Jaxb2RootElementHttpMessageConverter(),
                 new SettlementMissionCsvConverter(),
-                new SettlementMissionXlsxConverter()).
+                new SettlementMissionXlsxConverter(),
+                new SerializedBodyConverter()).
             setControllerAdvice(new RestExceptionHandler()));
   }
 
@@ -179,6 +212,51 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.OK.value());
   }
 
+  @Test
+  public void testSettleAgreementWithIdempotencyKey() {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement), "key-1"))
+        .willReturn(Sets.newTreeSet(singletonList(MISSION_ID_1)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .header(BaseSettlementRestController.IDEMPOTENCY_KEY_HEADER, "key-1")
+        .body("{\"agreements\":[{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+            + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100}]}")
+        .when()
+        .post("/settlementEngine?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .body("spawnedMissions", is(singletonList("/settlementEngine/mission/" + MISSION_ID_1)))
+        .statusCode(HttpStatus.OK.value());
+  }
+
+  @Test
+  public void testSettleAgreementWithRanges() {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(5L, 1L, 2L, 3L)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body("{\"agreements\":[{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+            + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100}]}")
+        .when()
+        .post("/settlementEngine?idFormat=RANGES&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .body("spawnedMissions", is(Collections.emptyList()))
+        .body("missionPath", is("/settlementEngine/mission/"))
+        .body("spawnedMissionRanges.first", is(Arrays.asList(1, 5)))
+        .body("spawnedMissionRanges.last", is(Arrays.asList(3, 5)))
+        .body("spawnedMissionRanges.count", is(Arrays.asList(3, 1)))
+        .statusCode(HttpStatus.OK.value());
+  }
+
   @Test
   public void testSettleAgreement_XML() throws Exception {
     TradeAgreementMessages messages = TradeAgreementMessages.builder().agreement(
@@ -216,6 +294,245 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.OK.value());
   }
 
+  @Test
+  public void testSettleAgreementStream_NDJSON() {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .externalParty("EXT-2").build();
+
+    String ndjson
+        = "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\"EXT-1\","
+        + "\"buySell\":\"B\",\"qty\":100}\n"
+        + "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\"EXT-2\","
+        + "\"buySell\":\"B\",\"qty\":100}\n";
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(
+        Arrays.asList(agreement1, agreement2)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(MISSION_ID_1, MISSION_ID_1 + 1)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MvcConfig.APPLICATION_NDJSON_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body(ndjson)
+        .when()
+        .post("/settlementEngine/stream?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("agreementCount", is(2))
+        .body("missionCount", is(2))
+        .body("chunkCount", is(1));
+  }
+
+  @Test
+  public void testSettleAgreementStream_NDJSON_unknownField() {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    // Fields the agreement doesn't have are ignored, as they are when posting a JSON array
+    String ndjson
+        = "{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\",\"externalParty\":\"EXT-1\","
+        + "\"buySell\":\"B\",\"qty\":100,\"comment\":\"extra\"}\n";
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement)))
+        .willReturn(Sets.newTreeSet(singletonList(MISSION_ID_1)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MvcConfig.APPLICATION_NDJSON_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body(ndjson)
+        .when()
+        .post("/settlementEngine/stream?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("agreementCount", is(1))
+        .body("missionCount", is(1));
+  }
+
+  @Test
+  public void testSettleAgreementStream_CSV() {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .externalParty("EXT-2").build();
+
+    // Columns are bound by the header, so they needn't be in field order
+    String csv
+        = "qty,buySell,instrument,internalParty,externalParty\n"
+        + "100,B,IBM,INT-1,EXT-1\n"
+        + "100,B,IBM,INT-1,EXT-2\n";
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(
+        Arrays.asList(agreement1, agreement2)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(MISSION_ID_1, MISSION_ID_1 + 1)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MvcConfig.TEXT_CSV_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body(csv)
+        .when()
+        .post("/settlementEngine/stream?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("agreementCount", is(2))
+        .body("missionCount", is(2))
+        .body("chunkCount", is(1));
+  }
+
+  @Test
+  public void testSettleAgreementStream_XLSX() throws Exception {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .externalParty("EXT-2").build();
+
+    byte[] xlsx = XlsxSerializer.serializeToXlsx(Arrays.asList(
+        TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-1").buySell("B").qty(100d).build(),
+        TradeAgreementMessage.builder().instrument("IBM").internalParty("INT-1")
+            .externalParty("EXT-2").buySell("B").qty(100d).build()),
+        TradeAgreementMessage.class);
+
+    BDDMockito.given(this.mockSettlementService.spawnMissions(
+        Arrays.asList(agreement1, agreement2)))
+        .willReturn(Sets.newTreeSet(Arrays.asList(MISSION_ID_1, MISSION_ID_1 + 1)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MvcConfig.APPLICATION_XLSX_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body(xlsx)
+        .when()
+        .post("/settlementEngine/stream?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("agreementCount", is(2))
+        .body("missionCount", is(2))
+        .body("chunkCount", is(1));
+  }
+
+  @Test
+  public void testSettleAgreementStream_XLSX_notASpreadsheet() {
+    given()
+        .log().ifValidationFails()
+        .contentType(MvcConfig.APPLICATION_XLSX_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body("instrument,qty\nIBM,100\n".getBytes(StandardCharsets.UTF_8))
+        .when()
+        .post("/settlementEngine/stream?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.BAD_REQUEST.value());
+  }
+
+  @Test
+  public void testSettleAgreementAsync() {
+    SettlementJob job = SettlementJob.builder().id("job-1").status(SettlementJobStatus.QUEUED)
+        .build();
+
+    BDDMockito.given(this.mockSettlementJobService.submit(any())).willReturn(job);
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body("{\"agreements\":[{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+            + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100}]}")
+        .when()
+        .post("/settlementEngine/async?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.ACCEPTED.value())
+        .header("Location", "/settlementEngine/job/job-1")
+        .body("jobId", is("job-1"))
+        .body("status", is("QUEUED"))
+        .body("statusPath", is("/settlementEngine/job/job-1"));
+  }
+
+  @Test
+  public void testSettleAgreementAsyncWithIdempotencyKey() {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    SettlementJob job = SettlementJob.builder().id("job-1").status(SettlementJobStatus.QUEUED)
+        .build();
+
+    // Run the job's work straight away, as the executor eventually would
+    BDDMockito.given(this.mockSettlementJobService.submit(any())).willAnswer(invocation -> {
+      invocation.<Supplier<Set<Long>>>getArgument(0).get();
+      return job;
+    });
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement), "key-1"))
+        .willReturn(Sets.newTreeSet(singletonList(MISSION_ID_1)));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .header(BaseSettlementRestController.IDEMPOTENCY_KEY_HEADER, "key-1")
+        .body("{\"agreements\":[{\"instrument\":\"IBM\",\"internalParty\":\"INT-1\","
+            + "\"externalParty\":\"EXT-1\",\"buySell\":\"B\",\"qty\":100}]}")
+        .when()
+        .post("/settlementEngine/async?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.ACCEPTED.value());
+
+    verify(this.mockSettlementService).spawnMissions(singletonList(agreement), "key-1");
+  }
+
+  @Test
+  public void testSettleAgreementAsyncRejected() {
+    BDDMockito.given(this.mockSettlementJobService.submit(any()))
+        .willThrow(new TaskRejectedException("full"));
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .body("{\"agreements\":[]}")
+        .when()
+        .post("/settlementEngine/async?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+  }
+
+  @Test
+  public void testGetSettlementJobCompleted() {
+    SettlementJob job = SettlementJob.builder().id("job-1").status(SettlementJobStatus.COMPLETED)
+        .missionId(MISSION_ID_1 + 1).missionId(MISSION_ID_1).build();
+
+    BDDMockito.given(this.mockSettlementJobService.findJob("job-1")).willReturn(Optional.of(job));
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/job/job-1?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body("status", is("COMPLETED"))
+        .body("spawnedMissions", is(Arrays.asList("/settlementEngine/mission/" + MISSION_ID_1,
+            "/settlementEngine/mission/" + (MISSION_ID_1 + 1))));
+  }
+
+  @Test
+  public void testGetSettlementJobNotFound() {
+    BDDMockito.given(this.mockSettlementJobService.findJob("job-1")).willReturn(Optional.empty());
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/job/job-1?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_FOUND.value());
+  }
+
   private List<TradeAgreement> toTradeAgreements(TradeAgreementMessages messages) {
     return tradeAgreementTranslator.translate(messages);
   }
@@ -393,6 +710,81 @@ public class SettlementRestControllerTest
     assertTrue(XlsxComparator.equals(expectedXlsx, response.asByteArray()));
   }
 
+  @Test
+  public void testGetMissionsByDepot() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+    SettlementMission mission3 = TestDataGenerator.defaultSettlementMissionData()
+        .id(3L).build();
+
+    // The controller asks for one more mission than the limit to see if there's another page
+    BDDMockito.given(this.mockSettlementService.findMissionsByDepot("DTC", "IBM", null, null, 3))
+        .willReturn(Arrays.asList(mission1, mission2, mission3));
+
+    // Missions come back in the same shape as from the other JSON endpoints
+    SettlementMissionPage expectedPage = new SettlementMissionPage(Arrays.asList(
+        settlementMissionTranslator.translate(mission1),
+        settlementMissionTranslator.translate(mission2)), 2L);
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/depot/DTC?instrument=IBM&limit=2&format=json")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(objectMapper.writeValueAsString(expectedPage)));
+  }
+
+  @Test
+  public void testGetMissionsByDepotLastPage() throws Exception {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData()
+        .id(5L).build();
+
+    BDDMockito.given(this.mockSettlementService.findMissionsByDepot("DTC", null, null, 4L, 101))
+        .willReturn(singletonList(mission));
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/depot/DTC?afterId=4&format=json")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(objectMapper.writeValueAsString(new SettlementMissionPage(
+            singletonList(settlementMissionTranslator.translate(mission)), null))));
+  }
+
+  @Test
+  public void testStreamMissionsByDepot() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData()
+        .id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData()
+        .id(2L).build();
+
+    BDDMockito.given(this.mockSettlementService.iterateMissionsByDepot(any(), any(), any(),
+        anyInt())).willReturn(Arrays.asList(mission1, mission2).iterator());
+
+    // Each line is the same message the JSON endpoints return for the mission
+    String expected
+        = objectMapper.writeValueAsString(settlementMissionTranslator.translate(mission1)) + "\n"
+        + objectMapper.writeValueAsString(settlementMissionTranslator.translate(mission2)) + "\n";
+
+    // The body is written asynchronously, once the controller method has returned
+    given()
+        .log().ifValidationFails()
+        .accept(MvcConfig.APPLICATION_NDJSON_VALUE)
+        .when()
+        .async()
+        .get("/settlementEngine/missions/depot/DTC/stream")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(expected));
+  }
+
   @Test
   public void testIncorrectlyFormattedAgreement() {
     String expectedMessage = "Incorrectly formatted message.  Please consult the documentation.";
@@ -432,8 +824,6 @@ public class SettlementRestControllerTest
     SettlementMission settlementMission = TestDataGenerator.defaultSettlementMissionData().build();
     settlementMission.setId(MISSION_ID_1);
 
-    when(mockSettlementService.missionExists(MISSION_ID_1))
-        .thenReturn(true);
     when(mockSettlementService.updateMission(MISSION_ID_1, settlementMission))
         .thenReturn(Optional.of(settlementMission));
 
@@ -452,9 +842,10 @@ public class SettlementRestControllerTest
   @Test
   public void testUpdateNonExistentMission() {
     SettlementMission settlementMission = TestDataGenerator.defaultSettlementMissionData().build();
+    settlementMission.setId(MISSION_ID_1);
 
-    when(mockSettlementService.missionExists(MISSION_ID_1))
-        .thenReturn(false);
+    when(mockSettlementService.updateMission(MISSION_ID_1, settlementMission))
+        .thenReturn(Optional.empty());
 
     given()
         .log().ifValidationFails()
@@ -473,9 +864,6 @@ public class SettlementRestControllerTest
     SettlementMission settlementMission = TestDataGenerator.defaultSettlementMissionData().build();
     settlementMission.setId(MISSION_ID_1);
 
-    when(mockSettlementService.missionExists(MISSION_ID_1))
-        .thenReturn(true);
-
     when(mockSettlementService.updateMission(MISSION_ID_1, settlementMission)).thenThrow(
         ObjectOptimisticLockingFailureException.class);
 
@@ -520,11 +908,83 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.NOT_FOUND.value());
   }
 
+  @Test
+  public void testUpdateMissions() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMissionMessages messages = SettlementMissionMessages.builder()
+        .mission(settlementMissionTranslator.translate(mission1))
+        .mission(settlementMissionTranslator.translate(mission2)).build();
+
+    when(mockSettlementService.updateMissions(Arrays.asList(mission1, mission2)))
+        .thenReturn(Arrays.asList(MissionChangeStatus.UPDATED, MissionChangeStatus.CONFLICT));
+
+    SettlementBatchResponseMessage expectedResponse = SettlementBatchResponseMessage.builder()
+        .result(MissionChangeResult.builder().id(1L).status("UPDATED").build())
+        .result(MissionChangeResult.builder().id(2L).status("CONFLICT").build()).build();
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .put("/settlementEngine/missions?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(objectMapper.writeValueAsString(expectedResponse)));
+  }
+
+  @Test
+  public void testUpdateMissionsWithoutId() throws Exception {
+    SettlementMissionMessages messages = SettlementMissionMessages.builder()
+        .mission(settlementMissionTranslator.translate(
+            TestDataGenerator.defaultSettlementMissionData().id(null).build())).build();
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .body(objectMapper.writeValueAsString(messages))
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .put("/settlementEngine/missions?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.BAD_REQUEST.value());
+  }
+
+  @Test
+  public void testDeleteMissions() throws Exception {
+    when(mockSettlementService.deleteMissions(Arrays.asList(1L, 2L)))
+        .thenReturn(Arrays.asList(MissionChangeStatus.DELETED, MissionChangeStatus.NOT_FOUND));
+
+    SettlementBatchResponseMessage expectedResponse = SettlementBatchResponseMessage.builder()
+        .result(MissionChangeResult.builder().id(1L).status("DELETED").build())
+        .result(MissionChangeResult.builder().id(2L).status("NOT_FOUND").build()).build();
+
+    given()
+        .log().ifValidationFails()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .delete("/settlementEngine/missions?ids=1,2&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(objectMapper.writeValueAsString(expectedResponse)));
+  }
+
   @Configuration
-  @Import(SettlementRestController.class)
+  @Import({SettlementRestController.class, MissionResponseCache.class})
   @ConditionalOnNotWebApplication
   static class PropertyConfig {
 
+    // Nothing is cached, so that every test sees the response for the mission it set up
+    @Bean
+    CacheManager cacheManager() {
+      return new NoOpCacheManager();
+    }
+
     @Bean
     PropertyPlaceholderConfigurer propertyPlaceholderConfigurer() {
       PropertyPlaceholderConfigurer propertyPlaceholderConfigurer =
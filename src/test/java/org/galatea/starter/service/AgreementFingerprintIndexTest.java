@@ -0,0 +1,109 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.galatea.starter.domain.AgreementFingerprint;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.domain.rpsy.IAgreementFingerprintRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+
+public class AgreementFingerprintIndexTest {
+
+  private IAgreementFingerprintRpsy mockFingerprintRpsy;
+
+  private AgreementFingerprintIndex index;
+
+  @Before
+  public void setup() {
+    mockFingerprintRpsy = mock(IAgreementFingerprintRpsy.class);
+    index = new AgreementFingerprintIndex(mockFingerprintRpsy, 1000, 0.01);
+  }
+
+  @Test
+  public void testFingerprintOfAgreement() {
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    assertEquals(AgreementFingerprintIndex.fingerprint(agreement),
+        AgreementFingerprintIndex.fingerprint(
+            TestDataGenerator.defaultTradeAgreementData().build()));
+    assertNotEquals(AgreementFingerprintIndex.fingerprint(agreement),
+        AgreementFingerprintIndex.fingerprint(
+            TestDataGenerator.defaultTradeAgreementData().qty(101d).build()));
+    assertEquals(64, AgreementFingerprintIndex.fingerprint(agreement).length());
+  }
+
+  @Test
+  public void testFingerprintOfKey() {
+    assertNotEquals(AgreementFingerprintIndex.fingerprint("key-1", 0),
+        AgreementFingerprintIndex.fingerprint("key-1", 1));
+    assertNotEquals(AgreementFingerprintIndex.fingerprint("key-1", 0),
+        AgreementFingerprintIndex.fingerprint("key-2", 0));
+  }
+
+  @Test
+  public void testFindExistingBeforePrimed() {
+    given(mockFingerprintRpsy.findAllById(Collections.singletonList("abc"))).willReturn(
+        Collections.singletonList(
+            AgreementFingerprint.builder().fingerprint("abc").missionId(35L).build()));
+
+    Map<String, Long> existing = index.findExisting(Collections.singletonList("abc"));
+    assertEquals(Collections.singletonMap("abc", 35L), existing);
+  }
+
+  @Test
+  public void testFindExistingSkipsDatabaseForNewFingerprints() {
+    given(mockFingerprintRpsy.streamAllFingerprints()).willReturn(Stream.of("abc"));
+    index.prime();
+
+    assertTrue(index.findExisting(Collections.singletonList("def")).isEmpty());
+    verify(mockFingerprintRpsy, never()).findAllById(Mockito.anyIterable());
+  }
+
+  @Test
+  public void testFindExistingAfterRecord() {
+    given(mockFingerprintRpsy.streamAllFingerprints()).willReturn(Stream.empty());
+    index.prime();
+    index.record(Collections.singletonMap("abc", 35L));
+
+    given(mockFingerprintRpsy.findAllById(Collections.singletonList("abc"))).willReturn(
+        Collections.singletonList(
+            AgreementFingerprint.builder().fingerprint("abc").missionId(35L).build()));
+
+    assertEquals(Collections.singletonMap("abc", 35L),
+        index.findExisting(Collections.singletonList("abc")));
+  }
+
+  @Test
+  public void testFindExistingAfterRejectedRecord() {
+    given(mockFingerprintRpsy.streamAllFingerprints()).willReturn(Stream.empty());
+    index.prime();
+    // A concurrent request recorded the fingerprint first
+    given(mockFingerprintRpsy.saveAll(Mockito.anyIterable()))
+        .willThrow(new DataIntegrityViolationException("Duplicate fingerprint"));
+    try {
+      index.record(Collections.singletonMap("abc", 36L));
+    } catch (DataIntegrityViolationException e) {
+      // Expected
+    }
+
+    given(mockFingerprintRpsy.findAllById(Collections.singletonList("abc"))).willReturn(
+        Collections.singletonList(
+            AgreementFingerprint.builder().fingerprint("abc").missionId(35L).build()));
+
+    assertEquals(Collections.singletonMap("abc", 35L),
+        index.findExisting(Collections.singletonList("abc")));
+  }
+}
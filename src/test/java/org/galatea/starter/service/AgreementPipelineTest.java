@@ -0,0 +1,109 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Sets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+public class AgreementPipelineTest {
+
+  private static final Validator VALIDATOR =
+      Validation.buildDefaultValidatorFactory().getValidator();
+
+  private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+  // Carries the agreement's quantity over so that the order of the output can be checked
+  private static final IAgreementTransformer TRANSFORMER = agreement -> SettlementMission
+      .builder().instrument(agreement.getInstrument()).qty(agreement.getQty()).build();
+
+  @AfterClass
+  public static void shutdownPool() {
+    POOL.shutdown();
+  }
+
+  @Test
+  public void testToMissionsSequential() {
+    AgreementPipeline pipeline = new AgreementPipeline(VALIDATOR, TRANSFORMER, POOL, 1000);
+
+    List<SettlementMission> missions = pipeline.toMissions(agreements(10));
+    assertEquals(quantities(10), missions.stream().map(SettlementMission::getQty)
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testToMissionsParallelKeepsOrder() {
+    AgreementPipeline pipeline = new AgreementPipeline(VALIDATOR, TRANSFORMER, POOL, 1);
+
+    List<SettlementMission> missions = pipeline.toMissions(agreements(5000));
+    assertEquals(quantities(5000), missions.stream().map(SettlementMission::getQty)
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  public void testToMissionsParallelReportsAllViolations() {
+    AgreementPipeline pipeline = new AgreementPipeline(VALIDATOR, TRANSFORMER, POOL, 1);
+
+    List<TradeAgreement> agreements = agreements(5000);
+    agreements.set(10, TestDataGenerator.defaultTradeAgreementData().qty(-1d).build());
+    agreements.set(4000, TestDataGenerator.defaultTradeAgreementData().buySell("X").build());
+
+    try {
+      pipeline.toMissions(agreements);
+      fail("A ConstraintViolationException was expected but not thrown");
+    } catch (ConstraintViolationException e) {
+      assertEquals(
+          Sets.newHashSet("Quantity must be greater than 0", "Buy/Sell side must be valid"),
+          e.getConstraintViolations().stream().map(ConstraintViolation::getMessage)
+              .collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void testViolationsCarryAgreementIndex() {
+    AgreementPipeline pipeline = new AgreementPipeline(VALIDATOR, TRANSFORMER, POOL, 1000);
+
+    // The same violation on two agreements is reported for each of them
+    List<TradeAgreement> agreements = agreements(20);
+    agreements.set(3, TestDataGenerator.defaultTradeAgreementData().qty(-1d).build());
+    agreements.set(17, TestDataGenerator.defaultTradeAgreementData().qty(-1d).build());
+
+    try {
+      pipeline.toMissions(agreements);
+      fail("A ConstraintViolationException was expected but not thrown");
+    } catch (ConstraintViolationException e) {
+      assertEquals(Arrays.asList("agreements[3].qty", "agreements[17].qty"),
+          e.getConstraintViolations().stream().map(cv -> cv.getPropertyPath().toString())
+              .collect(Collectors.toList()));
+    }
+  }
+
+  private static List<TradeAgreement> agreements(final int count) {
+    List<TradeAgreement> agreements = new ArrayList<>(count);
+    for (Double qty : quantities(count)) {
+      agreements.add(TestDataGenerator.defaultTradeAgreementData().qty(qty).build());
+    }
+    return agreements;
+  }
+
+  private static List<Double> quantities(final int count) {
+    List<Double> quantities = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      quantities.add((double) i);
+    }
+    return quantities;
+  }
+}
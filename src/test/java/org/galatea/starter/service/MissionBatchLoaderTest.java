@@ -0,0 +1,147 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.cache.InstrumentedCacheManager;
+import org.galatea.starter.utils.cache.VersionedMissionCacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.QueryTimeoutException;
+
+public class MissionBatchLoaderTest {
+
+  private ISettlementMissionRpsy mockMissionRpsy;
+
+  private CacheManager cacheManager;
+
+  private SettlementMissionCache missionCache;
+
+  private MissionBatchLoader loader;
+
+  @Before
+  public void setup() {
+    mockMissionRpsy = mock(ISettlementMissionRpsy.class);
+    cacheManager = new ConcurrentMapCacheManager("missions", MissionResponseCache.CACHE_NAME);
+    missionCache =
+        new SettlementMissionCache(mockMissionRpsy, cacheManager, new SimpleMeterRegistry());
+  }
+
+  @After
+  public void shutdown() {
+    loader.shutdown();
+  }
+
+  @Test
+  public void testFullBatchIsLoadedWithOneQuery() throws Exception {
+    // A window long enough that only a full batch can be loaded before the test times out
+    loader = new MissionBatchLoader(missionCache, cacheManager, 60000, 3, 1);
+    List<SettlementMission> missions = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(3L).build());
+    given(mockMissionRpsy.findAllById(any())).willReturn(missions);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      Future<Optional<SettlementMission>> mission1 = executor.submit(() -> loader.load(1L));
+      Future<Optional<SettlementMission>> mission2 = executor.submit(() -> loader.load(2L));
+      Future<Optional<SettlementMission>> mission3 = executor.submit(() -> loader.load(3L));
+
+      assertEquals(missions.get(0), mission1.get().get());
+      assertEquals(missions.get(1), mission2.get().get());
+      assertEquals(missions.get(2), mission3.get().get());
+    } finally {
+      executor.shutdown();
+    }
+    verify(mockMissionRpsy, times(1)).findAllById(any());
+  }
+
+  @Test
+  public void testPartialBatchIsLoadedAfterWindow() {
+    loader = new MissionBatchLoader(missionCache, cacheManager, 10, 100, 1);
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    given(mockMissionRpsy.findAllById(Arrays.asList(1L))).willReturn(Arrays.asList(mission));
+
+    assertEquals(mission, loader.load(1L).get());
+    // Loaded missions go into the cache like any other
+    assertEquals(mission, loader.load(1L).get());
+    verify(mockMissionRpsy, times(1)).findAllById(any());
+  }
+
+  @Test
+  public void testMissingMissionIsEmpty() {
+    loader = new MissionBatchLoader(missionCache, cacheManager, 10, 100, 1);
+    given(mockMissionRpsy.findAllById(Arrays.asList(1L))).willReturn(Arrays.asList());
+
+    assertFalse(loader.load(1L).isPresent());
+  }
+
+  @Test
+  public void testCachedMissionIsNotLoaded() {
+    loader = new MissionBatchLoader(missionCache, cacheManager, 10, 100, 1);
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    cacheManager.getCache("missions").put(1L, mission);
+
+    assertEquals(mission, loader.load(1L).get());
+    verify(mockMissionRpsy, never()).findAllById(any());
+  }
+
+  @Test
+  public void testCacheReadsCountedOncePerLookup() {
+    // The missions cache as the application sets it up
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    cacheManager = new InstrumentedCacheManager(new VersionedMissionCacheManager(
+        new ConcurrentMapCacheManager("missions", MissionResponseCache.CACHE_NAME)), registry);
+    missionCache = new SettlementMissionCache(mockMissionRpsy, cacheManager, registry);
+    loader = new MissionBatchLoader(missionCache, cacheManager, 10, 100, 1);
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    given(mockMissionRpsy.findAllById(Arrays.asList(2L))).willReturn(Arrays.asList(mission2));
+    given(mockMissionRpsy.findAllById(Arrays.asList(3L))).willReturn(Arrays.asList());
+
+    // Writing through checks the cached version, which isn't a read anyone asked for
+    missionCache.writeThrough(Arrays.asList(mission1));
+    // A hit
+    assertEquals(mission1, loader.load(1L).get());
+    // A miss, which the batch doesn't count again when it looks for the mission once more
+    assertEquals(mission2, loader.load(2L).get());
+    // A hit now that the batch has cached it
+    assertEquals(mission2, loader.load(2L).get());
+    // A cached "not found" is a miss
+    cacheManager.getCache("missions").put(3L, null);
+    assertFalse(loader.load(3L).isPresent());
+
+    assertEquals(2, registry.get("settlement.cache.gets").tag("result", "hit").counter().count(),
+        0);
+    assertEquals(2, registry.get("settlement.cache.gets").tag("result", "miss").counter().count(),
+        0);
+  }
+
+  @Test(expected = QueryTimeoutException.class)
+  public void testQueryFailureIsRethrown() {
+    loader = new MissionBatchLoader(missionCache, cacheManager, 10, 100, 1);
+    given(mockMissionRpsy.findAllById(any())).willThrow(new QueryTimeoutException("Too slow"));
+
+    loader.load(1L);
+  }
+}
@@ -0,0 +1,78 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.QueryTimeoutException;
+
+public class MissionCacheWarmUpTest {
+
+  private ISettlementMissionRpsy mockMissionRpsy;
+
+  private Cache cache;
+
+  private MissionCacheWarmUp warmUp;
+
+  @Before
+  public void setup() {
+    mockMissionRpsy = mock(ISettlementMissionRpsy.class);
+    CacheManager cacheManager =
+        new ConcurrentMapCacheManager("missions", MissionResponseCache.CACHE_NAME);
+    cache = cacheManager.getCache("missions");
+    SettlementMissionCache missionCache =
+        new SettlementMissionCache(mockMissionRpsy, cacheManager, new SimpleMeterRegistry());
+    warmUp = new MissionCacheWarmUp(mockMissionRpsy, missionCache, 100, "DTC", null, null, 2, 2);
+  }
+
+  @Test
+  public void testWarmUpLoadsMissionsInChunks() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMission mission3 = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+
+    given(mockMissionRpsy.findRecentIds("DTC", null, null, 100))
+        .willReturn(Arrays.asList(3L, 2L, 1L));
+    given(mockMissionRpsy.findAllById(Arrays.asList(3L, 2L)))
+        .willReturn(Arrays.asList(mission3, mission2));
+    given(mockMissionRpsy.findAllById(Arrays.asList(1L)))
+        .willReturn(Arrays.asList(mission1));
+
+    assertEquals(Status.OUT_OF_SERVICE, warmUp.health().getStatus());
+    warmUp.warmUp();
+
+    assertTrue(warmUp.isComplete());
+    assertEquals(Status.UP, warmUp.health().getStatus());
+    assertEquals(3, warmUp.health().getDetails().get("missions"));
+    assertEquals(mission1, cache.get(1L).get());
+    assertEquals(mission3, cache.get(3L).get());
+    verify(mockMissionRpsy).findAllById(Arrays.asList(3L, 2L));
+    verify(mockMissionRpsy).findAllById(Arrays.asList(1L));
+  }
+
+  @Test
+  public void testFailedWarmUpStillComesIntoService() {
+    given(mockMissionRpsy.findRecentIds("DTC", null, null, 100))
+        .willThrow(new QueryTimeoutException("Too slow"));
+
+    warmUp.warmUp();
+
+    assertTrue(warmUp.isComplete());
+    assertEquals(Status.UP, warmUp.health().getStatus());
+    assertNotNull(warmUp.health().getDetails().get("error"));
+  }
+}
@@ -0,0 +1,123 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.http.converter.SerializedBody;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
+import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+
+public class MissionResponseCacheTest {
+
+  private Cache cache;
+
+  private MissionResponseCache responseCache;
+
+  private AtomicInteger translations;
+
+  private Function<SettlementMission, SettlementMissionMessage> translator;
+
+  @Before
+  public void setup() {
+    ConcurrentMapCacheManager cacheManager =
+        new ConcurrentMapCacheManager(MissionResponseCache.CACHE_NAME);
+    cache = cacheManager.getCache(MissionResponseCache.CACHE_NAME);
+    // Registered as MvcConfig registers them
+    responseCache = new MissionResponseCache(cacheManager, Arrays.asList(
+        new ProtobufHttpMessageConverter(), new MappingJackson2HttpMessageConverter(),
+        new Jaxb2RootElementHttpMessageConverter()));
+
+    translations = new AtomicInteger();
+    translator = mission -> {
+      translations.incrementAndGet();
+      return SettlementMissionMessage.builder().id(mission.getId())
+          .instrument(mission.getInstrument()).externalParty(mission.getExternalParty())
+          .depot(mission.getDepot()).direction(mission.getDirection()).qty(mission.getQty())
+          .version(mission.getVersion()).build();
+    };
+  }
+
+  @Test
+  public void testRepeatedReadIsServedFromCache() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
+
+    SerializedBody first =
+        responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_JSON);
+    SerializedBody second =
+        responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_JSON);
+
+    assertEquals(1, translations.get());
+    assertArrayEquals(first.getBytes(), second.getBytes());
+    assertTrue(new String(first.getBytes(), StandardCharsets.UTF_8)
+        .contains("\"instrument\":\"" + mission.getInstrument() + "\""));
+    assertTrue(MediaType.APPLICATION_JSON.includes(first.getHeaders().getContentType()));
+  }
+
+  @Test
+  public void testMediaTypesAreCachedSeparately() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
+
+    SerializedBody json =
+        responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_JSON);
+    SerializedBody xml =
+        responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_XML);
+    responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_XML);
+
+    assertEquals(2, translations.get());
+    assertNotEquals(json.getHeaders().getContentType(), xml.getHeaders().getContentType());
+    assertTrue(new String(xml.getBytes(), StandardCharsets.UTF_8).contains("<instrument>"));
+  }
+
+  @Test
+  public void testNewVersionIsSerializedAgain() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
+    SettlementMission updated = mission.toBuilder().qty(1d).version(mission.getVersion() + 1)
+        .build();
+
+    responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_JSON);
+    SerializedBody body =
+        responseCache.bodyFor(updated, translator).serializeTo(MediaType.APPLICATION_JSON);
+
+    assertEquals(2, translations.get());
+    assertTrue(new String(body.getBytes(), StandardCharsets.UTF_8).contains("\"qty\":1.0"));
+  }
+
+  @Test
+  public void testEvictedResponseIsSerializedAgain() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
+
+    responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_JSON);
+    cache.evict(mission.getId());
+    responseCache.bodyFor(mission, translator).serializeTo(MediaType.APPLICATION_JSON);
+
+    assertEquals(2, translations.get());
+  }
+
+  @Test
+  public void testProtobuf() throws Exception {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
+    SettlementMissionProtoMessage message = SettlementMissionProtoMessage.newBuilder()
+        .setId(mission.getId()).setInstrument(mission.getInstrument()).build();
+
+    SerializedBody body = responseCache.bodyFor(mission, msn -> message)
+        .serializeTo(ProtobufHttpMessageConverter.PROTOBUF);
+
+    assertEquals(message, SettlementMissionProtoMessage.parseFrom(body.getBytes()));
+  }
+}
@@ -0,0 +1,83 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+import java.util.Optional;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementJob;
+import org.galatea.starter.domain.SettlementJobStatus;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+public class SettlementJobServiceTest extends ASpringTest {
+
+  @Test
+  public void testSubmitCompleted() {
+    // Run jobs inline so that they have finished by the time submit returns
+    SettlementJobService service = new SettlementJobService(new SyncTaskExecutor(), 60);
+
+    SettlementJob queued = service.submit(() -> Sets.newHashSet(1L, 2L));
+    assertEquals(SettlementJobStatus.QUEUED, queued.getStatus());
+
+    Optional<SettlementJob> maybeJob = service.findJob(queued.getId());
+    assertTrue(maybeJob.isPresent());
+    assertEquals(SettlementJobStatus.COMPLETED, maybeJob.get().getStatus());
+    assertEquals(Sets.newHashSet(1L, 2L), maybeJob.get().getMissionIds());
+  }
+
+  @Test
+  public void testSubmitFailed() {
+    SettlementJobService service = new SettlementJobService(new SyncTaskExecutor(), 60);
+
+    SettlementJob queued = service.submit(() -> {
+      throw new IllegalStateException("boom");
+    });
+
+    SettlementJob job = service.findJob(queued.getId()).get();
+    assertEquals(SettlementJobStatus.FAILED, job.getStatus());
+    assertTrue(job.getMissionIds().isEmpty());
+    // Internal details are only logged
+    assertEquals("An internal application error occurred.", job.getError());
+  }
+
+  @Test
+  public void testSubmitInvalid() {
+    SettlementJobService service = new SettlementJobService(new SyncTaskExecutor(), 60);
+    Set<ConstraintViolation<TradeAgreement>> violations =
+        Validation.buildDefaultValidatorFactory().getValidator()
+            .validate(TestDataGenerator.defaultTradeAgreementData().qty(-1d).build());
+
+    SettlementJob queued = service.submit(() -> {
+      throw new ConstraintViolationException(violations);
+    });
+
+    // Reported as the synchronous endpoint reports it
+    assertEquals("qty: Quantity must be greater than 0. ",
+        service.findJob(queued.getId()).get().getError());
+  }
+
+  @Test(expected = TaskRejectedException.class)
+  public void testSubmitRejected() {
+    SettlementJobService service = new SettlementJobService(task -> {
+      throw new TaskRejectedException("full");
+    }, 60);
+
+    service.submit(Sets::newHashSet);
+  }
+
+  @Test
+  public void testFindJobNotFound() {
+    SettlementJobService service = new SettlementJobService(new SyncTaskExecutor(), 60);
+    assertFalse(service.findJob("no-such-job").isPresent());
+  }
+}
@@ -0,0 +1,167 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.cache.VersionedMissionCacheManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+public class SettlementMissionCacheTest {
+
+  private ISettlementMissionRpsy mockMissionRpsy;
+
+  private Cache cache;
+
+  private MeterRegistry meterRegistry;
+
+  private SettlementMissionCache missionCache;
+
+  @Before
+  public void setup() {
+    mockMissionRpsy = mock(ISettlementMissionRpsy.class);
+    // Guarded as the application's missions cache is
+    CacheManager cacheManager = new VersionedMissionCacheManager(
+        new ConcurrentMapCacheManager("missions", MissionResponseCache.CACHE_NAME));
+    cache = cacheManager.getCache("missions");
+    meterRegistry = new SimpleMeterRegistry();
+    missionCache = new SettlementMissionCache(mockMissionRpsy, cacheManager, meterRegistry);
+  }
+
+  @Test
+  public void testFindAllLoadsMissesOnly() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMission mission3 = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+    cache.put(2L, mission2);
+
+    given(mockMissionRpsy.findAllById(Arrays.asList(1L, 3L)))
+        .willReturn(Arrays.asList(mission3, mission1));
+
+    List<SettlementMission> actual = missionCache.findAll(Arrays.asList(1L, 2L, 3L));
+
+    // Returned in the order asked for, whatever order the database gave them back in
+    assertEquals(Arrays.asList(mission1, mission2, mission3), actual);
+    verify(mockMissionRpsy).findAllById(Arrays.asList(1L, 3L));
+    assertEquals(1, meterRegistry.get("settlement.missions.multiget").tag("result", "hit")
+        .counter().count(), 0);
+    assertEquals(2, meterRegistry.get("settlement.missions.multiget").tag("result", "miss")
+        .counter().count(), 0);
+  }
+
+  @Test
+  public void testFindAllPopulatesCache() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    given(mockMissionRpsy.findAllById(Collections.singletonList(1L)))
+        .willReturn(Collections.singletonList(mission1));
+
+    missionCache.findAll(Collections.singletonList(1L));
+    List<SettlementMission> actual = missionCache.findAll(Arrays.asList(1L, 1L));
+
+    assertEquals(Collections.singletonList(mission1), actual);
+    assertEquals(mission1, cache.get(1L).get());
+    // The second lookup was served from the cache alone
+    verify(mockMissionRpsy).findAllById(Collections.singletonList(1L));
+    verifyNoMoreInteractions(mockMissionRpsy);
+  }
+
+  @Test
+  public void testFindAllWithoutCachingLeavesCacheAlone() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    cache.put(2L, mission2);
+    given(mockMissionRpsy.findAllById(Collections.singletonList(1L)))
+        .willReturn(Collections.singletonList(mission1));
+
+    List<SettlementMission> actual = missionCache.findAllWithoutCaching(Arrays.asList(1L, 2L));
+
+    // Cached missions are still used, but the loaded one isn't cached
+    assertEquals(Arrays.asList(mission1, mission2), actual);
+    assertNull(cache.get(1L));
+  }
+
+  @Test
+  public void testFindAllSkipsMissingMissions() {
+    // A null cached by findById for a mission that didn't exist is looked up again
+    cache.put(1L, null);
+    given(mockMissionRpsy.findAllById(Arrays.asList(1L, 2L))).willReturn(Collections.emptyList());
+
+    List<SettlementMission> actual = missionCache.findAll(Arrays.asList(1L, 2L));
+
+    assertEquals(Collections.emptyList(), actual);
+    verify(mockMissionRpsy).findAllById(Arrays.asList(1L, 2L));
+  }
+
+  @Test
+  public void testWriteThroughReplacesOlderVersion() {
+    cache.put(1L, TestDataGenerator.defaultSettlementMissionData().id(1L).version(0L).build());
+    SettlementMission updated = TestDataGenerator.defaultSettlementMissionData().id(1L)
+        .qty(50d).version(1L).build();
+
+    missionCache.writeThrough(Collections.singletonList(updated));
+
+    assertEquals(updated, cache.get(1L).get());
+  }
+
+  @Test
+  public void testWriteThroughKeepsNewerVersion() {
+    SettlementMission newer = TestDataGenerator.defaultSettlementMissionData().id(1L)
+        .qty(50d).version(2L).build();
+    cache.put(1L, newer);
+
+    // A slower writer arriving with the version before
+    missionCache.writeThrough(Collections.singletonList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).version(1L).build()));
+
+    assertEquals(newer, cache.get(1L).get());
+  }
+
+  @Test
+  public void testEvictUpdatedKeepsStaleLoadOut() {
+    SettlementMission stale = TestDataGenerator.defaultSettlementMissionData().id(1L)
+        .version(1L).build();
+    // The multi-get read the row just before it was updated to version 2
+    given(mockMissionRpsy.findAllById(Collections.singletonList(1L)))
+        .willReturn(Collections.singletonList(stale));
+
+    missionCache.evictUpdated(Collections.singletonList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).version(2L).build()));
+    assertEquals(Collections.singletonList(stale),
+        missionCache.findAll(Collections.singletonList(1L)));
+
+    assertNull(cache.get(1L));
+  }
+
+  @Test
+  public void testWriteThroughWaitsForCommit() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      missionCache.writeThrough(Collections.singletonList(mission));
+      assertNull(cache.get(1L));
+
+      TransactionSynchronizationUtils.triggerAfterCommit();
+      assertEquals(mission, cache.get(1L).get());
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+}
@@ -6,13 +6,22 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.MissionChangeStatus;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
@@ -22,6 +31,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 public class SettlementServiceTest extends ASpringTest {
 
@@ -31,11 +45,28 @@ public class SettlementServiceTest extends ASpringTest {
   @MockBean
   private IAgreementTransformer mockAgreementTransformer;
 
+  private AgreementPipeline agreementPipeline;
+
+  private SettlementMissionCache missionCache;
+
+  private TransactionTemplate mockTransactionTemplate;
+
   private SettlementService service;
 
   @Before
   public void setup() {
-    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer);
+    mockTransactionTemplate = Mockito.mock(TransactionTemplate.class);
+    // Run each callback as if a transaction had been started
+    given(mockTransactionTemplate.execute(Mockito.any())).willAnswer(
+        invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    agreementPipeline = new AgreementPipeline(
+        Validation.buildDefaultValidatorFactory().getValidator(), mockAgreementTransformer,
+        ForkJoinPool.commonPool(), 1000);
+    missionCache = new SettlementMissionCache(mockSettlementMissionRpsy,
+        new ConcurrentMapCacheManager("missions", MissionResponseCache.CACHE_NAME),
+        new SimpleMeterRegistry());
+    service = new SettlementService(mockSettlementMissionRpsy, agreementPipeline, missionCache,
+        mockTransactionTemplate, Optional.empty(), Optional.empty(), Optional.empty());
   }
 
   @Test
@@ -98,6 +129,41 @@ public class SettlementServiceTest extends ASpringTest {
     }
   }
 
+  @Test
+  public void testIterateMissionsByDepot() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMission mission3 = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+
+    // Each page starts after the last id of the one before it, and a short page is the last one
+    given(this.mockSettlementMissionRpsy.findPageByDepot("DTC", "IBM", null, null, 2))
+        .willReturn(Arrays.asList(mission1, mission2));
+    given(this.mockSettlementMissionRpsy.findPageByDepot("DTC", "IBM", null, 2L, 2))
+        .willReturn(Collections.singletonList(mission3));
+
+    List<SettlementMission> actual =
+        Lists.newArrayList(service.iterateMissionsByDepot("DTC", "IBM", null, 2));
+    assertEquals(Arrays.asList(mission1, mission2, mission3), actual);
+    verify(this.mockSettlementMissionRpsy, never())
+        .findPageByDepot("DTC", "IBM", null, 3L, 2);
+  }
+
+  @Test
+  public void testIterateMissionsSkipsMissing() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission3 = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+
+    // Two ids per query, and mission 2 doesn't exist
+    given(this.mockSettlementMissionRpsy.findAllById(Arrays.asList(1L, 2L)))
+        .willReturn(Collections.singletonList(mission1));
+    given(this.mockSettlementMissionRpsy.findAllById(Collections.singletonList(3L)))
+        .willReturn(Collections.singletonList(mission3));
+
+    List<SettlementMission> actual =
+        Lists.newArrayList(service.iterateMissions(Arrays.asList(1L, 2L, 3L), 2));
+    assertEquals(Arrays.asList(mission1, mission3), actual);
+  }
+
   @Test
   public void testSpawnMissions() {
 
@@ -114,20 +180,179 @@ public class SettlementServiceTest extends ASpringTest {
     assertEquals(1, missionIds.size());
   }
 
+  @Test(expected = ConstraintViolationException.class)
+  public void testSpawnMissionsInvalid() {
+    TradeAgreement testTradeAgreement = TestDataGenerator.defaultTradeAgreementData().qty(-1d)
+        .build();
+
+    service.spawnMissions(Collections.singletonList(testTradeAgreement));
+  }
+
+  @Test
+  public void testSpawnMissionsIdempotentDuplicate() {
+    AgreementFingerprintIndex mockFingerprintIndex = Mockito.mock(AgreementFingerprintIndex.class);
+    SettlementService service = new SettlementService(mockSettlementMissionRpsy,
+        agreementPipeline, missionCache, mockTransactionTemplate,
+        Optional.of(mockFingerprintIndex), Optional.empty(), Optional.empty());
+
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    String fingerprint = AgreementFingerprintIndex.fingerprint(agreement);
+
+    given(mockFingerprintIndex.findExisting(Collections.singletonList(fingerprint)))
+        .willReturn(Collections.singletonMap(fingerprint, 35L));
+
+    Set<Long> missionIds = service.spawnMissions(Collections.singletonList(agreement));
+    assertEquals(Collections.singleton(35L), missionIds);
+    verify(mockSettlementMissionRpsy, never()).saveAll(Mockito.anyIterable());
+    verify(mockFingerprintIndex, never()).record(Mockito.anyMap());
+  }
+
+  @Test
+  public void testSpawnMissionsIdempotentWithKey() {
+    AgreementFingerprintIndex mockFingerprintIndex = Mockito.mock(AgreementFingerprintIndex.class);
+    SettlementService service = new SettlementService(mockSettlementMissionRpsy,
+        agreementPipeline, missionCache, mockTransactionTemplate,
+        Optional.of(mockFingerprintIndex), Optional.empty(), Optional.empty());
+
+    // The same agreement twice is two different agreements when the client labels the request
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    List<String> fingerprints = Arrays.asList(AgreementFingerprintIndex.fingerprint("key-1", 0),
+        AgreementFingerprintIndex.fingerprint("key-1", 1));
+
+    given(mockFingerprintIndex.findExisting(fingerprints))
+        .willReturn(Collections.singletonMap(fingerprints.get(0), 35L));
+    SettlementMission savedMission = TestDataGenerator.defaultSettlementMissionData().id(36L)
+        .build();
+    given(mockSettlementMissionRpsy.saveAll(Mockito.anyIterable()))
+        .willReturn(Collections.singletonList(savedMission));
+
+    Set<Long> missionIds = service.spawnMissions(Arrays.asList(agreement, agreement), "key-1");
+    assertEquals(new HashSet<>(Arrays.asList(35L, 36L)), missionIds);
+    verify(mockFingerprintIndex).record(Collections.singletonMap(fingerprints.get(1), 36L));
+  }
+
+  @Test
+  public void testSpawnMissionsSettledConcurrently() {
+    AgreementFingerprintIndex mockFingerprintIndex = Mockito.mock(AgreementFingerprintIndex.class);
+    SettlementService service = new SettlementService(mockSettlementMissionRpsy,
+        agreementPipeline, missionCache, mockTransactionTemplate,
+        Optional.of(mockFingerprintIndex), Optional.empty(), Optional.empty());
+
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    List<String> fingerprints =
+        Collections.singletonList(AgreementFingerprintIndex.fingerprint("key-1", 0));
+
+    // A concurrent request with the same key records its mission just before this one does
+    given(mockFingerprintIndex.findExisting(fingerprints)).willReturn(Collections.emptyMap())
+        .willReturn(Collections.singletonMap(fingerprints.get(0), 35L));
+    SettlementMission savedMission = TestDataGenerator.defaultSettlementMissionData().id(36L)
+        .build();
+    given(mockSettlementMissionRpsy.saveAll(Mockito.anyIterable()))
+        .willReturn(Collections.singletonList(savedMission));
+    Mockito.doThrow(new DataIntegrityViolationException("Duplicate fingerprint"))
+        .when(mockFingerprintIndex).record(Mockito.anyMap());
+
+    Set<Long> missionIds = service.spawnMissions(Collections.singletonList(agreement), "key-1");
+    assertEquals(Collections.singleton(35L), missionIds);
+  }
+
+  @Test
+  public void testDeleteMissionsForgetsFingerprints() {
+    AgreementFingerprintIndex mockFingerprintIndex = Mockito.mock(AgreementFingerprintIndex.class);
+    SettlementService service = new SettlementService(mockSettlementMissionRpsy,
+        agreementPipeline, missionCache, mockTransactionTemplate,
+        Optional.of(mockFingerprintIndex), Optional.empty(), Optional.empty());
+    given(this.mockSettlementMissionRpsy.deleteAllById(Arrays.asList(1L, 2L)))
+        .willReturn(new int[] {1, 0});
+
+    service.deleteMissions(Arrays.asList(1L, 2L));
+
+    verify(mockFingerprintIndex).forget(Arrays.asList(1L, 2L));
+  }
+
   @Test
   public void testUpdateMission() {
 
     SettlementMission testSettlementMission = SettlementMission.builder().depot("DTC")
         .externalParty("EXT-1").instrument("IBM").direction("REC").qty(100d).version(0L).build();
 
-    given(this.mockSettlementMissionRpsy.save(testSettlementMission))
-        .willReturn(testSettlementMission);
+    given(this.mockSettlementMissionRpsy.updateIfVersionMatches(testSettlementMission))
+        .willReturn(1);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.agreementPipeline,
+            this.missionCache, this.mockTransactionTemplate, Optional.empty(), Optional.empty(),
+            Optional.empty());
 
     Optional<SettlementMission> settlementMissionOptional = service.updateMission(35L, testSettlementMission);
     assertEquals((Long) 35L, settlementMissionOptional.get().getId());
+    assertEquals((Long) 1L, settlementMissionOptional.get().getVersion());
+    verify(this.mockSettlementMissionRpsy, never()).save(Mockito.any());
+  }
+
+  @Test
+  public void testUpdateNonExistentMission() {
+    SettlementMission testSettlementMission = TestDataGenerator.defaultSettlementMissionData()
+        .build();
+
+    given(this.mockSettlementMissionRpsy.updateIfVersionMatches(testSettlementMission))
+        .willReturn(0);
+    given(this.mockSettlementMissionRpsy.existsById(35L)).willReturn(false);
+
+    assertFalse(service.updateMission(35L, testSettlementMission).isPresent());
+  }
+
+  @Test(expected = ObjectOptimisticLockingFailureException.class)
+  public void testUpdateMissionWithWrongVersion() {
+    SettlementMission testSettlementMission = TestDataGenerator.defaultSettlementMissionData()
+        .build();
+
+    given(this.mockSettlementMissionRpsy.updateIfVersionMatches(testSettlementMission))
+        .willReturn(0);
+    given(this.mockSettlementMissionRpsy.existsById(35L)).willReturn(true);
+
+    service.updateMission(35L, testSettlementMission);
+  }
+
+  @Test
+  public void testUpdateMissions() {
+    SettlementMission updated = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission stale = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    SettlementMission missing = TestDataGenerator.defaultSettlementMissionData().id(3L).build();
+    List<SettlementMission> missions = Arrays.asList(updated, stale, missing);
+
+    given(this.mockSettlementMissionRpsy.updateAllIfVersionMatches(missions))
+        .willReturn(new int[] {1, 0, 0});
+    given(this.mockSettlementMissionRpsy.findExistingIds(Arrays.asList(2L, 3L)))
+        .willReturn(Collections.singleton(2L));
+
+    assertEquals(Arrays.asList(MissionChangeStatus.UPDATED, MissionChangeStatus.CONFLICT,
+        MissionChangeStatus.NOT_FOUND), service.updateMissions(missions));
+  }
+
+  @Test
+  public void testUpdateMissionsEvictsCache() {
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    missionCache.writeThrough(Collections.singletonList(mission));
+
+    given(this.mockSettlementMissionRpsy.updateAllIfVersionMatches(
+        Collections.singletonList(mission))).willReturn(new int[] {1});
+    given(this.mockSettlementMissionRpsy.findAllById(Collections.singletonList(1L)))
+        .willReturn(Collections.emptyList());
+
+    service.updateMissions(Collections.singletonList(mission));
+
+    // Nothing left in the cache, so the multi-get has to go to the database
+    assertTrue(missionCache.findAll(Collections.singletonList(1L)).isEmpty());
+  }
+
+  @Test
+  public void testDeleteMissions() {
+    given(this.mockSettlementMissionRpsy.deleteAllById(Arrays.asList(1L, 2L)))
+        .willReturn(new int[] {1, 0});
+
+    assertEquals(Arrays.asList(MissionChangeStatus.DELETED, MissionChangeStatus.NOT_FOUND),
+        service.deleteMissions(Arrays.asList(1L, 2L)));
   }
 
   @Test
@@ -137,7 +362,9 @@ public class SettlementServiceTest extends ASpringTest {
         .willReturn(true);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.agreementPipeline,
+            this.missionCache, this.mockTransactionTemplate, Optional.empty(), Optional.empty(),
+            Optional.empty());
 
     boolean missionExists = service.missionExists(35L);
     assertTrue(missionExists);
@@ -149,7 +376,9 @@ public class SettlementServiceTest extends ASpringTest {
     doNothing().when(this.mockSettlementMissionRpsy).deleteById(35L);
 
     SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+        new SettlementService(this.mockSettlementMissionRpsy, this.agreementPipeline,
+            this.missionCache, this.mockTransactionTemplate, Optional.empty(), Optional.empty(),
+            Optional.empty());
 
     service.deleteMission(35L);
     boolean missionExists = service.missionExists(35L);
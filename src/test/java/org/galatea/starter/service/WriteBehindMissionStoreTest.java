@@ -0,0 +1,315 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.MissionChangeStatus;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class WriteBehindMissionStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ISettlementMissionRpsy mockMissionRpsy;
+
+  private TransactionTemplate mockTransactionTemplate;
+
+  private Cache mockCache;
+
+  private Cache mockResponseCache;
+
+  private CacheManager mockCacheManager;
+
+  private String journalPath;
+
+  private WriteBehindMissionStore store;
+
+  @Before
+  public void setup() throws IOException {
+    mockMissionRpsy = mock(ISettlementMissionRpsy.class);
+    mockTransactionTemplate = mock(TransactionTemplate.class);
+    mockCache = mock(Cache.class);
+    mockResponseCache = mock(Cache.class);
+    mockCacheManager = mock(CacheManager.class);
+
+    given(mockCacheManager.getCache("missions")).willReturn(mockCache);
+    given(mockCacheManager.getCache("missionResponses")).willReturn(mockResponseCache);
+    given(mockMissionRpsy.reserveIds(anyInt())).willReturn(Arrays.asList(1L, 2L));
+    // Every conditional update finds its mission at the expected version
+    given(mockMissionRpsy.updateAllIfVersionIs(anyList(), anyList())).willAnswer(invocation -> {
+      int[] rowCounts = new int[invocation.<List<?>>getArgument(0).size()];
+      Arrays.fill(rowCounts, 1);
+      return rowCounts;
+    });
+    // Run the flush's callback as if a transaction had been started
+    given(mockTransactionTemplate.execute(any())).willAnswer(
+        invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+
+    journalPath = folder.getRoot().toPath().resolve("mission.journal").toString();
+    store = newStore();
+  }
+
+  @After
+  public void closeStore() throws IOException {
+    store.close();
+  }
+
+  @Test
+  public void testCreateIsServedFromMemory() {
+    List<SettlementMission> created = store.create(newMissions());
+
+    assertEquals(Long.valueOf(1L), created.get(0).getId());
+    assertEquals(Long.valueOf(2L), created.get(1).getId());
+    assertEquals(Optional.of(created.get(0)), store.findPending(1L));
+    verify(mockMissionRpsy, never()).insertAll(anyIterable());
+  }
+
+  @Test
+  public void testCreateJournaledOnCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      List<SettlementMission> created = store.create(newMissions());
+      assertFalse(store.findPending(1L).isPresent());
+
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+      assertEquals(Optional.of(created.get(0)), store.findPending(1L));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  public void testCreateNotJournaledOnRollback() throws IOException {
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      store.create(newMissions());
+    } finally {
+      // Rolled back: afterCommit is never called
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    store.flush();
+    store = newStore();
+    store.replay();
+
+    assertFalse(store.findPending(1L).isPresent());
+    verify(mockMissionRpsy, never()).insertAll(anyIterable());
+  }
+
+  @Test
+  public void testFlushInsertsCreates() {
+    List<SettlementMission> created = store.create(newMissions());
+    store.flush();
+
+    verify(mockMissionRpsy).insertAll(created);
+    assertFalse(store.findPending(1L).isPresent());
+  }
+
+  @Test
+  public void testUpdatePendingMission() {
+    store.create(newMissions());
+
+    SettlementMission update = TestDataGenerator.defaultSettlementMissionData().id(null)
+        .qty(250d).version(0L).build();
+    SettlementMission updated = store.update(1L, update);
+    assertEquals(Long.valueOf(1L), updated.getVersion());
+    assertEquals(Double.valueOf(250d), store.findPending(1L).get().getQty());
+
+    // Still a create, since the mission never reached the database
+    store.flush();
+    verify(mockMissionRpsy, never()).updateAllIfVersionIs(anyList(), anyList());
+  }
+
+  @Test(expected = ObjectOptimisticLockingFailureException.class)
+  public void testUpdateWithStaleVersion() {
+    store.create(newMissions());
+
+    store.update(1L, TestDataGenerator.defaultSettlementMissionData().version(5L).build());
+  }
+
+  @Test
+  public void testUpdateFlushedMission() {
+    SettlementMission stored = TestDataGenerator.defaultSettlementMissionData().id(7L)
+        .version(3L).build();
+    given(mockMissionRpsy.findById(7L)).willReturn(Optional.of(stored));
+
+    SettlementMission updated = store.update(7L, stored.toBuilder().qty(1d).build());
+    store.flush();
+
+    verify(mockMissionRpsy).updateAllIfVersionIs(Collections.singletonList(updated),
+        Collections.singletonList(3L));
+    verify(mockCache).evict(7L);
+    verify(mockResponseCache).evict(7L);
+  }
+
+  @Test
+  public void testRepeatedUpdatesExpectFlushedVersion() {
+    SettlementMission stored = TestDataGenerator.defaultSettlementMissionData().id(7L)
+        .version(3L).build();
+    given(mockMissionRpsy.findById(7L)).willReturn(Optional.of(stored));
+
+    SettlementMission first = store.update(7L, stored.toBuilder().qty(1d).build());
+    SettlementMission second = store.update(7L, first.toBuilder().qty(2d).build());
+    store.flush();
+
+    // Written once, at its latest version, over the version both updates started from
+    verify(mockMissionRpsy).updateAllIfVersionIs(Collections.singletonList(second),
+        Collections.singletonList(3L));
+  }
+
+  @Test
+  public void testUpdateAll() {
+    store.create(newMissions());
+    SettlementMission stored = TestDataGenerator.defaultSettlementMissionData().id(7L)
+        .version(3L).build();
+    given(mockMissionRpsy.findAllById(Arrays.asList(7L, 8L)))
+        .willReturn(Collections.singletonList(stored));
+
+    SettlementMission pendingUpdate = TestDataGenerator.defaultSettlementMissionData().id(1L)
+        .qty(250d).version(0L).build();
+    SettlementMission storedUpdate = stored.toBuilder().qty(1d).build();
+    SettlementMission stale = TestDataGenerator.defaultSettlementMissionData().id(2L)
+        .version(5L).build();
+    SettlementMission missing = TestDataGenerator.defaultSettlementMissionData().id(8L).build();
+
+    assertEquals(Arrays.asList(MissionChangeStatus.UPDATED, MissionChangeStatus.UPDATED,
+        MissionChangeStatus.CONFLICT, MissionChangeStatus.NOT_FOUND),
+        store.updateAll(Arrays.asList(pendingUpdate, storedUpdate, stale, missing)));
+    assertEquals(Double.valueOf(250d), store.findPending(1L).get().getQty());
+    assertEquals(Long.valueOf(4L), store.findPending(7L).get().getVersion());
+
+    store.flush();
+    verify(mockMissionRpsy).updateAllIfVersionIs(
+        Collections.singletonList(storedUpdate.toBuilder().version(4L).build()),
+        Collections.singletonList(3L));
+  }
+
+  @Test
+  public void testUpdateOfChangedMissionIsKeptAsConflict() throws IOException {
+    SettlementMission stored = TestDataGenerator.defaultSettlementMissionData().id(7L)
+        .version(3L).build();
+    given(mockMissionRpsy.findById(7L)).willReturn(Optional.of(stored));
+    // Changed in the database (e.g. by another instance) after the update was journaled
+    given(mockMissionRpsy.updateAllIfVersionIs(anyList(), anyList())).willReturn(new int[] {0});
+
+    SettlementMission updated = store.update(7L, stored.toBuilder().qty(1d).build());
+    store.flush();
+
+    assertFalse(store.findPending(7L).isPresent());
+    verify(mockCache).evict(7L);
+    assertEquals(Collections.singletonList(updated), store.getConflicts());
+
+    // Still there after a restart
+    store = newStore();
+    store.replay();
+    assertEquals(Collections.singletonList(updated), store.getConflicts());
+  }
+
+  @Test
+  public void testReplayAfterRestart() throws IOException {
+    List<SettlementMission> created = store.create(newMissions());
+    // Simulate a crash: the journal is reopened without the missions having been flushed
+    store = newStore();
+
+    // Mission 1 made it to the database before the crash, mission 2 didn't
+    given(mockMissionRpsy.findAllById(anyIterable()))
+        .willReturn(Collections.singletonList(created.get(0)));
+    store.replay();
+
+    assertFalse(store.findPending(1L).isPresent());
+    assertTrue(store.findPending(2L).isPresent());
+
+    store.flush();
+    verify(mockMissionRpsy).insertAll(Collections.singletonList(created.get(1)));
+    verify(mockMissionRpsy, never()).updateAllIfVersionIs(anyList(), anyList());
+  }
+
+  @Test
+  public void testFlushedRecordsAreNotReplayed() throws IOException {
+    store.create(newMissions());
+    store.flush();
+    store = newStore();
+
+    store.replay();
+
+    assertFalse(store.findPending(1L).isPresent());
+    assertFalse(store.findPending(2L).isPresent());
+    verify(mockMissionRpsy, never()).findAllById(anyIterable());
+  }
+
+  @Test
+  public void testDeletedMissionIsNotReplayed() throws IOException {
+    store.create(newMissions());
+    store.delete(Collections.singletonList(1L));
+    store = newStore();
+
+    store.replay();
+
+    assertFalse(store.findPending(1L).isPresent());
+    // Flushed before the delete, so that the delete finds it in the database
+    verify(mockMissionRpsy).insertAll(anyIterable());
+  }
+
+  @Test
+  public void testReplayedUpdateExpectsVersionItWasBasedOn() throws IOException {
+    SettlementMission stored = TestDataGenerator.defaultSettlementMissionData().id(7L)
+        .version(3L).build();
+    given(mockMissionRpsy.findById(7L)).willReturn(Optional.of(stored));
+    SettlementMission updated = store.update(7L, stored.toBuilder().qty(1d).build());
+    store = newStore();
+
+    // Changed by something else before the restart
+    given(mockMissionRpsy.findAllById(anyIterable())).willReturn(Collections.singletonList(
+        stored.toBuilder().qty(2d).version(4L).build()));
+    store.replay();
+    store.flush();
+
+    // So the replayed update can't overwrite the newer row
+    verify(mockMissionRpsy).updateAllIfVersionIs(Collections.singletonList(updated),
+        Collections.singletonList(3L));
+  }
+
+  private WriteBehindMissionStore newStore() throws IOException {
+    ProtoMessageTranslationConfig translators = new ProtoMessageTranslationConfig();
+    return new WriteBehindMissionStore(mockMissionRpsy, mockTransactionTemplate,
+        mockCacheManager, new SimpleMeterRegistry(),
+        translators.settlementMissionProtoTranslator(),
+        translators.settlementMissionProtoMessageTranslator(), journalPath, 1);
+  }
+
+  private static List<SettlementMission> newMissions() {
+    return Arrays.asList(TestDataGenerator.defaultSettlementMissionData().id(null).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(null).externalParty("EXT-2").build());
+  }
+}
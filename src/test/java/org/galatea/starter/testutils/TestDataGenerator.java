@@ -1,5 +1,7 @@
 package org.galatea.starter.testutils;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
@@ -58,4 +60,16 @@ public class TestDataGenerator {
         .qty(100d)
         .version(0L);
   }
+
+  /**
+   * Generate the given number of new (not yet saved, so without ids) SettlementMissions holding
+   * the default test values.
+   */
+  public static List<SettlementMission> newSettlementMissions(final int count) {
+    List<SettlementMission> missions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      missions.add(defaultSettlementMissionData().id(null).build());
+    }
+    return missions;
+  }
 }
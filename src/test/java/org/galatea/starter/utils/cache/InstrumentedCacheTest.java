@@ -0,0 +1,118 @@
+package org.galatea.starter.utils.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.ehcache.EhCacheCache;
+
+public class InstrumentedCacheTest {
+
+  private MeterRegistry registry;
+
+  @Before
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+  }
+
+  @Test
+  public void testHitsAndMissesAreCounted() {
+    InstrumentedCache cache = new InstrumentedCache(new ConcurrentMapCache("missions"), registry);
+
+    cache.put(1L, "mission");
+    cache.get(1L);
+    cache.get(1L, String.class);
+    cache.get(2L);
+
+    assertEquals(2, registry.get("settlement.cache.gets").tag("result", "hit").counter().count(),
+        0);
+    assertEquals(1, registry.get("settlement.cache.gets").tag("result", "miss").counter().count(),
+        0);
+    assertEquals(2.0 / 3, registry.get("settlement.cache.hit.ratio").gauge().value(), 0.001);
+  }
+
+  @Test
+  public void testLoadsAreTimed() {
+    InstrumentedCache cache = new InstrumentedCache(new ConcurrentMapCache("missions"), registry);
+
+    assertEquals("mission", cache.get(1L, () -> "mission"));
+    assertEquals("mission", cache.get(1L, () -> {
+      throw new IllegalStateException("Should have been served from the cache");
+    }));
+
+    assertEquals(1, registry.get("settlement.cache.loads").tag("cache", "missions").timer()
+        .count());
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(Long.valueOf(1), statistics.getHits());
+    assertEquals(Long.valueOf(1), statistics.getMisses());
+    assertEquals(Long.valueOf(1), statistics.getLoads());
+    assertEquals(3, statistics.getLoadPercentileMillis().size());
+  }
+
+  @Test
+  public void testCachedNullIsAMiss() {
+    InstrumentedCache cache = new InstrumentedCache(new ConcurrentMapCache("missions"), registry);
+
+    cache.put(1L, null);
+    cache.get(1L);
+    assertNull(cache.get(1L, () -> null));
+
+    assertEquals(0, registry.get("settlement.cache.gets").tag("result", "hit").counter().count(),
+        0);
+    assertEquals(2, registry.get("settlement.cache.gets").tag("result", "miss").counter().count(),
+        0);
+  }
+
+  @Test
+  public void testPeekIsNotCounted() {
+    InstrumentedCache cache = new InstrumentedCache(new ConcurrentMapCache("missions"), registry);
+
+    cache.put(1L, "mission");
+    assertEquals("mission", InstrumentedCache.peek(cache, 1L).get());
+    assertNull(InstrumentedCache.peek(cache, 2L));
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(Long.valueOf(0), statistics.getHits());
+    assertEquals(Long.valueOf(0), statistics.getMisses());
+  }
+
+  @Test
+  public void testNoHitRatioBeforeFirstRead() {
+    InstrumentedCache cache = new InstrumentedCache(new ConcurrentMapCache("missions"), registry);
+
+    assertNull(cache.getStatistics().getHitRatio());
+  }
+
+  @Test
+  public void testEhCacheStatistics() {
+    // Named, so that it doesn't clash with the application's own (shared) cache manager
+    CacheManager ehCacheManager =
+        CacheManager.newInstance(new Configuration().name("instrumentedCacheTest"));
+    try {
+      ehCacheManager.addCache(new net.sf.ehcache.Cache(new CacheConfiguration("missions", 1)
+          .timeToLiveSeconds(60)));
+      Cache cache = new InstrumentedCache(new EhCacheCache(ehCacheManager.getEhcache("missions")),
+          registry);
+
+      // Only one entry fits, so the second put evicts the first
+      cache.put(1L, "mission");
+      cache.put(2L, "mission");
+
+      CacheStatistics statistics = ((InstrumentedCache) cache).getStatistics();
+      assertEquals(Long.valueOf(1), statistics.getSize());
+      assertEquals(Long.valueOf(1), statistics.getEvictions());
+      assertEquals(60L, statistics.getConfiguration().get("timeToLiveSeconds"));
+      assertEquals(1, registry.get("cache.size").tag("cache", "missions").gauge().value(), 0);
+    } finally {
+      ehCacheManager.shutdown();
+    }
+  }
+}
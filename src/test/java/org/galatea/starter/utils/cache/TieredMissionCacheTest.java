@@ -0,0 +1,89 @@
+package org.galatea.starter.utils.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cache.Cache.ValueWrapper;
+
+public class TieredMissionCacheTest {
+
+  private TieredMissionCache cache;
+
+  @After
+  public void closeCache() {
+    if (cache != null) {
+      cache.close();
+    }
+  }
+
+  @Test
+  public void testOffHeapRoundTrip() {
+    // No on-heap tier, so everything has to go through the serializer
+    cache = newCache(0);
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+
+    cache.put(1L, mission);
+    ValueWrapper cached = cache.get(1L);
+
+    assertEquals(mission, cached.get());
+    assertNotSame(mission, cached.get());
+  }
+
+  @Test
+  public void testNullValuesAreCached() {
+    cache = newCache(0);
+
+    cache.put(1L, null);
+
+    assertNotNull(cache.get(1L));
+    assertNull(cache.get(1L).get());
+    assertNull(cache.get(2L));
+  }
+
+  @Test
+  public void testGetWithLoaderOnlyLoadsOnce() {
+    cache = newCache(10);
+    SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+
+    assertEquals(mission, cache.get(1L, () -> mission));
+    assertEquals(mission, cache.get(1L, () -> {
+      throw new IllegalStateException("Should have been served from the cache");
+    }));
+  }
+
+  @Test
+  public void testTierStatisticsArePublished() {
+    cache = newCache(10);
+    MeterRegistry registry = new SimpleMeterRegistry();
+    cache.bindTo(registry);
+
+    cache.put(1L, TestDataGenerator.defaultSettlementMissionData().id(1L).build());
+    // Puts go to the off-heap tier, and the first read copies the mission up to the heap tier
+    cache.get(1L);
+    cache.get(1L);
+
+    assertEquals(1, registry.get("settlement.cache.tier.hits").tag("tier", "OffHeap")
+        .functionCounter().count(), 0);
+    assertEquals(1, registry.get("settlement.cache.tier.hits").tag("tier", "OnHeap")
+        .functionCounter().count(), 0);
+    assertEquals(1, registry.get("settlement.cache.tier.entries").tag("tier", "OffHeap")
+        .gauge().value(), 0);
+  }
+
+  private static TieredMissionCache newCache(final long heapEntries) {
+    ProtoMessageTranslationConfig translators = new ProtoMessageTranslationConfig();
+    return new TieredMissionCache("missions", heapEntries, 1, Duration.ofMinutes(1),
+        new SettlementMissionSerializer(translators.settlementMissionProtoTranslator(),
+            translators.settlementMissionProtoMessageTranslator()));
+  }
+}
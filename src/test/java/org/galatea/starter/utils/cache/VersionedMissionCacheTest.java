@@ -0,0 +1,129 @@
+package org.galatea.starter.utils.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+public class VersionedMissionCacheTest {
+
+  private VersionedMissionCache cache;
+
+  @Before
+  public void setup() {
+    cache = new VersionedMissionCache(new ConcurrentMapCache("missions"));
+  }
+
+  @Test
+  public void testPutReplacesOlderVersion() {
+    cache.put(1L, mission(0L));
+    SettlementMission updated = mission(1L);
+
+    cache.put(1L, updated);
+
+    assertEquals(updated, cache.get(1L).get());
+  }
+
+  @Test
+  public void testPutKeepsNewerVersion() {
+    SettlementMission newer = mission(2L);
+    cache.put(1L, newer);
+
+    cache.put(1L, mission(1L));
+
+    assertEquals(newer, cache.get(1L).get());
+  }
+
+  @Test
+  public void testNotFoundOnlyCachedWhenNothingIs() {
+    SettlementMission mission = mission(0L);
+    cache.put(1L, mission);
+
+    cache.put(1L, null);
+    cache.put(2L, null);
+
+    assertEquals(mission, cache.get(1L).get());
+    assertNull(cache.get(2L).get());
+  }
+
+  @Test
+  public void testLoadKeepsVersionWrittenThroughMeanwhile() {
+    SettlementMission newer = mission(2L);
+
+    // What findById's @Cacheable does for a reader that loaded version 1 just as version 2 was
+    // saved and written through
+    SettlementMission actual = cache.get(1L, () -> {
+      cache.put(1L, newer);
+      return mission(1L);
+    });
+
+    assertEquals(newer, actual);
+    assertEquals(newer, cache.get(1L).get());
+  }
+
+  @Test
+  public void testLoadedOnlyOnce() {
+    SettlementMission mission = mission(0L);
+
+    assertEquals(mission, cache.get(1L, () -> mission));
+    assertEquals(mission, cache.get(1L, () -> {
+      throw new IllegalStateException("Should have been served from the cache");
+    }));
+  }
+
+  @Test
+  public void testStalePutAfterEvictIsRejected() {
+    // A reader loads version 1 while nothing is cached, then the mission is updated to version 2
+    // and evicted before the reader gets to cache what it loaded
+    SettlementMission stale = mission(1L);
+    cache.evictOlderThan(1L, 2L);
+    cache.put(1L, stale);
+
+    assertNull(cache.get(1L));
+
+    SettlementMission updated = mission(2L);
+    cache.put(1L, updated);
+    assertEquals(updated, cache.get(1L).get());
+  }
+
+  @Test
+  public void testEvictRejectsEvictedVersion() {
+    SettlementMission mission = mission(1L);
+    cache.put(1L, mission);
+
+    cache.evict(1L);
+    cache.put(1L, mission);
+
+    assertNull(cache.get(1L));
+  }
+
+  @Test
+  public void testLoadAfterEvictIsReturnedButNotCached() {
+    cache.evictOlderThan(1L, 2L);
+    SettlementMission stale = mission(1L);
+
+    assertEquals(stale, cache.get(1L, () -> stale));
+    assertNull(cache.get(1L));
+  }
+
+  @Test
+  public void testEvictOlderThanThroughInstrumentedCache() {
+    Cache instrumented = new InstrumentedCache(cache, new SimpleMeterRegistry());
+
+    VersionedMissionCache.evictOlderThan(instrumented, 1L, 2L);
+    instrumented.put(1L, mission(1L));
+
+    assertNull(cache.get(1L));
+  }
+
+  private static SettlementMission mission(final long version) {
+    return TestDataGenerator.defaultSettlementMissionData().id(1L).qty(100d + version)
+        .version(version).build();
+  }
+}
@@ -4,6 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -100,6 +107,68 @@ public class CsvSerializerTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void writeCsv_sameAsSerializeToCsv() throws Exception {
+    List<BasicClass> rows =
+        Arrays.asList(new BasicClass("foo", "bar"), new BasicClass("baz", null));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    CsvSerializer.writeCsv(rows.iterator(), BasicClass.class, out);
+
+    assertEquals(CsvSerializer.serializeToCsv(rows, BasicClass.class),
+        out.toString(StandardCharsets.UTF_8.name()));
+  }
+
+  @Test
+  public void writeCsv_leavesStreamOpen() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    OutputStream out = new FilterOutputStream(bytes) {
+      @Override
+      public void close() {
+        fail("The stream should have been left open");
+      }
+    };
+
+    CsvSerializer.writeCsv(Collections.singletonList(new BasicClass("foo", "bar")).iterator(),
+        BasicClass.class, out);
+    out.write("more".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("field1,field2\nfoo,bar\nmore", bytes.toString(StandardCharsets.UTF_8.name()));
+  }
+
+  @Test
+  public void readCsv_columnsBoundByHeader() throws Exception {
+    String csv
+        = "field2,field1\n"
+        + "bar,foo\n"
+        + ",baz\n";
+
+    List<BasicClass> rows;
+    try (MappingIterator<BasicClass> it = CsvSerializer.readCsv(
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), BasicClass.class)) {
+      rows = it.readAll();
+    }
+
+    assertEquals(2, rows.size());
+    assertEquals("foo", rows.get(0).getField1());
+    assertEquals("bar", rows.get(0).getField2());
+    assertEquals("baz", rows.get(1).getField1());
+    // Note that an empty value is read as an empty string rather than null
+    assertEquals("", rows.get(1).getField2());
+  }
+
+  @Test(expected = RuntimeJsonMappingException.class)
+  public void readCsv_unknownColumn() throws Exception {
+    String csv
+        = "field1,field3\n"
+        + "foo,bar\n";
+
+    try (MappingIterator<BasicClass> it = CsvSerializer.readCsv(
+        new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), BasicClass.class)) {
+      it.next();
+    }
+  }
+
   @AllArgsConstructor
   @NoArgsConstructor
   @Getter
@@ -0,0 +1,60 @@
+package org.galatea.starter.utils.http.converter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.NullOutputStream;
+import org.galatea.starter.BenchmarkTestCategory;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+/**
+ * Measures the cost per cell of XlsxSerializer#writeXlsx, streaming missions into a spreadsheet
+ * that is thrown away as it is written.
+ *
+ * <p>The row counts can be set with -Dbenchmark.xlsxRows (comma separated, defaults to
+ * 10000,100000,1000000). Missions are generated as they are written, so even the largest count
+ * needs little heap.
+ */
+@Slf4j
+@Category(BenchmarkTestCategory.class)
+public class XlsxSerializerBenchmarkTest {
+
+  private static final int WARMUP_ROWS = 10000;
+
+  // Fields of SettlementMission, i.e. cells per row
+  private static final int COLUMNS = 7;
+
+  @Test
+  public void measureWriteXlsx() throws IOException {
+    List<Integer> sizes = Arrays.stream(
+        System.getProperty("benchmark.xlsxRows", "10000,100000,1000000").split(","))
+        .map(String::trim).map(Integer::valueOf).collect(Collectors.toList());
+
+    // Let the JIT settle before measuring
+    XlsxSerializer.writeXlsx(missions(WARMUP_ROWS), SettlementMission.class,
+        new NullOutputStream());
+
+    for (int rows : sizes) {
+      long start = System.nanoTime();
+      XlsxSerializer.writeXlsx(missions(rows), SettlementMission.class, new NullOutputStream());
+      long elapsedNanos = System.nanoTime() - start;
+
+      log.info("[XLSX] {} missions took {} ms: {} missions/s, {} ns/cell", rows,
+          elapsedNanos / 1_000_000, Math.round(rows / (elapsedNanos / 1e9)),
+          elapsedNanos / ((long) rows * COLUMNS));
+    }
+  }
+
+  private static Iterator<SettlementMission> missions(final int count) {
+    return LongStream.rangeClosed(1, count)
+        .mapToObj(id -> TestDataGenerator.defaultSettlementMissionData().id(id).build())
+        .iterator();
+  }
+}
@@ -1,21 +1,30 @@
 package org.galatea.starter.utils.http.converter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Lists;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.galatea.starter.testutils.XlsxComparator;
 import org.junit.Test;
@@ -160,6 +169,128 @@ public class XlsxSerializerTest {
     assertTrue(XlsxComparator.equals(expected, actual));
   }
 
+  @Test
+  public void writeXlsx_sameAsSerializeToXlsx() throws Exception {
+    List<BasicClass> rows =
+        Arrays.asList(new BasicClass("foo", "bar"), new BasicClass("baz", null));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    XlsxSerializer.writeXlsx(rows.iterator(), BasicClass.class, out);
+
+    assertTrue(XlsxComparator.equals(XlsxSerializer.serializeToXlsx(rows, BasicClass.class),
+        out.toByteArray()));
+  }
+
+  @Test
+  public void writeXlsx_rollsOverToNewSheets() throws Exception {
+    List<BasicClass> rows = Arrays.asList(new BasicClass("a", "1"), new BasicClass("b", "2"),
+        new BasicClass("c", "3"), new BasicClass("d", "4"), new BasicClass("e", "5"));
+
+    byte[] expected;
+    try (Workbook wbExpected = new XSSFWorkbook()) {
+      // Each sheet holds a header and up to two rows
+      for (List<BasicClass> sheetRows : Lists.partition(rows, 2)) {
+        Sheet sheet = wbExpected.createSheet();
+        Row row = sheet.createRow(0);
+        row.createCell(0).setCellValue("field1");
+        row.createCell(1).setCellValue("field2");
+        for (int i = 0; i < sheetRows.size(); i++) {
+          row = sheet.createRow(i + 1);
+          row.createCell(0).setCellValue(sheetRows.get(i).field1);
+          row.createCell(1).setCellValue(sheetRows.get(i).field2);
+        }
+      }
+
+      expected = writeSpreadsheetToBytes(wbExpected);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    XlsxSerializer.writeXlsx(rows.iterator(), BasicClass.class, out, 3);
+    assertTrue(XlsxComparator.equals(expected, out.toByteArray()));
+  }
+
+  @Test
+  public void serializeToXlsx_typedCells() throws Exception {
+    TypedClass row1 = new TypedClass(1, 2L, 3.5, true, null);
+
+    byte[] actual = XlsxSerializer.serializeToXlsx(
+        Collections.singletonList(row1), TypedClass.class);
+    try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(actual))) {
+      Row row = wb.getSheetAt(0).getRow(1);
+      assertEquals(CellType.NUMERIC, row.getCell(0).getCellType());
+      assertEquals(1, row.getCell(0).getNumericCellValue(), 0);
+      assertEquals(CellType.NUMERIC, row.getCell(1).getCellType());
+      assertEquals(2, row.getCell(1).getNumericCellValue(), 0);
+      assertEquals(3.5, row.getCell(2).getNumericCellValue(), 0);
+      assertEquals(CellType.BOOLEAN, row.getCell(3).getCellType());
+      assertTrue(row.getCell(3).getBooleanCellValue());
+      // Missing numbers are blank strings, like any other missing value
+      assertEquals("", row.getCell(4).getStringCellValue());
+    }
+  }
+
+  @Test
+  public void readXlsx_roundTrip() throws Exception {
+    List<ReadableClass> rows = Arrays.asList(new ReadableClass("a", 1.5, 1),
+        new ReadableClass(null, null, 2), new ReadableClass("c", 100.0, 3),
+        new ReadableClass("d", 0.25, 4));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // Spread over two sheets, to check that each sheet's header row is skipped
+    XlsxSerializer.writeXlsx(rows.iterator(), ReadableClass.class, out, 3);
+
+    List<ReadableClass> actual = new ArrayList<>();
+    XlsxSerializer.readXlsx(new ByteArrayInputStream(out.toByteArray()), ReadableClass.class,
+        actual::add);
+
+    // Blank cells are read back as null
+    assertEquals(rows, actual);
+  }
+
+  @Test
+  public void readXlsx_columnsBoundByHeader() throws Exception {
+    byte[] xlsx;
+    try (Workbook wb = new XSSFWorkbook()) {
+      Sheet sheet = wb.createSheet();
+      Row row = sheet.createRow(0);
+      row.createCell(0).setCellValue("count");
+      row.createCell(1).setCellValue("name");
+      row.createCell(2).setCellValue("qty");
+      row = sheet.createRow(1);
+      row.createCell(0).setCellValue(7);
+      row.createCell(1).setCellValue("foo");
+      row.createCell(2).setCellValue("2.5");
+      // Empty rows are skipped
+      row = sheet.createRow(3);
+      row.createCell(0).setCellValue("8");
+      row.createCell(2).setCellValue(3);
+      xlsx = writeSpreadsheetToBytes(wb);
+    }
+
+    List<ReadableClass> actual = new ArrayList<>();
+    XlsxSerializer.readXlsx(new ByteArrayInputStream(xlsx), ReadableClass.class, actual::add);
+
+    assertEquals(Arrays.asList(new ReadableClass("foo", 2.5, 7),
+        new ReadableClass(null, 3.0, 8)), actual);
+  }
+
+  @Test(expected = SpreadsheetFormatException.class)
+  public void readXlsx_unconvertibleRow() throws Exception {
+    byte[] xlsx;
+    try (Workbook wb = new XSSFWorkbook()) {
+      Sheet sheet = wb.createSheet();
+      sheet.createRow(0).createCell(0).setCellValue("qty");
+      sheet.createRow(1).createCell(0).setCellValue("lots");
+      xlsx = writeSpreadsheetToBytes(wb);
+    }
+
+    XlsxSerializer.readXlsx(new ByteArrayInputStream(xlsx), ReadableClass.class, row -> { });
+  }
+
+  @Test(expected = SpreadsheetFormatException.class)
+  public void readXlsx_notASpreadsheet() throws Exception {
+    XlsxSerializer.readXlsx(new ByteArrayInputStream("name,qty\nfoo,1\n".getBytes(
+        StandardCharsets.UTF_8)), ReadableClass.class, row -> { });
+  }
+
   private static byte[] writeSpreadsheetToBytes(final Workbook wb) throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       wb.write(baos);
@@ -205,6 +336,28 @@ public class XlsxSerializerTest {
     private BasicClass field2;
   }
 
+  @AllArgsConstructor
+  private static class TypedClass {
+
+    private int field1;
+    private Long field2;
+    private double field3;
+    private boolean field4;
+    private Double field5;
+  }
+
+  @AllArgsConstructor
+  @NoArgsConstructor
+  @Getter
+  @EqualsAndHashCode
+  @ToString
+  private static class ReadableClass {
+
+    private String name;
+    private Double qty;
+    private int count;
+  }
+
   @AllArgsConstructor
   private static class CustomHeadersClass {
 
@@ -0,0 +1,135 @@
+package org.galatea.starter.utils.journal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.galatea.starter.utils.journal.AppendOnlyJournal.Record;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AppendOnlyJournalTest {
+
+  private static final int CAPACITY = 1024;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAppendAndReopen() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("test.journal");
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      assertTrue(journal.isEmpty());
+      assertTrue(journal.append(Arrays.asList(record(1, "first"), record(2, "second"))));
+      assertTrue(journal.append(Collections.singletonList(record(1, "third"))));
+    }
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      List<Record> records = journal.readAll();
+      assertEquals(3, records.size());
+      assertEquals(2, records.get(1).getType());
+      assertArrayEquals(bytes("third"), records.get(2).getPayload());
+
+      // New records go after the replayed ones
+      assertTrue(journal.append(Collections.singletonList(record(1, "fourth"))));
+      assertEquals(4, journal.readAll().size());
+    }
+  }
+
+  @Test
+  public void testCheckpointDiscardsRecords() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("test.journal");
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      journal.append(Arrays.asList(record(1, "first"), record(1, "second")));
+      journal.checkpoint();
+      assertTrue(journal.isEmpty());
+
+      // Shorter than what it overwrites, so the stale record after it must not be read back
+      journal.append(Collections.singletonList(record(1, "x")));
+    }
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      List<Record> records = journal.readAll();
+      assertEquals(1, records.size());
+      assertArrayEquals(bytes("x"), records.get(0).getPayload());
+    }
+  }
+
+  @Test
+  public void testDiscardBeforeKeepsLaterRecords() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("test.journal");
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      journal.append(Arrays.asList(record(1, "first"), record(1, "second")));
+      int position = journal.getPosition();
+      journal.append(Collections.singletonList(record(1, "third")));
+
+      journal.discardBefore(position);
+      assertFalse(journal.isEmpty());
+    }
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      List<Record> records = journal.readAll();
+      assertEquals(1, records.size());
+      assertArrayEquals(bytes("third"), records.get(0).getPayload());
+
+      // Discarding the last record frees the whole journal again
+      journal.discardBefore(journal.getPosition());
+      assertTrue(journal.isEmpty());
+      assertTrue(journal.readAll().isEmpty());
+    }
+  }
+
+  @Test
+  public void testTornRecordIsIgnored() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("test.journal");
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      journal.append(Arrays.asList(record(1, "first"), record(1, "second")));
+    }
+
+    // Corrupt the last byte of the second record's payload, as if the write had been cut short
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+      long lastPayloadByte = 16 + (17 + 5) + (17 + 6) - 1;
+      file.seek(lastPayloadByte);
+      file.write('X');
+    }
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, CAPACITY)) {
+      List<Record> records = journal.readAll();
+      assertEquals(1, records.size());
+      assertArrayEquals(bytes("first"), records.get(0).getPayload());
+    }
+  }
+
+  @Test
+  public void testAppendWhenFull() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("test.journal");
+
+    try (AppendOnlyJournal journal = new AppendOnlyJournal(path, 64)) {
+      assertTrue(journal.append(Collections.singletonList(record(1, "0123456789"))));
+      // Nothing is appended if the whole list doesn't fit
+      assertFalse(journal.append(Arrays.asList(record(1, "a"), record(1, "0123456789"))));
+      assertEquals(1, journal.readAll().size());
+    }
+  }
+
+  private static Record record(final int type, final String payload) {
+    return new Record((byte) type, bytes(payload));
+  }
+
+  private static byte[] bytes(final String payload) {
+    return payload.getBytes(StandardCharsets.UTF_8);
+  }
+}